@@ -33,6 +33,67 @@ public class BlockingConfigTest {
         config = builder.build();
         assertEquals( 5040, config.getRequestTimeout() );
 
+        builder = new BlockingConfig.Builder( "" ).setHedgingDelay( 350 ).setHedgingBudget( 0.1 );
+        config = builder.build();
+        assertEquals( 350, config.getHedgingDelay() );
+        assertEquals( 0.1, config.getHedgingBudget(), 0 );
+
+        builder = new BlockingConfig.Builder( "" ).setRefreshWindow( 60000 ).setMaxConcurrentRefreshes( 3 );
+        config = builder.build();
+        assertEquals( 60000, config.getRefreshWindow() );
+        assertEquals( 3, config.getMaxConcurrentRefreshes() );
+
+        builder = new BlockingConfig.Builder( "" ).setCallbackExecutor( BlockingConfig.DIRECT_EXECUTOR );
+        config = builder.build();
+        assertEquals( BlockingConfig.DIRECT_EXECUTOR, config.getCallbackExecutor() );
+
+        builder = new BlockingConfig.Builder( "" ).setSharedCacheEnabled( true ).setCompactCacheEnabled( true );
+        config = builder.build();
+        assertTrue( config.isSharedCacheEnabled() );
+        assertTrue( config.isCompactCacheEnabled() );
+
+        DecisionPolicy policy = DecisionPolicy.everyNRequests( 5 );
+        builder = new BlockingConfig.Builder( "" ).setDecisionPolicy( policy );
+        config = builder.build();
+        assertEquals( policy, config.getDecisionPolicy() );
+
+        builder = new BlockingConfig.Builder( "" ).setCacheKeyPolicy( CacheKeyPolicy.DEVICE_AND_IPV4 ).setIPv6PrefixLength( 64 );
+        config = builder.build();
+        assertEquals( CacheKeyPolicy.DEVICE_AND_IPV4, config.getCacheKeyPolicy() );
+        assertEquals( 64, config.getIPv6PrefixLength() );
+
+        builder = new BlockingConfig.Builder( "" ).setTracingEnabled( true ).setServerInferredIPEnabled( true );
+        config = builder.build();
+        assertTrue( config.isTracingEnabled() );
+        assertTrue( config.isServerInferredIPEnabled() );
+
+        builder = new BlockingConfig.Builder( "" ).setEventLogSize( 256 );
+        config = builder.build();
+        assertEquals( 256, config.getEventLogSize() );
+
+        builder = new BlockingConfig.Builder( "" ).setPlacementThreshold( "interstitial", 0.5 ).setPlacementMode( "test", PixalateBlocking.BlockingMode.NEVER_BLOCK );
+        config = builder.build();
+        assertEquals( 0.5, config.getBlockingThreshold( "interstitial" ), 0 );
+        assertEquals( 0.75, config.getBlockingThreshold( "banner" ), 0 );
+        assertEquals( PixalateBlocking.BlockingMode.NEVER_BLOCK, config.getBlockingMode( "test" ) );
+        assertEquals( PixalateBlocking.BlockingMode.DEFAULT, config.getBlockingMode( "banner" ) );
+
+        builder = new BlockingConfig.Builder( "" ).setRateLimit( 2.5, 10 ).setRateLimitFallback( FallbackDecision.ALLOW );
+        config = builder.build();
+        assertEquals( 2.5, config.getRateLimit(), 0 );
+        assertEquals( 10, config.getRateLimitBurst() );
+        assertEquals( FallbackDecision.ALLOW, config.getRateLimitFallback() );
+
+        builder = new BlockingConfig.Builder( "" ).setDecisionDeadline( 150, FallbackDecision.BLOCK );
+        config = builder.build();
+        assertEquals( 150, config.getDecisionDeadline() );
+        assertEquals( FallbackDecision.BLOCK, config.getDeadlineDecision() );
+
+        builder = new BlockingConfig.Builder( "" ).setFraudURLs( "https://eu.example.com/fraud", "https://us.example.com/fraud" );
+        config = builder.build();
+        assertEquals( 2, config.getFraudURLs().size() );
+        assertEquals( "https://eu.example.com/fraud", config.getFraudURL() );
+
         BlockingStrategy strat = new BlockingStrategy() {};
         builder = new BlockingConfig.Builder( "" ).setBlockingStrategy( strat );
         config = builder.build();
@@ -54,4 +115,96 @@ public class BlockingConfigTest {
                 .setTTL(-100)
                 .build();
     }
+
+    @Test
+    public void hedgingShouldBeDisabledByDefault () {
+        BlockingConfig config = new BlockingConfig.Builder( "" ).build();
+
+        assertEquals( 0, config.getHedgingDelay() );
+        assertEquals( 0.05, config.getHedgingBudget(), 0 );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void hedgingBudgetShouldThrowWhenOutOfRange () {
+        BlockingConfig config = new BlockingConfig.Builder( "" )
+                .setHedgingBudget( 1.5 )
+                .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decisionDeadlineShouldThrowWhenLessThanZero () {
+        BlockingConfig config = new BlockingConfig.Builder( "" )
+                .setDecisionDeadline( -1, FallbackDecision.ALLOW )
+                .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refreshWindowShouldThrowWhenLessThanZero () {
+        BlockingConfig config = new BlockingConfig.Builder( "" )
+                .setRefreshWindow( -1 )
+                .build();
+    }
+
+    @Test
+    public void callbackExecutorShouldDefaultToMainThread () {
+        BlockingConfig config = new BlockingConfig.Builder( "" ).build();
+
+        assertEquals( BlockingConfig.MAIN_THREAD_EXECUTOR, config.getCallbackExecutor() );
+    }
+
+    @Test
+    public void endpointsShouldBePassedToTheDefaultStrategy () {
+        BlockingConfig config = new BlockingConfig.Builder( "" )
+                .setFraudURL( "http://127.0.0.1:8080/api/v2/fraud" )
+                .setIPv4URL( "http://127.0.0.1:8080/ipv4" )
+                .setIPv6URL( "http://127.0.0.1:8080/ipv6" )
+                .build();
+
+        DefaultBlockingStrategy strategy = (DefaultBlockingStrategy) config.getBlockingStrategy();
+
+        assertEquals( "http://127.0.0.1:8080/api/v2/fraud", config.getFraudURL() );
+        assertEquals( "http://127.0.0.1:8080/ipv4", strategy.getIPv4Endpoint() );
+        assertEquals( "http://127.0.0.1:8080/ipv6", strategy.getIPv6Endpoint() );
+    }
+
+    @Test
+    public void transportShouldBePassedToTheDefaultStrategy () {
+        BlockingTransport transport = ( request, callback ) -> null;
+
+        BlockingConfig config = new BlockingConfig.Builder( "" )
+                .setTransport( transport )
+                .build();
+
+        assertEquals( transport, config.getTransport() );
+        assertEquals( transport, ( (DefaultBlockingStrategy) config.getBlockingStrategy() ).getTransport() );
+    }
+
+    @Test
+    public void defaultStrategiesShouldNotShareTheirSettings () {
+        DefaultBlockingStrategy first = (DefaultBlockingStrategy) new BlockingConfig.Builder( "first" ).build().getBlockingStrategy();
+        DefaultBlockingStrategy second = (DefaultBlockingStrategy) new BlockingConfig.Builder( "second" ).build().getBlockingStrategy();
+
+        assertNotSame( first, second );
+
+        first.setRequestTimeout( 50 );
+        first.setIPv4Endpoint( "http://10.0.0.1/ipv4" );
+
+        assertNotEquals( 50, second.getRequestTimeout() );
+        assertEquals( DefaultBlockingStrategy.DEFAULT_IPV4_ENDPOINT, second.getIPv4Endpoint() );
+    }
+
+    @Test
+    public void endpointsShouldNotReplaceAStrategysOwnEndpoints () {
+        DefaultBlockingStrategy strategy = new DefaultBlockingStrategy( 0 );
+        strategy.setIPv4Endpoint( "http://10.0.0.1/ipv4" );
+
+        new BlockingConfig.Builder( "" )
+                .setIPv4URL( "http://127.0.0.1:8080/ipv4" )
+                .setIPv6URL( "http://127.0.0.1:8080/ipv6" )
+                .setBlockingStrategy( strategy )
+                .build();
+
+        assertEquals( "http://10.0.0.1/ipv4", strategy.getIPv4Endpoint() );
+        assertEquals( "http://127.0.0.1:8080/ipv6", strategy.getIPv6Endpoint() );
+    }
 }
@@ -0,0 +1,140 @@
+package com.pixalate.android.blocking;
+
+import static org.junit.Assert.*;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests the BlockingDecisionPublisher class.
+ */
+@RunWith( AndroidJUnit4.class )
+public class BlockingDecisionPublisherTest {
+
+    private Context appContext;
+    private BlockingDecisionPublisher publisher;
+
+    @Before
+    public void before () {
+        appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PixalateBlocking.initialize( appContext, new BlockingConfig.Builder( "" )
+            .setBlockingThreshold( 0.75 )
+            .setCallbackExecutor( BlockingConfig.DIRECT_EXECUTOR )
+            .build() );
+
+        PixalateBlocking.lastResult = result( 0.1 );
+        publisher = new BlockingDecisionPublisher( appContext );
+    }
+
+    @Test
+    public void subscribersShouldReceiveTheCurrentDecisionImmediately () {
+        List<String> decisions = new ArrayList<>();
+        BlockingSubscription subscription = publisher.add( recorder( decisions ) );
+
+        assertEquals( 1, decisions.size() );
+        assertEquals( "allow", decisions.get( 0 ) );
+
+        subscription.cancel();
+    }
+
+    @Test
+    public void subscribersShouldOnlyBeNotifiedOfChanges () {
+        List<String> decisions = new ArrayList<>();
+        BlockingSubscription subscription = publisher.add( recorder( decisions ) );
+
+        publisher.onResult( result( 0.2 ) );
+        publisher.onResult( result( 0.5 ) );
+        assertEquals( 1, decisions.size() );
+
+        publisher.onResult( result( 0.9 ) );
+        assertEquals( 2, decisions.size() );
+        assertEquals( "block", decisions.get( 1 ) );
+
+        publisher.onResult( result( 0.95 ) );
+        publisher.onResult( result( 0.1 ) );
+        assertEquals( 3, decisions.size() );
+        assertEquals( "allow", decisions.get( 2 ) );
+
+        subscription.cancel();
+    }
+
+    @Test
+    public void subscribersJoiningOnAnExpiredDecisionShouldGetTheNextOneEvenIfUnchanged () {
+        PixalateBlocking.BlockingResult expired = result( 0.1 );
+        expired.time = System.currentTimeMillis() - 1;
+        PixalateBlocking.lastResult = expired;
+
+        List<String> decisions = new ArrayList<>();
+        BlockingSubscription subscription = publisher.add( recorder( decisions ) );
+
+        publisher.onResult( result( 0.2 ) );
+        assertEquals( 1, decisions.size() );
+        assertEquals( "allow", decisions.get( 0 ) );
+
+        publisher.onResult( result( 0.3 ) );
+        assertEquals( 1, decisions.size() );
+
+        subscription.cancel();
+    }
+
+    @Test
+    public void cancelledSubscriptionsShouldNotBeNotified () {
+        List<String> decisions = new ArrayList<>();
+        BlockingSubscription subscription = publisher.add( recorder( decisions ) );
+
+        subscription.cancel();
+        assertTrue( subscription.isCancelled() );
+
+        publisher.onResult( result( 0.9 ) );
+        assertEquals( 1, decisions.size() );
+    }
+
+    @Test
+    public void errorsShouldNotBePublished () {
+        List<String> decisions = new ArrayList<>();
+        BlockingSubscription subscription = publisher.add( recorder( decisions ) );
+
+        PixalateBlocking.BlockingResult error = new PixalateBlocking.BlockingResult();
+        error.errorCode = 500;
+        publisher.onResult( error );
+
+        assertEquals( 1, decisions.size() );
+
+        subscription.cancel();
+    }
+
+    private static PixalateBlocking.BlockingResult result ( double probability ) {
+        PixalateBlocking.BlockingResult result = new PixalateBlocking.BlockingResult();
+        result.probability = probability;
+        result.time = System.currentTimeMillis() + 60000;
+        return result;
+    }
+
+    private static BlockingStatusListener recorder ( List<String> decisions ) {
+        return new BlockingStatusListener() {
+            @Override
+            public void onBlock () {
+                decisions.add( "block" );
+            }
+
+            @Override
+            public void onAllow () {
+                decisions.add( "allow" );
+            }
+
+            @Override
+            public void onError ( int errorCode, String message ) {
+                decisions.add( "error" );
+            }
+        };
+    }
+}
@@ -0,0 +1,85 @@
+package com.pixalate.android.blocking;
+
+import static org.junit.Assert.*;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+/**
+ * Tests the BlockingEndpointSelector class.
+ */
+@RunWith( AndroidJUnit4.class )
+public class BlockingEndpointSelectorTest {
+    @Test
+    public void unmeasuredEndpointsShouldBeProbedFirst () {
+        BlockingEndpointSelector selector = new BlockingEndpointSelector( Arrays.asList( "https://a", "https://b" ) );
+
+        assertEquals( 0, selector.select() );
+        assertEquals( 1, selector.select() );
+    }
+
+    @Test
+    public void fastestEndpointShouldBeSelected () {
+        BlockingEndpointSelector selector = measured( 200, 50 );
+
+        assertEquals( 1, selector.select() );
+        assertEquals( 0, selector.alternate( 1 ) );
+    }
+
+    @Test
+    public void fastestEndpointShouldKeepWinningWidelySpacedRequests () {
+        BlockingEndpointSelector selector = measured( 200, 50 );
+        long now = System.currentTimeMillis();
+
+        int fastest = 0;
+        for( int i = 1; i <= 2 * BlockingEndpointSelector.SELECTIONS_PER_PROBE; i++ ) {
+            if( selector.select( now + i * 2 * BlockingEndpointSelector.PROBE_INTERVAL ) == 1 ) fastest++;
+        }
+
+        // the slower endpoint is still probed now and then, but only once per so many requests.
+        assertEquals( 2 * BlockingEndpointSelector.SELECTIONS_PER_PROBE - 2, fastest );
+    }
+
+    @Test
+    public void errorsShouldOutweighSmallLatencyDifferences () {
+        BlockingEndpointSelector selector = measured( 120, 100 );
+        selector.report( 1, 100, false );
+
+        assertEquals( 0, selector.select() );
+    }
+
+    @Test
+    public void failingEndpointsShouldCoolDown () {
+        BlockingEndpointSelector selector = measured( 200, 50 );
+        for( int i = 0; i < BlockingEndpointSelector.FAILURES_BEFORE_COOLDOWN; i++ ) {
+            selector.report( 1, 50, false );
+        }
+
+        assertEquals( 0, selector.select() );
+        assertEquals( 1, selector.alternate( 0 ) );
+    }
+
+    @Test
+    public void selectorShouldBeKeptForTheSameURLs () {
+        BlockingEndpointSelector selector = new BlockingEndpointSelector( Arrays.asList( "https://a", "https://b" ) );
+
+        assertSame( selector, BlockingEndpointSelector.forURLs( Arrays.asList( "https://a", "https://b" ), selector ) );
+        assertNotSame( selector, BlockingEndpointSelector.forURLs( Arrays.asList( "https://a" ), selector ) );
+    }
+
+    private static BlockingEndpointSelector measured ( long first, long second ) {
+        BlockingEndpointSelector selector = new BlockingEndpointSelector( Arrays.asList( "https://a", "https://b" ) );
+
+        // takes both endpoints off the probe schedule.
+        selector.select();
+        selector.select();
+
+        selector.report( 0, first, true );
+        selector.report( 1, second, true );
+        return selector;
+    }
+}
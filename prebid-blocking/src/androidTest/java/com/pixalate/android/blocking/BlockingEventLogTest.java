@@ -0,0 +1,66 @@
+package com.pixalate.android.blocking;
+
+import static org.junit.Assert.*;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests the BlockingEventLog class.
+ */
+@RunWith( AndroidJUnit4.class )
+public class BlockingEventLogTest {
+
+    @After
+    public void after () {
+        BlockingEventLog.configure( 0 );
+    }
+
+    @Test
+    public void disabledLogShouldDumpNothing () {
+        BlockingEventLog.configure( 0 );
+        BlockingEventLog.record( BlockingEventLog.Event.REQUEST_STARTED );
+
+        assertEquals( "", BlockingEventLog.dump() );
+    }
+
+    @Test
+    public void eventsShouldBeDumpedOldestFirst () {
+        BlockingEventLog.configure( 8 );
+        BlockingEventLog.record( BlockingEventLog.Event.REQUEST_STARTED );
+        BlockingEventLog.record( BlockingEventLog.Event.FRAUD_RESPONSE, 200 );
+
+        String[] lines = BlockingEventLog.dump().split( "\n" );
+        assertEquals( 2, lines.length );
+        assertTrue( lines[ 0 ].trim().endsWith( "REQUEST_STARTED 0" ) );
+        assertTrue( lines[ 1 ].trim().endsWith( "FRAUD_RESPONSE 200" ) );
+    }
+
+    @Test
+    public void oldestEventsShouldBeOverwrittenWhenFull () {
+        BlockingEventLog.configure( 4 );
+        for( int i = 0; i < 10; i++ ) {
+            BlockingEventLog.record( BlockingEventLog.Event.FRAUD_RESPONSE, i );
+        }
+
+        String[] lines = BlockingEventLog.dump().split( "\n" );
+        assertEquals( 4, lines.length );
+        assertTrue( lines[ 0 ].trim().endsWith( "FRAUD_RESPONSE 6" ) );
+        assertTrue( lines[ 3 ].trim().endsWith( "FRAUD_RESPONSE 9" ) );
+    }
+
+    @Test
+    public void resizingShouldDropEvents () {
+        BlockingEventLog.configure( 4 );
+        BlockingEventLog.record( BlockingEventLog.Event.CACHE_HIT );
+
+        BlockingEventLog.configure( 4 );
+        assertFalse( BlockingEventLog.dump().isEmpty() );
+
+        BlockingEventLog.configure( 16 );
+        assertEquals( "", BlockingEventLog.dump() );
+    }
+}
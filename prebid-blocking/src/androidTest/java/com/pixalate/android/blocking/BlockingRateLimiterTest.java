@@ -0,0 +1,55 @@
+package com.pixalate.android.blocking;
+
+import static org.junit.Assert.*;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests the BlockingRateLimiter class.
+ */
+@RunWith( AndroidJUnit4.class )
+public class BlockingRateLimiterTest {
+    @Test
+    public void burstShouldBeAllowedRightAway () throws InterruptedException {
+        BlockingRateLimiter limiter = new BlockingRateLimiter( 0.001, 3 );
+
+        for( int i = 0; i < 3; i++ ) {
+            assertEquals( 0, limiter.acquire( 0 ) );
+        }
+
+        assertEquals( -1, limiter.acquire( 100 ) );
+    }
+
+    @Test
+    public void emptyBucketShouldWaitForARefill () throws InterruptedException {
+        BlockingRateLimiter limiter = new BlockingRateLimiter( 20, 1 );
+        assertEquals( 0, limiter.acquire( 0 ) );
+
+        long start = System.currentTimeMillis();
+        long waited = limiter.acquire( 1000 );
+
+        assertTrue( waited > 0 && waited <= 50 );
+        assertTrue( System.currentTimeMillis() - start >= waited );
+    }
+
+    @Test
+    public void limitersShouldBeSharedPerKey () {
+        BlockingRateLimiter limiter = BlockingRateLimiter.forKey( "shared-key", 5, 2 );
+
+        assertSame( limiter, BlockingRateLimiter.forKey( "shared-key", 5, 2 ) );
+        assertNotSame( limiter, BlockingRateLimiter.forKey( "other-key", 5, 2 ) );
+        assertNotSame( limiter, BlockingRateLimiter.forKey( "shared-key", 10, 2 ) );
+        assertNull( BlockingRateLimiter.forKey( "shared-key", 0, 1 ) );
+    }
+
+    @Test
+    public void disablingRateLimitingShouldKeepTheKeysLimiter () {
+        BlockingRateLimiter limiter = BlockingRateLimiter.forKey( "kept-key", 5, 2 );
+
+        assertNull( BlockingRateLimiter.forKey( "kept-key", 0, 0 ) );
+        assertSame( limiter, BlockingRateLimiter.forKey( "kept-key", 5, 2 ) );
+    }
+}
@@ -0,0 +1,91 @@
+package com.pixalate.android.blocking;
+
+import static org.junit.Assert.*;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Tests the BlockingRequestRecorder class.
+ */
+@RunWith( AndroidJUnit4.class )
+public class BlockingRequestRecorderTest {
+
+    @After
+    public void after () {
+        BlockingRequestRecorder.configure( 0 );
+    }
+
+    @Test
+    public void disabledRecorderShouldRecordNothing () {
+        BlockingRequestRecorder.configure( 0 );
+        BlockingRequestRecorder.record( 1000, parameters( "device" ), 0, result( 0.5 ), BlockingRequestRecorder.Source.LOOKUP );
+
+        assertTrue( BlockingRequestRecorder.snapshot().isEmpty() );
+    }
+
+    @Test
+    public void recordingsShouldSurviveARoundTrip () throws IOException {
+        BlockingRequestRecorder.configure( 8 );
+        BlockingRequestRecorder.record( 1000, parameters( "device" ), 40000000, result( 0.5 ), BlockingRequestRecorder.Source.LOOKUP );
+        BlockingRequestRecorder.record( 1250, parameters( "device" ), 200000, result( 0.5 ), BlockingRequestRecorder.Source.CACHE );
+
+        PixalateBlocking.BlockingResult error = new PixalateBlocking.BlockingResult();
+        error.errorCode = 408;
+        BlockingRequestRecorder.record( 1500, parameters( "other-device" ), 0, error, BlockingRequestRecorder.Source.ERROR );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BlockingRequestRecorder.write( BlockingRequestRecorder.snapshot(), out );
+        List<BlockingRequestRecorder.Record> records = BlockingRequestRecorder.read( new ByteArrayInputStream( out.toByteArray() ) );
+
+        assertEquals( 3, records.size() );
+        assertEquals( 1000, records.get( 0 ).time );
+        assertEquals( 1500, records.get( 2 ).time );
+        assertEquals( 40000, records.get( 0 ).latencyMicros );
+        assertEquals( 500, records.get( 0 ).answer );
+        assertEquals( BlockingRequestRecorder.Source.CACHE, records.get( 1 ).source );
+        assertEquals( 408, records.get( 2 ).answer );
+
+        assertEquals( records.get( 0 ).deviceId, records.get( 1 ).deviceId );
+        assertNotEquals( records.get( 0 ).deviceId, records.get( 2 ).deviceId );
+        assertEquals( 0, records.get( 0 ).ipv6 );
+    }
+
+    @Test
+    public void recordingsShouldNotContainParameters () throws IOException {
+        BlockingRequestRecorder.configure( 8 );
+        BlockingRequestRecorder.record( 1000, parameters( "secret-device" ), 0, result( 0.1 ), BlockingRequestRecorder.Source.LOOKUP );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BlockingRequestRecorder.write( BlockingRequestRecorder.snapshot(), out );
+
+        assertFalse( new String( out.toByteArray(), StandardCharsets.ISO_8859_1 ).contains( "secret-device" ) );
+    }
+
+    @Test( expected = IOException.class )
+    public void readingOtherDataShouldFail () throws IOException {
+        BlockingRequestRecorder.read( new ByteArrayInputStream( "not a recording".getBytes( StandardCharsets.UTF_8 ) ) );
+    }
+
+    private static PixalateBlocking.BlockingCacheParameters parameters ( String deviceId ) {
+        PixalateBlocking.BlockingCacheParameters parameters = new PixalateBlocking.BlockingCacheParameters();
+        parameters.deviceId = deviceId;
+        parameters.ipv4 = "203.0.113.7";
+        return parameters;
+    }
+
+    private static PixalateBlocking.BlockingResult result ( double probability ) {
+        PixalateBlocking.BlockingResult result = new PixalateBlocking.BlockingResult();
+        result.probability = probability;
+        return result;
+    }
+}
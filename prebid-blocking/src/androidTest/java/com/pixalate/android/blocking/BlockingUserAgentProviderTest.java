@@ -0,0 +1,102 @@
+package com.pixalate.android.blocking;
+
+import static org.junit.Assert.*;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests the BlockingUserAgentProvider class.
+ */
+@RunWith( AndroidJUnit4.class )
+public class BlockingUserAgentProviderTest {
+
+    private Context context;
+    private SharedPreferences preferences;
+
+    @Before
+    public void before () {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        preferences = context.getSharedPreferences( BlockingUserAgentProvider.PREFERENCES_NAME, Context.MODE_PRIVATE );
+        preferences.edit().clear().commit();
+        BlockingUserAgentProvider.clearMemory();
+    }
+
+    @After
+    public void after () {
+        preferences.edit().clear().commit();
+        BlockingUserAgentProvider.clearMemory();
+    }
+
+    @Test
+    public void resolvedUserAgentShouldBePersisted () throws InterruptedException {
+        String userAgent = awaitUserAgent();
+
+        assertNotNull( userAgent );
+        assertEquals( userAgent, preferences.getString( "userAgent", null ) );
+        assertEquals( BlockingUserAgentProvider.versionKey(), preferences.getString( "version", null ) );
+    }
+
+    @Test
+    public void persistedUserAgentShouldBeUsedForTheSameVersion () throws InterruptedException {
+        persist( "Persisted/1.0", BlockingUserAgentProvider.versionKey() );
+
+        assertEquals( "Persisted/1.0", awaitUserAgent() );
+    }
+
+    @Test
+    public void persistedUserAgentShouldBeResolvedAgainAfterAnUpdate () throws InterruptedException {
+        persist( "Persisted/1.0", "some other version" );
+
+        String userAgent = awaitUserAgent();
+        assertNotNull( userAgent );
+        assertNotEquals( "Persisted/1.0", userAgent );
+    }
+
+    @Test
+    public void callbacksShouldWaitForTheResolution () throws InterruptedException {
+        persist( "Persisted/1.0", BlockingUserAgentProvider.versionKey() );
+
+        AtomicReference<String> userAgent = new AtomicReference<>();
+        CountDownLatch answered = new CountDownLatch( 1 );
+        BlockingUserAgentProvider.get( context, 10000, result -> {
+            userAgent.set( result );
+            answered.countDown();
+        });
+
+        assertTrue( answered.await( 10, TimeUnit.SECONDS ) );
+        assertEquals( "Persisted/1.0", userAgent.get() );
+    }
+
+    private void persist ( String userAgent, String version ) {
+        preferences.edit()
+            .putString( "userAgent", userAgent )
+            .putString( "version", version )
+            .putLong( "resolvedAt", System.currentTimeMillis() )
+            .commit();
+    }
+
+    private String awaitUserAgent () throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+
+        String userAgent = BlockingUserAgentProvider.get( context );
+        while( userAgent == null && System.currentTimeMillis() < deadline ) {
+            Thread.sleep( 10 );
+            userAgent = BlockingUserAgentProvider.get( context );
+        }
+
+        return userAgent;
+    }
+}
@@ -0,0 +1,61 @@
+package com.pixalate.android.blocking;
+
+import static org.junit.Assert.*;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests how cache key policies derive cache keys.
+ */
+@RunWith( AndroidJUnit4.class )
+public class CacheKeyPolicyTest {
+
+    private static PixalateBlocking.BlockingCacheParameters parameters ( String ipv6, String userAgent ) {
+        PixalateBlocking.BlockingCacheParameters params = new PixalateBlocking.BlockingCacheParameters();
+        params.deviceId = "device";
+        params.ipv4 = "1.2.3.4";
+        params.ipv6 = ipv6;
+        params.userAgent = userAgent;
+        params.mode = PixalateBlocking.BlockingMode.DEFAULT;
+        return params;
+    }
+
+    @Test
+    public void allFieldsShouldKeyOnEveryParameter () {
+        PixalateBlocking.BlockingCacheParameters params = parameters( "2001:db8::1", "agent" );
+
+        assertSame( params, params.toKey( CacheKeyPolicy.ALL_FIELDS, 128 ) );
+        assertNotEquals(
+            params.toKey( CacheKeyPolicy.ALL_FIELDS, 128 ),
+            parameters( "2001:db8::1", "other-agent" ).toKey( CacheKeyPolicy.ALL_FIELDS, 128 ) );
+    }
+
+    @Test
+    public void looserPoliciesShouldIgnoreLeftOutFields () {
+        PixalateBlocking.BlockingCacheParameters a = parameters( "2001:db8::1", "agent" );
+        PixalateBlocking.BlockingCacheParameters b = parameters( "2001:db8::2", "other-agent" );
+
+        assertNotEquals( a.toKey( CacheKeyPolicy.DEVICE_AND_IP, 128 ), b.toKey( CacheKeyPolicy.DEVICE_AND_IP, 128 ) );
+        assertEquals( a.toKey( CacheKeyPolicy.DEVICE_AND_IPV4, 128 ), b.toKey( CacheKeyPolicy.DEVICE_AND_IPV4, 128 ) );
+        assertEquals( a.toKey( CacheKeyPolicy.DEVICE_ONLY, 128 ), b.toKey( CacheKeyPolicy.DEVICE_ONLY, 128 ) );
+    }
+
+    @Test
+    public void ipv6PrefixShouldIgnoreInterfaceIdentifier () {
+        PixalateBlocking.BlockingCacheParameters a = parameters( "2001:db8:0:1:aaaa::1", null );
+        PixalateBlocking.BlockingCacheParameters b = parameters( "2001:db8:0:1:bbbb::2", null );
+        PixalateBlocking.BlockingCacheParameters c = parameters( "2001:db8:0:2:aaaa::1", null );
+
+        assertEquals( a.toKey( CacheKeyPolicy.ALL_FIELDS, 64 ), b.toKey( CacheKeyPolicy.ALL_FIELDS, 64 ) );
+        assertNotEquals( a.toKey( CacheKeyPolicy.ALL_FIELDS, 64 ), c.toKey( CacheKeyPolicy.ALL_FIELDS, 64 ) );
+    }
+
+    @Test
+    public void normalizationShouldLeaveNonIPv6ValuesAlone () {
+        assertNull( PixalateBlocking.BlockingCacheParameters.normalizeIPv6( null, 64 ) );
+        assertEquals( "1.2.3.4", PixalateBlocking.BlockingCacheParameters.normalizeIPv6( "1.2.3.4", 64 ) );
+    }
+}
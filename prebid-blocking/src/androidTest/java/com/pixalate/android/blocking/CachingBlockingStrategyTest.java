@@ -0,0 +1,150 @@
+package com.pixalate.android.blocking;
+
+import static org.junit.Assert.*;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the CachingBlockingStrategy class.
+ */
+@RunWith( AndroidJUnit4.class )
+public class CachingBlockingStrategyTest {
+
+    private Context context;
+
+    @Before
+    public void before () {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    }
+
+    @Test
+    public void cachedValuesShouldNotCallTheDelegateAgain () {
+        AtomicInteger calls = new AtomicInteger();
+        CachingBlockingStrategy strategy = new CachingBlockingStrategy.Builder( new BlockingStrategy() {
+            @Override
+            public void getIPv4 ( Context context, BlockingStrategyCallback callback ) {
+                calls.incrementAndGet();
+                callback.done( "1.2.3.4" );
+            }
+        } ).build();
+
+        List<String> results = new ArrayList<>();
+        strategy.getIPv4( context, results::add );
+        strategy.getIPv4( context, results::add );
+
+        assertEquals( 1, calls.get() );
+        assertEquals( "1.2.3.4", results.get( 0 ) );
+        assertEquals( "1.2.3.4", results.get( 1 ) );
+    }
+
+    @Test
+    public void concurrentFetchesShouldBeCoalesced () throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        List<BlockingStrategyCallback> pending = new ArrayList<>();
+        CachingBlockingStrategy strategy = new CachingBlockingStrategy.Builder( new BlockingStrategy() {
+            @Override
+            public void getDeviceID ( Context context, BlockingStrategyCallback callback ) {
+                calls.incrementAndGet();
+                pending.add( callback );
+            }
+        } ).build();
+
+        CountDownLatch latch = new CountDownLatch( 2 );
+        strategy.getDeviceID( context, result -> latch.countDown() );
+        strategy.getDeviceID( context, result -> latch.countDown() );
+
+        assertEquals( 1, calls.get() );
+
+        pending.get( 0 ).done( "device" );
+        assertTrue( latch.await( 1, TimeUnit.SECONDS ) );
+    }
+
+    @Test
+    public void slowCallsShouldTimeOutAndCacheLateAnswers () throws InterruptedException {
+        List<BlockingStrategyCallback> pending = new ArrayList<>();
+        CachingBlockingStrategy strategy = new CachingBlockingStrategy.Builder( new BlockingStrategy() {
+            @Override
+            public void getUserAgent ( Context context, BlockingStrategyCallback callback ) {
+                pending.add( callback );
+            }
+        } ).setCallTimeout( 50 ).build();
+
+        CountDownLatch latch = new CountDownLatch( 1 );
+        List<String> results = new ArrayList<>();
+        strategy.getUserAgent( context, result -> {
+            results.add( result );
+            latch.countDown();
+        });
+
+        assertTrue( latch.await( 1, TimeUnit.SECONDS ) );
+        assertNull( results.get( 0 ) );
+
+        pending.get( 0 ).done( "agent" );
+
+        strategy.getUserAgent( context, results::add );
+        assertEquals( 1, pending.size() );
+        assertEquals( "agent", results.get( 1 ) );
+    }
+
+    @Test
+    public void callTimeoutShouldDefaultToTheRequestTimeout () throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        CachingBlockingStrategy strategy = new CachingBlockingStrategy.Builder( new BlockingStrategy() {
+            @Override
+            public void getIPv4 ( Context context, BlockingStrategyCallback callback ) {
+                // never answers.
+                calls.incrementAndGet();
+            }
+        } ).build();
+
+        new BlockingConfig.Builder( "" )
+            .setRequestTimeout( 50 )
+            .setBlockingStrategy( strategy )
+            .build();
+
+        // a fetch that never finishes must not hold up later requests for the parameter.
+        for( int i = 0; i < 2; i++ ) {
+            CountDownLatch latch = new CountDownLatch( 1 );
+            List<String> results = new ArrayList<>();
+            strategy.getIPv4( context, result -> {
+                results.add( result );
+                latch.countDown();
+            });
+
+            assertTrue( latch.await( 1, TimeUnit.SECONDS ) );
+            assertNull( results.get( 0 ) );
+        }
+
+        assertEquals( 2, calls.get() );
+    }
+
+    @Test
+    public void zeroTtlShouldDisableCaching () {
+        AtomicInteger calls = new AtomicInteger();
+        CachingBlockingStrategy strategy = new CachingBlockingStrategy.Builder( new BlockingStrategy() {
+            @Override
+            public void getIPv6 ( Context context, BlockingStrategyCallback callback ) {
+                calls.incrementAndGet();
+                callback.done( "::1" );
+            }
+        } ).setTTL( BlockingStrategy.Parameter.IPV6, 0 ).build();
+
+        strategy.getIPv6( context, result -> {} );
+        strategy.getIPv6( context, result -> {} );
+
+        assertEquals( 2, calls.get() );
+    }
+}
@@ -0,0 +1,100 @@
+package com.pixalate.android.blocking;
+
+import static org.junit.Assert.*;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests the CompactResultTable class.
+ */
+@RunWith( AndroidJUnit4.class )
+public class CompactResultTableTest {
+    @Test
+    public void storedResultsShouldBeReturned () {
+        CompactResultTable table = new CompactResultTable();
+        table.put( 1, 2, 0.5, 2000 );
+
+        PixalateBlocking.BlockingResult result = new PixalateBlocking.BlockingResult();
+        assertTrue( table.get( 1, 2, 1000, result ) );
+        assertEquals( 0.5, result.probability, 0 );
+        assertEquals( 2000, result.time );
+
+        assertFalse( table.get( 1, 3, 1000, new PixalateBlocking.BlockingResult() ) );
+    }
+
+    @Test
+    public void lookupsShouldAllocateOnlyOnHits () {
+        CompactResultTable table = new CompactResultTable();
+        table.put( 1, 2, 0.5, 2000 );
+
+        PixalateBlocking.BlockingResult result = table.get( 1, 2, 1000 );
+        assertNotNull( result );
+        assertEquals( 0.5, result.probability, 0 );
+        assertEquals( 2000, result.time );
+
+        assertNull( table.get( 1, 3, 1000 ) );
+        assertNull( table.get( 1, 2, 2000 ) );
+        assertEquals( 0, table.size() );
+    }
+
+    @Test
+    public void expiredResultsShouldBeRemovedOnLookup () {
+        CompactResultTable table = new CompactResultTable();
+        table.put( 1, 2, 0.5, 2000 );
+
+        assertFalse( table.get( 1, 2, 2000, new PixalateBlocking.BlockingResult() ) );
+        assertEquals( 0, table.size() );
+    }
+
+    @Test
+    public void tableShouldMatchAHashMapUnderRandomOperations () {
+        CompactResultTable table = new CompactResultTable();
+        Map<Long,Long> reference = new HashMap<>();
+        Random random = new Random( 42 );
+
+        for( int i = 0; i < 20000; i++ ) {
+            // a small key space, so that probe chains collide, wrap and get shifted on removal.
+            long key = 1 + random.nextInt( 200 );
+            long now = i;
+
+            if( random.nextBoolean() ) {
+                long expiry = now + 1 + random.nextInt( 500 );
+                table.put( key, key * 31, key, expiry );
+                reference.put( key, expiry );
+            } else {
+                Long expiry = reference.get( key );
+                boolean expected = expiry != null && expiry > now;
+                if( expiry != null && !expected ) reference.remove( key );
+
+                PixalateBlocking.BlockingResult result = new PixalateBlocking.BlockingResult();
+                assertEquals( expected, table.get( key, key * 31, now, result ) );
+                if( expected ) {
+                    assertEquals( (double) key, result.probability, 0 );
+                }
+            }
+        }
+    }
+
+    @Test
+    public void removeExpiredShouldOnlyRemoveExpiredEntries () {
+        CompactResultTable table = new CompactResultTable();
+
+        for( int i = 1; i <= 100; i++ ) {
+            table.put( i, i, 0, i <= 60 ? 10 : 1000 );
+        }
+
+        assertEquals( 60, table.removeExpired( 500 ) );
+        assertEquals( 40, table.size() );
+
+        for( int i = 61; i <= 100; i++ ) {
+            assertTrue( table.get( i, i, 500, new PixalateBlocking.BlockingResult() ) );
+        }
+    }
+}
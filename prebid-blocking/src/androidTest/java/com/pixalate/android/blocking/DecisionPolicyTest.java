@@ -0,0 +1,55 @@
+package com.pixalate.android.blocking;
+
+import static org.junit.Assert.*;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests the DecisionPolicy class.
+ */
+@RunWith( AndroidJUnit4.class )
+public class DecisionPolicyTest {
+    @Test
+    public void alwaysShouldNeverReuse () {
+        for( int i = 1; i < 100; i++ ) {
+            assertFalse( DecisionPolicy.always().shouldReuse( i ) );
+        }
+    }
+
+    @Test
+    public void oncePerSessionShouldAlwaysReuse () {
+        for( int i = 1; i < 100; i++ ) {
+            assertTrue( DecisionPolicy.oncePerSession().shouldReuse( i ) );
+        }
+    }
+
+    @Test
+    public void everyNRequestsShouldRecheckOnTheNthRequest () {
+        DecisionPolicy policy = DecisionPolicy.everyNRequests( 3 );
+
+        assertTrue( policy.shouldReuse( 1 ) );
+        assertTrue( policy.shouldReuse( 2 ) );
+        assertFalse( policy.shouldReuse( 3 ) );
+    }
+
+    @Test
+    public void sampleShouldHonorTheExtremes () {
+        for( int i = 1; i < 100; i++ ) {
+            assertTrue( DecisionPolicy.sample( 0 ).shouldReuse( i ) );
+            assertFalse( DecisionPolicy.sample( 1 ).shouldReuse( i ) );
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void everyNRequestsShouldThrowWhenLessThanOne () {
+        DecisionPolicy.everyNRequests( 0 );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sampleShouldThrowWhenOutOfRange () {
+        DecisionPolicy.sample( 1.5 );
+    }
+}
@@ -0,0 +1,124 @@
+package com.pixalate.android.blocking;
+
+import static org.junit.Assert.*;
+
+import android.content.Context;
+import android.os.Debug;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+/**
+ * Counts the objects allocated by requests answered from the cache, and fails if the average goes over budget,
+ * so that frequent ad refreshes do not cause GC churn. Counts are logged under the "PixalateAllocations" tag.
+ * The runtime counts allocations on every thread, so the budget leaves some room for unrelated allocations.
+ */
+@LargeTest
+@RunWith( AndroidJUnit4.class )
+public class PixalateBlockingAllocationTest {
+
+    private static final String TAG = "PixalateAllocations";
+
+    private static final int WARMUP_REQUESTS = 200;
+    private static final int REQUESTS = 1000;
+    private static final int ALLOCATIONS_PER_REQUEST_BUDGET = 12;
+
+    @Test
+    public void cacheHitsShouldAllocateAlmostNothing () throws InterruptedException {
+        BlockingTransport transport = ( request, callback ) -> {
+            callback.onResponse( new BlockingTransport.Response( 200, "OK", "{\"probability\":0.1}" ) );
+            return () -> {};
+        };
+
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PixalateBlocking.initialize( appContext, new BlockingConfig.Builder( "" )
+            .setTransport( transport )
+            .setCallbackExecutor( BlockingConfig.DIRECT_EXECUTOR )
+            .setBlockingStrategy( new FixedStrategy() )
+            .build() );
+
+        CountingListener listener = new CountingListener();
+
+        for( int i = 1; i <= WARMUP_REQUESTS; i++ ) {
+            PixalateBlocking.requestBlockStatus( listener );
+            listener.await( i );
+        }
+
+        Debug.startAllocCounting();
+        Debug.resetGlobalAllocCount();
+
+        for( int i = 1; i <= REQUESTS; i++ ) {
+            PixalateBlocking.requestBlockStatus( listener );
+            listener.await( WARMUP_REQUESTS + i );
+        }
+
+        int allocations = Debug.getGlobalAllocCount();
+        Debug.stopAllocCounting();
+
+        double perRequest = (double) allocations / REQUESTS;
+        Log.i( TAG, String.format( Locale.US, "cache hit: %.2f allocations per request", perRequest ) );
+
+        assertTrue( "Cache hits allocated " + perRequest + " objects per request", perRequest <= ALLOCATIONS_PER_REQUEST_BUDGET );
+    }
+
+    /**
+     * Returns constant parameters, so the strategy itself allocates nothing.
+     */
+    private static final class FixedStrategy implements BlockingStrategy {
+        @Override
+        public void getDeviceID ( Context context, BlockingStrategyCallback callback ) {
+            callback.done( "00000000-0000-0000-0000-000000000000" );
+        }
+
+        @Override
+        public void getIPv4 ( Context context, BlockingStrategyCallback callback ) {
+            callback.done( "203.0.113.7" );
+        }
+
+        @Override
+        public void getIPv6 ( Context context, BlockingStrategyCallback callback ) {
+            callback.done( "2001:db8::7" );
+        }
+
+        @Override
+        public void getUserAgent ( Context context, BlockingStrategyCallback callback ) {
+            callback.done( "Mozilla/5.0" );
+        }
+    }
+
+    /**
+     * Counts decisions without allocating, unlike a latch per request.
+     */
+    private static final class CountingListener implements BlockingStatusListener {
+        private int decisions;
+
+        @Override
+        public synchronized void onAllow () {
+            decisions++;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void onBlock () {
+            decisions++;
+            notifyAll();
+        }
+
+        synchronized void await ( int count ) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+
+            while( decisions < count ) {
+                long remaining = deadline - System.currentTimeMillis();
+                assertTrue( "Timed out waiting for a decision", remaining > 0 );
+                wait( remaining );
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.pixalate.android.blocking;
+
+import static org.junit.Assert.*;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives thousands of concurrent block status requests against a local stub of the fraud API,
+ * and logs throughput, latency percentiles, rejections, cache hit ratio and thread counts under the
+ * "PixalateLoadTest" tag. Adjust the constants and the stub's settings to explore other load shapes.
+ */
+@LargeTest
+@RunWith( AndroidJUnit4.class )
+public class PixalateBlockingLoadTest {
+
+    private static final String TAG = "PixalateLoadTest";
+
+    private static final int REQUESTS = 5000;
+    private static final int CALLERS = 32;
+    private static final int IDENTITIES = 200;
+
+    private StubFraudServer server;
+
+    @Before
+    public void before () throws Exception {
+        server = new StubFraudServer()
+            .setLatency( StubFraudServer.logNormal( 40, 0.5 ) )
+            .setErrorRate( 0.01 )
+            .setProbability( 0, 1 );
+
+        PixalateBlocking.setLogLevel( PixalateBlocking.LogLevel.INFO );
+    }
+
+    @After
+    public void after () throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void defaultStrategyUnderLoad () throws InterruptedException {
+        BlockingConfig config = new BlockingConfig.Builder( "load-test" )
+            .setFraudURL( server.getFraudURL() )
+            .setIPv4URL( server.getIPv4URL() )
+            .setIPv6URL( server.getIPv6URL() )
+            .setCallbackExecutor( BlockingConfig.DIRECT_EXECUTOR )
+            .build();
+
+        Report report = run( "default strategy", config );
+
+        assertEquals( REQUESTS, report.completed );
+        assertTrue( report.completed > 0 );
+    }
+
+    @Test
+    public void manyIdentitiesUnderLoad () throws InterruptedException {
+        BlockingStrategy strategy = new BlockingStrategy() {
+            @Override
+            public void getDeviceID ( Context context, BlockingStrategyCallback callback ) {
+                callback.done( "device-" + ThreadLocalRandom.current().nextInt( IDENTITIES ) );
+            }
+        };
+
+        BlockingConfig config = new BlockingConfig.Builder( "load-test" )
+            .setFraudURL( server.getFraudURL() )
+            .setCallbackExecutor( BlockingConfig.DIRECT_EXECUTOR )
+            .setCompactCacheEnabled( true )
+            .setBlockingStrategy( strategy )
+            .build();
+
+        Report report = run( "many identities", config );
+
+        assertEquals( REQUESTS, report.completed );
+        assertTrue( server.fraudRequests.get() <= report.completed );
+    }
+
+    private Report run ( String name, BlockingConfig config ) throws InterruptedException {
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PixalateBlocking.initialize( appContext, config );
+
+        BlockingStats before = PixalateBlocking.getStats();
+        long fraudBefore = server.fraudRequests.get();
+
+        Report report = new Report();
+        long[] latencies = new long[ REQUESTS ];
+        AtomicInteger recorded = new AtomicInteger();
+        AtomicInteger peakThreads = new AtomicInteger( Thread.activeCount() );
+        AtomicInteger peakExecutorThreads = new AtomicInteger();
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch finished = new CountDownLatch( REQUESTS );
+
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate( () -> {
+            peakThreads.accumulateAndGet( Thread.activeCount(), Math::max );
+            peakExecutorThreads.accumulateAndGet( PixalateBlocking.getStats().getExecutorThreadCount(), Math::max );
+        }, 0, 10, TimeUnit.MILLISECONDS );
+
+        ExecutorService callers = Executors.newFixedThreadPool( CALLERS );
+        long start = System.nanoTime();
+
+        for( int i = 0; i < REQUESTS; i++ ) {
+            callers.execute( () -> {
+                long sent = System.nanoTime();
+                Runnable done = () -> {
+                    latencies[ recorded.getAndIncrement() ] = System.nanoTime() - sent;
+                    finished.countDown();
+                };
+
+                // requests the SDK cannot take on are answered with an error, counted as failures.
+                PixalateBlocking.requestBlockStatus( new BlockingStatusListener() {
+                    @Override
+                    public void onBlock () {
+                        done.run();
+                    }
+
+                    @Override
+                    public void onAllow () {
+                        done.run();
+                    }
+
+                    @Override
+                    public void onError ( int errorCode, String message ) {
+                        errors.incrementAndGet();
+                        done.run();
+                    }
+                });
+            });
+        }
+
+        assertTrue( "Requests did not finish in time.", finished.await( 5, TimeUnit.MINUTES ) );
+
+        long elapsed = System.nanoTime() - start;
+        callers.shutdown();
+        sampler.shutdownNow();
+
+        BlockingStats after = PixalateBlocking.getStats();
+        long hits = after.getCacheHits() - before.getCacheHits();
+        long misses = after.getCacheMisses() - before.getCacheMisses();
+
+        report.completed = recorded.get();
+
+        long[] completed = Arrays.copyOf( latencies, report.completed );
+        Arrays.sort( completed );
+
+        Log.i( TAG, String.format( Locale.US,
+            "%s: %d requests in %.1fs (%.0f/s), %d completed, %d errors",
+            name, REQUESTS, elapsed / 1e9, report.completed / ( elapsed / 1e9 ), report.completed, errors.get() ) );
+        Log.i( TAG, String.format( Locale.US,
+            "%s: latency p50 %.1fms, p90 %.1fms, p99 %.1fms, max %.1fms",
+            name, percentile( completed, 0.5 ), percentile( completed, 0.9 ), percentile( completed, 0.99 ), percentile( completed, 1 ) ) );
+        Log.i( TAG, String.format( Locale.US,
+            "%s: cache hit ratio %.3f (%d hits, %d misses), %d fraud API calls, %d IP lookups",
+            name, hits + misses == 0 ? 0 : (double) hits / ( hits + misses ), hits, misses,
+            server.fraudRequests.get() - fraudBefore, server.ipRequests.get() ) );
+        Log.i( TAG, String.format( Locale.US,
+            "%s: peak %d threads in process, peak %d executor threads",
+            name, peakThreads.get(), peakExecutorThreads.get() ) );
+
+        return report;
+    }
+
+    private static double percentile ( long[] sorted, double percentile ) {
+        if( sorted.length == 0 ) return 0;
+
+        int index = (int) Math.min( sorted.length - 1, Math.ceil( percentile * sorted.length ) - 1 );
+        return sorted[ Math.max( index, 0 ) ] / 1e6;
+    }
+
+    private static final class Report {
+        int completed;
+    }
+}
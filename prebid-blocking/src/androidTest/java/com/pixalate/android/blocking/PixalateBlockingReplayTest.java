@@ -0,0 +1,145 @@
+package com.pixalate.android.blocking;
+
+import static org.junit.Assert.*;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a request recording against a local stub of the fraud API with the current config and with an alternative one,
+ * and logs API calls, cache hit ratio and latency percentiles for both under the "PixalateReplay" tag.
+ * Pass the path of a recording written by {@link PixalateBlocking#writeRequestRecording} as the "recording" instrumentation
+ * argument to replay real traffic; without one, a short recording of synthetic traffic is made first.
+ * Adjust {@link #alternativeConfig} to compare the configs you are interested in.
+ */
+@LargeTest
+@RunWith( AndroidJUnit4.class )
+public class PixalateBlockingReplayTest {
+
+    private static final String TAG = "PixalateReplay";
+
+    private static final int RECORDED_REQUESTS = 500;
+    private static final int IDENTITIES = 20;
+    private static final double SPEED = 10;
+
+    private StubFraudServer server;
+    private Context context;
+
+    @Before
+    public void before () throws IOException {
+        server = new StubFraudServer().setProbability( 0, 1 );
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    }
+
+    @After
+    public void after () throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void replayShouldCompareConfigs () throws IOException, InterruptedException {
+        List<BlockingRequestRecorder.Record> records = loadRecording();
+        RequestReplayer replayer = new RequestReplayer( records, server ).setSpeed( SPEED );
+        server.setLatency( StubFraudServer.empirical( replayer.recordedLookupLatencies() ) );
+
+        replayer.recorded().log( TAG, "recorded" );
+
+        RequestReplayer.Report current = replayer.replay( context, new BlockingConfig.Builder( "replay" ) );
+        current.log( TAG, "current config" );
+
+        RequestReplayer.Report alternative = replayer.replay( context, alternativeConfig() );
+        alternative.log( TAG, "alternative config" );
+
+        assertEquals( replayer.recorded().completed, current.completed );
+        assertEquals( replayer.recorded().completed, alternative.completed );
+    }
+
+    private static BlockingConfig.Builder alternativeConfig () {
+        return new BlockingConfig.Builder( "replay" )
+            .setCacheKeyPolicy( CacheKeyPolicy.DEVICE_ONLY );
+    }
+
+    private List<BlockingRequestRecorder.Record> loadRecording () throws IOException, InterruptedException {
+        String path = InstrumentationRegistry.getArguments().getString( "recording" );
+        if( path != null ) {
+            try( InputStream in = new FileInputStream( path ) ) {
+                return BlockingRequestRecorder.read( in );
+            }
+        }
+
+        return recordSyntheticTraffic();
+    }
+
+    /**
+     * Records requests from a handful of devices whose IPv4 address changes now and then.
+     */
+    private List<BlockingRequestRecorder.Record> recordSyntheticTraffic () throws IOException, InterruptedException {
+        server.setLatency( StubFraudServer.logNormal( 40, 0.5 ) );
+
+        BlockingStrategy strategy = new BlockingStrategy() {
+            @Override
+            public void getDeviceID ( Context context, BlockingStrategyCallback callback ) {
+                callback.done( "device-" + ThreadLocalRandom.current().nextInt( IDENTITIES ) );
+            }
+
+            @Override
+            public void getIPv4 ( Context context, BlockingStrategyCallback callback ) {
+                callback.done( "203.0.113." + ThreadLocalRandom.current().nextInt( 4 ) );
+            }
+        };
+
+        PixalateBlocking.initialize( context, new BlockingConfig.Builder( "replay" )
+            .setFraudURL( server.getFraudURL() )
+            .setBlockingStrategy( strategy )
+            .setCallbackExecutor( BlockingConfig.DIRECT_EXECUTOR )
+            .setRequestRecordingSize( RECORDED_REQUESTS )
+            .build() );
+
+        CountDownLatch finished = new CountDownLatch( RECORDED_REQUESTS );
+        BlockingStatusListener listener = new BlockingStatusListener() {
+            @Override
+            public void onBlock () {
+                finished.countDown();
+            }
+
+            @Override
+            public void onAllow () {
+                finished.countDown();
+            }
+
+            @Override
+            public void onError ( int errorCode, String message ) {
+                finished.countDown();
+            }
+        };
+
+        for( int i = 0; i < RECORDED_REQUESTS; i++ ) {
+            PixalateBlocking.requestBlockStatus( listener );
+            Thread.sleep( 10 );
+        }
+
+        assertTrue( "Recorded requests did not finish in time.", finished.await( 1, TimeUnit.MINUTES ) );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PixalateBlocking.writeRequestRecording( out );
+        return BlockingRequestRecorder.read( new ByteArrayInputStream( out.toByteArray() ) );
+    }
+}
@@ -2,6 +2,7 @@ package com.pixalate.android.blocking;
 
 import static com.pixalate.android.blocking.PixalateBlocking.*;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 
 import androidx.test.platform.app.InstrumentationRegistry;
@@ -13,8 +14,16 @@ import org.junit.runner.RunWith;
 
 import static org.junit.Assert.*;
 
+import java.io.IOException;
 import java.lang.reflect.Field;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Tests the PixalateBlocking class.
@@ -50,7 +59,7 @@ public class PixalateBlockingTest {
 
         Field queue = PixalateBlocking.class.getDeclaredField( "queue" );
         queue.setAccessible( true );
-        queue.set( null, new ArrayBlockingQueue<>( 4 ) );
+        queue.set( null, new LinkedBlockingQueue<>() );
     }
 
     @Test(expected = IllegalStateException.class)
@@ -124,4 +133,773 @@ public class PixalateBlockingTest {
 
         assertEquals( config2, PixalateBlocking.getGlobalConfig() );
     }
-}
\ No newline at end of file
+
+    @Test
+    public void trimmingMemoryShouldEvictByLevel () {
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PixalateBlocking.initialize( appContext, new BlockingConfig.Builder( "" ).build() );
+
+        long now = System.currentTimeMillis();
+        cachedResults.put( cacheKey( "expired" ), cachedResult( now - 1, now ) );
+        cachedResults.put( cacheKey( "cold" ), cachedResult( now + 60000, now - BlockingRefreshScheduler.HOT_ENTRY_WINDOW - 1 ) );
+        cachedResults.put( cacheKey( "hot" ), cachedResult( now + 60000, now ) );
+
+        trimMemory( ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW );
+        assertEquals( 2, getStats().getCachedResultCount() );
+
+        trimMemory( ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN );
+        assertEquals( 1, getStats().getCachedResultCount() );
+        assertTrue( cachedResults.containsKey( cacheKey( "hot" ) ) );
+
+        trimMemory( ComponentCallbacks2.TRIM_MEMORY_BACKGROUND );
+        assertEquals( 0, getStats().getCachedResultCount() );
+        assertEquals( 0, getStats().getEstimatedCacheBytes() );
+    }
+
+    @Test
+    public void requestsShouldGoThroughTheConfiguredTransport () throws InterruptedException {
+        List<BlockingTransport.Request> requests = new ArrayList<>();
+        BlockingTransport transport = ( request, callback ) -> {
+            requests.add( request );
+            callback.onResponse( new BlockingTransport.Response( 200, "OK", "{\"probability\":0.9}" ) );
+            return () -> {};
+        };
+
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PixalateBlocking.initialize( appContext, new BlockingConfig.Builder( "some-api-key" )
+            .setTransport( transport )
+            .setCallbackExecutor( BlockingConfig.DIRECT_EXECUTOR )
+            .setBlockingStrategy( new BlockingStrategy() {} )
+            .build() );
+
+        CountDownLatch blocked = new CountDownLatch( 1 );
+        requestBlockStatus( new BlockingStatusListener() {
+            @Override
+            public void onBlock () {
+                blocked.countDown();
+            }
+        });
+
+        assertTrue( blocked.await( 5, TimeUnit.SECONDS ) );
+        assertEquals( 1, requests.size() );
+        assertEquals( "some-api-key", requests.get( 0 ).getHeaders().get( "X-Api-Key" ) );
+        assertTrue( requests.get( 0 ).getUrl().startsWith( BlockingConfig.DEFAULT_FRAUD_URL ) );
+    }
+
+    @Test
+    public void serverInferredIPShouldSkipIPLookups () throws InterruptedException {
+        List<BlockingTransport.Request> requests = new ArrayList<>();
+        BlockingTransport transport = ( request, callback ) -> {
+            requests.add( request );
+            callback.onResponse( new BlockingTransport.Response( 200, "OK", "{\"probability\":0.1}" ) );
+            return () -> {};
+        };
+
+        AtomicInteger ipLookups = new AtomicInteger();
+        initializeWithTransport( transport, ipLookups );
+
+        CountDownLatch allowed = new CountDownLatch( 1 );
+        requestBlockStatus( new BlockingStatusListener() {
+            @Override
+            public void onAllow () {
+                allowed.countDown();
+            }
+        });
+
+        assertTrue( allowed.await( 5, TimeUnit.SECONDS ) );
+        assertEquals( 0, ipLookups.get() );
+        assertEquals( 1, requests.size() );
+        assertFalse( requests.get( 0 ).getUrl().contains( "ip=" ) );
+    }
+
+    @Test
+    public void serverInferredIPShouldFallBackToIPLookups () throws InterruptedException {
+        List<BlockingTransport.Request> requests = new ArrayList<>();
+        BlockingTransport transport = ( request, callback ) -> {
+            requests.add( request );
+            if( requests.size() == 1 ) {
+                callback.onResponse( new BlockingTransport.Response( 400, "Bad Request", null ) );
+            } else {
+                callback.onResponse( new BlockingTransport.Response( 200, "OK", "{\"probability\":0.1}" ) );
+            }
+            return () -> {};
+        };
+
+        AtomicInteger ipLookups = new AtomicInteger();
+        initializeWithTransport( transport, ipLookups );
+
+        CountDownLatch allowed = new CountDownLatch( 1 );
+        requestBlockStatus( new BlockingStatusListener() {
+            @Override
+            public void onAllow () {
+                allowed.countDown();
+            }
+        });
+
+        assertTrue( allowed.await( 5, TimeUnit.SECONDS ) );
+        assertEquals( 2, ipLookups.get() );
+        assertEquals( 2, requests.size() );
+        assertTrue( requests.get( 1 ).getUrl().contains( "ip=203.0.113.7" ) );
+    }
+
+    @Test
+    public void ipLookupFallbackShouldKeepToTheTimeout () throws InterruptedException {
+        BlockingTransport transport = ( request, callback ) -> {
+            callback.onResponse( new BlockingTransport.Response( 400, "Bad Request", null ) );
+            return () -> {};
+        };
+
+        // answers synchronously, long after the request timed out.
+        BlockingStrategy strategy = new BlockingStrategy() {
+            @Override
+            public void getIPv4 ( Context context, BlockingStrategyCallback callback ) {
+                try {
+                    Thread.sleep( 2000 );
+                } catch( InterruptedException ignored ) {}
+                callback.done( "203.0.113.7" );
+            }
+        };
+
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PixalateBlocking.initialize( appContext, new BlockingConfig.Builder( "" )
+            .setTransport( transport )
+            .setRequestTimeout( 300 )
+            .setServerInferredIPEnabled( true )
+            .setCallbackExecutor( BlockingConfig.DIRECT_EXECUTOR )
+            .setBlockingStrategy( strategy )
+            .build() );
+
+        CountDownLatch failed = new CountDownLatch( 1 );
+        requestBlockStatus( new BlockingStatusListener() {
+            @Override
+            public void onError ( int errorCode, String message ) {
+                failed.countDown();
+            }
+        });
+
+        assertTrue( failed.await( 1, TimeUnit.SECONDS ) );
+    }
+
+    @Test
+    public void placementsShouldShareOneLookup () throws InterruptedException {
+        List<BlockingTransport.Request> requests = new ArrayList<>();
+        BlockingTransport transport = ( request, callback ) -> {
+            requests.add( request );
+            callback.onResponse( new BlockingTransport.Response( 200, "OK", "{\"probability\":0.5}" ) );
+            return () -> {};
+        };
+
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PixalateBlocking.initialize( appContext, new BlockingConfig.Builder( "" )
+            .setTransport( transport )
+            .setPlacementThreshold( "interstitial", 0.3 )
+            .setPlacementThreshold( "banner", 0.9 )
+            .setPlacementMode( "test", BlockingMode.ALWAYS_BLOCK )
+            .setCallbackExecutor( BlockingConfig.DIRECT_EXECUTOR )
+            .setBlockingStrategy( new BlockingStrategy() {} )
+            .build() );
+
+        List<String> decisions = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch( 4 );
+        for( String placement : new String[] { "interstitial", "banner", "test", "unknown" } ) {
+            requestBlockStatus( placement, new BlockingStatusListener() {
+                @Override
+                public void onBlock () {
+                    decisions.add( placement + ":block" );
+                    done.countDown();
+                }
+
+                @Override
+                public void onAllow () {
+                    decisions.add( placement + ":allow" );
+                    done.countDown();
+                }
+            });
+        }
+
+        assertTrue( done.await( 5, TimeUnit.SECONDS ) );
+        assertEquals( 1, requests.size() );
+        assertTrue( decisions.contains( "interstitial:block" ) );
+        assertTrue( decisions.contains( "banner:allow" ) );
+        assertTrue( decisions.contains( "test:block" ) );
+        assertTrue( decisions.contains( "unknown:allow" ) );
+    }
+
+    @Test
+    public void rateLimitedRequestsShouldGetTheFallbackDecision () throws InterruptedException {
+        List<BlockingTransport.Request> requests = new ArrayList<>();
+        BlockingTransport transport = ( request, callback ) -> {
+            requests.add( request );
+            callback.onResponse( new BlockingTransport.Response( 503, "Service Unavailable", null ) );
+            return () -> {};
+        };
+
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PixalateBlocking.initialize( appContext, new BlockingConfig.Builder( "rate-limited-key" )
+            .setTransport( transport )
+            .setRateLimit( 0.001, 1 )
+            .setRateLimitFallback( FallbackDecision.BLOCK )
+            .setCallbackExecutor( BlockingConfig.DIRECT_EXECUTOR )
+            .setBlockingStrategy( new BlockingStrategy() {} )
+            .build() );
+
+        long limited = PixalateBlocking.getStats().getRateLimitedRequestCount();
+
+        CountDownLatch failed = new CountDownLatch( 1 );
+        requestBlockStatus( new BlockingStatusListener() {
+            @Override
+            public void onError ( int errorCode, String message ) {
+                failed.countDown();
+            }
+        });
+        assertTrue( failed.await( 5, TimeUnit.SECONDS ) );
+
+        CountDownLatch blocked = new CountDownLatch( 1 );
+        requestBlockStatus( new BlockingStatusListener() {
+            @Override
+            public void onBlock () {
+                blocked.countDown();
+            }
+        });
+
+        assertTrue( blocked.await( 5, TimeUnit.SECONDS ) );
+        assertEquals( 1, requests.size() );
+        assertEquals( limited + 1, PixalateBlocking.getStats().getRateLimitedRequestCount() );
+    }
+
+    @Test
+    public void failedRequestsShouldFailOverToAnotherEndpoint () throws InterruptedException {
+        List<BlockingTransport.Request> requests = new ArrayList<>();
+        BlockingTransport transport = ( request, callback ) -> {
+            requests.add( request );
+            if( request.getUrl().startsWith( "https://down.example.com" ) ) {
+                callback.onFailure( new IOException( "Connection refused" ) );
+            } else {
+                callback.onResponse( new BlockingTransport.Response( 200, "OK", "{\"probability\":0.1}" ) );
+            }
+            return () -> {};
+        };
+
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PixalateBlocking.initialize( appContext, new BlockingConfig.Builder( "" )
+            .setTransport( transport )
+            .setFraudURLs( "https://down.example.com/api/v2/fraud", "https://up.example.com/api/v2/fraud" )
+            .setCallbackExecutor( BlockingConfig.DIRECT_EXECUTOR )
+            .setBlockingStrategy( new BlockingStrategy() {} )
+            .build() );
+
+        CountDownLatch allowed = new CountDownLatch( 1 );
+        requestBlockStatus( new BlockingStatusListener() {
+            @Override
+            public void onAllow () {
+                allowed.countDown();
+            }
+        });
+
+        assertTrue( allowed.await( 5, TimeUnit.SECONDS ) );
+        assertEquals( 2, requests.size() );
+        assertTrue( requests.get( 0 ).getUrl().startsWith( "https://down.example.com" ) );
+        assertTrue( requests.get( 1 ).getUrl().startsWith( "https://up.example.com" ) );
+    }
+
+    @Test
+    public void requestsFailingBeforeTheHedgingDelayShouldFailOver () throws InterruptedException {
+        List<BlockingTransport.Request> requests = new ArrayList<>();
+        BlockingTransport transport = ( request, callback ) -> {
+            requests.add( request );
+            if( request.getUrl().startsWith( "https://refused.example.com" ) ) {
+                callback.onFailure( new IOException( "Connection refused" ) );
+            } else {
+                callback.onResponse( new BlockingTransport.Response( 200, "OK", "{\"probability\":0.1}" ) );
+            }
+            return () -> {};
+        };
+
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PixalateBlocking.initialize( appContext, new BlockingConfig.Builder( "" )
+            .setTransport( transport )
+            .setFraudURLs( "https://refused.example.com/api/v2/fraud", "https://fallback.example.com/api/v2/fraud" )
+            .setHedgingDelay( 500 )
+            .setCallbackExecutor( BlockingConfig.DIRECT_EXECUTOR )
+            .setBlockingStrategy( new BlockingStrategy() {} )
+            .build() );
+
+        CountDownLatch allowed = new CountDownLatch( 1 );
+        requestBlockStatus( new BlockingStatusListener() {
+            @Override
+            public void onAllow () {
+                allowed.countDown();
+            }
+        });
+
+        assertTrue( allowed.await( 5, TimeUnit.SECONDS ) );
+        assertEquals( 2, requests.size() );
+        assertTrue( requests.get( 0 ).getUrl().startsWith( "https://refused.example.com" ) );
+        assertTrue( requests.get( 1 ).getUrl().startsWith( "https://fallback.example.com" ) );
+    }
+
+    @Test
+    public void slowRequestsShouldBeHedgedAndTheLoserCancelled () throws InterruptedException {
+        List<BlockingTransport.Request> requests = new ArrayList<>();
+        AtomicInteger cancelled = new AtomicInteger();
+        BlockingTransport transport = ( request, callback ) -> {
+            int attempt;
+            synchronized( requests ) {
+                requests.add( request );
+                attempt = requests.size();
+            }
+
+            // the first attempt never answers, the hedge answers right away.
+            if( attempt == 1 ) {
+                return cancelled::incrementAndGet;
+            }
+
+            callback.onResponse( new BlockingTransport.Response( 200, "OK", "{\"probability\":0.1}" ) );
+            return () -> {};
+        };
+
+        fraudRequestCount.set( 0 );
+        hedgedRequestCount.set( 0 );
+
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PixalateBlocking.initialize( appContext, new BlockingConfig.Builder( "" )
+            .setTransport( transport )
+            .setFraudURLs( "https://eu.example.com/api/v2/fraud", "https://us.example.com/api/v2/fraud" )
+            .setHedgingDelay( 50 )
+            .setHedgingBudget( 1 )
+            .setCallbackExecutor( BlockingConfig.DIRECT_EXECUTOR )
+            .setBlockingStrategy( new BlockingStrategy() {} )
+            .build() );
+
+        CountDownLatch allowed = new CountDownLatch( 1 );
+        long start = System.currentTimeMillis();
+        requestBlockStatus( new BlockingStatusListener() {
+            @Override
+            public void onAllow () {
+                allowed.countDown();
+            }
+        });
+
+        assertTrue( allowed.await( 1, TimeUnit.SECONDS ) );
+        assertTrue( System.currentTimeMillis() - start >= 50 );
+        assertEquals( 2, requests.size() );
+        // the hedge goes to the other endpoint.
+        assertNotEquals( requests.get( 0 ).getUrl().startsWith( "https://eu.example.com" ), requests.get( 1 ).getUrl().startsWith( "https://eu.example.com" ) );
+        assertEquals( 1, cancelled.get() );
+        assertEquals( 1, hedgedRequestCount.get() );
+    }
+
+    @Test
+    public void hedgingBudgetShouldCapHedges () throws InterruptedException {
+        AtomicInteger requests = new AtomicInteger();
+        BlockingTransport transport = ( request, callback ) -> {
+            requests.incrementAndGet();
+            new Thread( () -> {
+                try {
+                    Thread.sleep( 200 );
+                } catch( InterruptedException ignored ) {}
+                callback.onResponse( new BlockingTransport.Response( 200, "OK", "{\"probability\":0.1}" ) );
+            }).start();
+            return () -> {};
+        };
+
+        // a budget of one hedge per ten fraud API calls leaves none for the first call.
+        fraudRequestCount.set( 0 );
+        hedgedRequestCount.set( 0 );
+
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PixalateBlocking.initialize( appContext, new BlockingConfig.Builder( "" )
+            .setTransport( transport )
+            .setFraudURLs( "https://eu.example.com/api/v2/fraud", "https://us.example.com/api/v2/fraud" )
+            .setHedgingDelay( 50 )
+            .setHedgingBudget( 0.1 )
+            .setCallbackExecutor( BlockingConfig.DIRECT_EXECUTOR )
+            .setBlockingStrategy( new BlockingStrategy() {} )
+            .build() );
+
+        CountDownLatch allowed = new CountDownLatch( 1 );
+        requestBlockStatus( new BlockingStatusListener() {
+            @Override
+            public void onAllow () {
+                allowed.countDown();
+            }
+        });
+
+        assertTrue( allowed.await( 5, TimeUnit.SECONDS ) );
+        assertEquals( 1, requests.get() );
+        assertEquals( 0, hedgedRequestCount.get() );
+    }
+
+    @Test
+    public void hotEntriesShouldBeRefreshedBeforeTheyExpire () throws InterruptedException {
+        AtomicInteger requests = new AtomicInteger();
+        BlockingTransport transport = ( request, callback ) -> {
+            requests.incrementAndGet();
+            callback.onResponse( new BlockingTransport.Response( 200, "OK", "{\"probability\":0.1}" ) );
+            return () -> {};
+        };
+
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PixalateBlocking.initialize( appContext, new BlockingConfig.Builder( "" )
+            .setTransport( transport )
+            .setTTL( 2000 )
+            .setRefreshWindow( 1500 )
+            .setCallbackExecutor( BlockingConfig.DIRECT_EXECUTOR )
+            .setBlockingStrategy( new BlockingStrategy() {
+                @Override
+                public void getDeviceID ( Context context, BlockingStrategyCallback callback ) {
+                    callback.done( "device" );
+                }
+            } )
+            .build() );
+
+        CountDownLatch allowed = new CountDownLatch( 1 );
+        requestBlockStatus( new BlockingStatusListener() {
+            @Override
+            public void onAllow () {
+                allowed.countDown();
+            }
+        });
+        assertTrue( allowed.await( 5, TimeUnit.SECONDS ) );
+
+        BlockingResult stored = cachedResults.values().iterator().next();
+        long expiry = stored.time;
+
+        // due 500ms after the lookup, plus up to 375ms of jitter for the pass and again for the refresh itself.
+        while( requests.get() < 2 && System.currentTimeMillis() < expiry ) {
+            Thread.sleep( 10 );
+        }
+
+        assertEquals( 2, requests.get() );
+        assertTrue( System.currentTimeMillis() < expiry );
+
+        long deadline = System.currentTimeMillis() + 1000;
+        while( cachedResults.values().iterator().next() == stored && System.currentTimeMillis() < deadline ) {
+            Thread.sleep( 10 );
+        }
+        assertTrue( cachedResults.values().iterator().next().time > expiry );
+    }
+
+    @Test
+    public void fullyCachedRequestsShouldBeAnsweredInline () throws InterruptedException {
+        List<BlockingTransport.Request> requests = new ArrayList<>();
+        BlockingTransport transport = ( request, callback ) -> {
+            requests.add( request );
+            callback.onResponse( new BlockingTransport.Response( 200, "OK", "{\"probability\":0.1}" ) );
+            return () -> {};
+        };
+
+        BlockingStrategy strategy = new CachingBlockingStrategy.Builder( new BlockingStrategy() {
+            @Override
+            public void getDeviceID ( Context context, BlockingStrategyCallback callback ) {
+                callback.done( "device" );
+            }
+
+            @Override
+            public void getIPv4 ( Context context, BlockingStrategyCallback callback ) {
+                callback.done( "203.0.113.7" );
+            }
+        } ).build();
+
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PixalateBlocking.initialize( appContext, new BlockingConfig.Builder( "" )
+            .setTransport( transport )
+            .setCallbackExecutor( BlockingConfig.DIRECT_EXECUTOR )
+            .setBlockingStrategy( strategy )
+            .build() );
+
+        CountDownLatch allowed = new CountDownLatch( 1 );
+        requestBlockStatus( new BlockingStatusListener() {
+            @Override
+            public void onAllow () {
+                allowed.countDown();
+            }
+        });
+        assertTrue( allowed.await( 5, TimeUnit.SECONDS ) );
+
+        assertEquals( "203.0.113.7", strategy.getCachedValue( BlockingStrategy.Parameter.IPV4 ) );
+        assertSame( BlockingStrategy.MISSING, strategy.getCachedValue( BlockingStrategy.Parameter.IPV6 ) );
+
+        // answered before requestBlockStatus returns, on this thread.
+        Thread caller = Thread.currentThread();
+        List<Thread> answeredOn = new ArrayList<>();
+        requestBlockStatus( new BlockingStatusListener() {
+            @Override
+            public void onAllow () {
+                answeredOn.add( Thread.currentThread() );
+            }
+        });
+
+        assertEquals( 1, answeredOn.size() );
+        assertSame( caller, answeredOn.get( 0 ) );
+        assertEquals( 1, requests.size() );
+    }
+
+    @Test
+    public void clientsShouldKeepSeparateConfigsAndCaches () throws InterruptedException {
+        List<BlockingTransport.Request> requests = new ArrayList<>();
+        BlockingTransport transport = ( request, callback ) -> {
+            synchronized( requests ) {
+                requests.add( request );
+            }
+            callback.onResponse( new BlockingTransport.Response( 200, "OK", "{\"probability\":0.5}" ) );
+            return () -> {};
+        };
+
+        BlockingStrategy strategy = new BlockingStrategy() {
+            @Override
+            public void getDeviceID ( Context context, BlockingStrategyCallback callback ) {
+                callback.done( "device" );
+            }
+        };
+
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PixalateBlockingClient strict = new PixalateBlockingClient( appContext, new BlockingConfig.Builder( "strict-key" )
+            .setBlockingThreshold( 0.3 )
+            .setTransport( transport )
+            .setCallbackExecutor( BlockingConfig.DIRECT_EXECUTOR )
+            .setBlockingStrategy( strategy )
+            .build() );
+        PixalateBlockingClient lenient = new PixalateBlockingClient( appContext, new BlockingConfig.Builder( "lenient-key" )
+            .setBlockingThreshold( 0.9 )
+            .setTransport( transport )
+            .setCallbackExecutor( BlockingConfig.DIRECT_EXECUTOR )
+            .setBlockingStrategy( strategy )
+            .build() );
+
+        CountDownLatch decided = new CountDownLatch( 2 );
+        List<String> decisions = new ArrayList<>();
+        BlockingStatusListener strictListener = new BlockingStatusListener() {
+            @Override
+            public void onBlock () {
+                synchronized( decisions ) {
+                    decisions.add( "strict block" );
+                }
+                decided.countDown();
+            }
+        };
+
+        strict.requestBlockStatus( strictListener );
+        lenient.requestBlockStatus( new BlockingStatusListener() {
+            @Override
+            public void onAllow () {
+                synchronized( decisions ) {
+                    decisions.add( "lenient allow" );
+                }
+                decided.countDown();
+            }
+        });
+        assertTrue( decided.await( 5, TimeUnit.SECONDS ) );
+
+        // answered right away from what the strict client already knows, without another lookup.
+        strict.requestBlockStatus( strictListener );
+
+        assertEquals( 3, decisions.size() );
+        assertEquals( 2, requests.size() );
+        assertNotEquals( requests.get( 0 ).getHeaders().get( "X-Api-Key" ), requests.get( 1 ).getHeaders().get( "X-Api-Key" ) );
+        assertEquals( "strict block", decisions.get( 2 ) );
+        assertTrue( decisions.contains( "lenient allow" ) );
+        assertEquals( 1, strict.cachedResultCount() );
+        assertEquals( 1, lenient.cachedResultCount() );
+        assertNull( PixalateBlocking.getGlobalConfig() );
+    }
+
+    @Test
+    public void slowLookupsShouldGetTheDeadlineDecisionAndStillBeCached () throws InterruptedException {
+        AtomicInteger requests = new AtomicInteger();
+        BlockingTransport transport = ( request, callback ) -> {
+            requests.incrementAndGet();
+            new Thread( () -> {
+                try {
+                    Thread.sleep( 300 );
+                } catch( InterruptedException ignored ) {}
+                callback.onResponse( new BlockingTransport.Response( 200, "OK", "{\"probability\":0.1}" ) );
+            }).start();
+            return () -> {};
+        };
+
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PixalateBlocking.initialize( appContext, new BlockingConfig.Builder( "" )
+            .setTransport( transport )
+            .setDecisionDeadline( 50, FallbackDecision.BLOCK )
+            .setCallbackExecutor( BlockingConfig.DIRECT_EXECUTOR )
+            .setBlockingStrategy( new BlockingStrategy() {
+                @Override
+                public void getDeviceID ( Context context, BlockingStrategyCallback callback ) {
+                    callback.done( "device" );
+                }
+            } )
+            .build() );
+
+        AtomicInteger blocked = new AtomicInteger();
+        AtomicInteger allowed = new AtomicInteger();
+        BlockingStatusListener listener = new BlockingStatusListener() {
+            @Override
+            public void onBlock () {
+                blocked.incrementAndGet();
+            }
+
+            @Override
+            public void onAllow () {
+                allowed.incrementAndGet();
+            }
+        };
+
+        requestBlockStatus( listener );
+        Thread.sleep( 150 );
+
+        // answered with the deadline decision while the lookup is still running.
+        assertEquals( 1, blocked.get() );
+        assertEquals( 0, allowed.get() );
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while( cachedResults.isEmpty() && System.currentTimeMillis() < deadline ) {
+            Thread.sleep( 10 );
+        }
+        assertEquals( 1, cachedResults.size() );
+
+        CountDownLatch answered = new CountDownLatch( 1 );
+        requestBlockStatus( new BlockingStatusListener() {
+            @Override
+            public void onAllow () {
+                answered.countDown();
+            }
+        });
+
+        assertTrue( answered.await( 5, TimeUnit.SECONDS ) );
+        assertEquals( 1, blocked.get() );
+        assertEquals( 0, allowed.get() );
+        assertEquals( 1, requests.get() );
+    }
+
+    @Test
+    public void parametersAnsweredLastShouldStillBeWaitedFor () throws InterruptedException {
+        List<String> urls = Collections.synchronizedList( new ArrayList<>() );
+        BlockingTransport transport = ( request, callback ) -> {
+            urls.add( request.getUrl() );
+            callback.onResponse( new BlockingTransport.Response( 200, "OK", "{\"probability\":0.1}" ) );
+            return () -> {};
+        };
+
+        AtomicInteger userAgents = new AtomicInteger();
+        BlockingStrategy strategy = new BlockingStrategy() {
+            @Override
+            public void getDeviceID ( Context context, BlockingStrategyCallback callback ) {
+                callback.done( "device" );
+            }
+
+            @Override
+            public void getIPv4 ( Context context, BlockingStrategyCallback callback ) {
+                callback.done( "203.0.113.7" );
+            }
+
+            @Override
+            public void getIPv6 ( Context context, BlockingStrategyCallback callback ) {
+                callback.done( null );
+            }
+
+            @Override
+            public void getUserAgent ( Context context, BlockingStrategyCallback callback ) {
+                // the user agent is the fourth parameter, and answers well after the other three.
+                String userAgent = "agent" + userAgents.incrementAndGet();
+                new Thread( () -> {
+                    try {
+                        Thread.sleep( 200 );
+                    } catch( InterruptedException ignored ) {}
+                    callback.done( userAgent );
+                }).start();
+            }
+        };
+
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PixalateBlocking.initialize( appContext, new BlockingConfig.Builder( "" )
+            .setTransport( transport )
+            .setTTL( 0 )
+            .setRequestTimeout( 5000 )
+            .setCallbackExecutor( BlockingConfig.DIRECT_EXECUTOR )
+            .setBlockingStrategy( strategy )
+            .build() );
+
+        // the second request reuses the pooled task of the first.
+        for( int i = 1; i <= 2; i++ ) {
+            CountDownLatch allowed = new CountDownLatch( 1 );
+            requestBlockStatus( new BlockingStatusListener() {
+                @Override
+                public void onAllow () {
+                    allowed.countDown();
+                }
+            });
+
+            assertTrue( allowed.await( 5, TimeUnit.SECONDS ) );
+            assertEquals( i, urls.size() );
+            assertTrue( urls.get( i - 1 ).contains( "userAgent=agent" + i ) );
+            assertTrue( urls.get( i - 1 ).contains( "deviceId=device" ) );
+        }
+    }
+
+    @Test
+    public void rejectedRequestsShouldBeAnsweredWithAnError () throws InterruptedException {
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PixalateBlocking.initialize( appContext, new BlockingConfig.Builder( "" )
+            .setCallbackExecutor( BlockingConfig.DIRECT_EXECUTOR )
+            .setBlockingStrategy( new BlockingStrategy() {} )
+            .build() );
+
+        // a strategy executor that has been shut down.
+        PixalateBlocking.executor = runnable -> {
+            throw new RejectedExecutionException();
+        };
+
+        List<Integer> errors = new ArrayList<>();
+        CountDownLatch failed = new CountDownLatch( 1 );
+        requestBlockStatus( new BlockingStatusListener() {
+            @Override
+            public void onError ( int errorCode, String message ) {
+                errors.add( errorCode );
+                failed.countDown();
+            }
+        });
+
+        assertTrue( failed.await( 5, TimeUnit.SECONDS ) );
+        assertEquals( Collections.singletonList( 503 ), errors );
+    }
+
+    private static void initializeWithTransport ( BlockingTransport transport, AtomicInteger ipLookups ) {
+        BlockingStrategy strategy = new BlockingStrategy() {
+            @Override
+            public void getIPv4 ( Context context, BlockingStrategyCallback callback ) {
+                ipLookups.incrementAndGet();
+                callback.done( "203.0.113.7" );
+            }
+
+            @Override
+            public void getIPv6 ( Context context, BlockingStrategyCallback callback ) {
+                ipLookups.incrementAndGet();
+                callback.done( null );
+            }
+        };
+
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PixalateBlocking.initialize( appContext, new BlockingConfig.Builder( "" )
+            .setTransport( transport )
+            .setServerInferredIPEnabled( true )
+            .setCallbackExecutor( BlockingConfig.DIRECT_EXECUTOR )
+            .setBlockingStrategy( strategy )
+            .build() );
+    }
+
+    private static BlockingCacheParameters cacheKey ( String deviceId ) {
+        BlockingCacheParameters key = new BlockingCacheParameters();
+        key.deviceId = deviceId;
+        key.mode = BlockingMode.DEFAULT;
+        return key;
+    }
+
+    private static BlockingResult cachedResult ( long time, long lastAccess ) {
+        BlockingResult result = new BlockingResult();
+        result.probability = 0.5;
+        result.time = time;
+        result.lastAccess = lastAccess;
+        return result;
+    }
+}
@@ -0,0 +1,241 @@
+package com.pixalate.android.blocking;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays a request recording made with {@link BlockingConfig.Builder#setRequestRecordingSize} against a local stub
+ * of the fraud API, at the recorded speed or faster, and reports fraud API calls, cache hit ratio and latency percentiles
+ * so that SDK versions and configs can be compared on real traffic. Recorded parameters are fingerprints, so requests
+ * are made with made-up values standing in for them, supplied by a default strategy so its parameter caching is kept.
+ *
+ * Requests are made in recorded order from a single thread, while the time they take to answer overlaps as it did when
+ * recorded. Cache TTLs are not scaled, so replays faster than the recorded speed see fewer expiries than real traffic would.
+ */
+final class RequestReplayer {
+
+    private final List<BlockingRequestRecorder.Record> records;
+    private final StubFraudServer server;
+    private double speed = 1;
+
+    /**
+     * @param records The recording. Requests made with a simulated blocking mode are left out.
+     * @param server  The stub the requests are sent to, whose latency and probabilities are left as configured.
+     */
+    RequestReplayer ( List<BlockingRequestRecorder.Record> records, StubFraudServer server ) {
+        this.records = new ArrayList<>();
+        for( BlockingRequestRecorder.Record record : records ) {
+            if( record.source != BlockingRequestRecorder.Source.SIMULATED ) this.records.add( record );
+        }
+
+        this.server = server;
+    }
+
+    /**
+     * How many times faster than recorded to replay. Pass {@link Double#POSITIVE_INFINITY} to make requests back to back.
+     */
+    RequestReplayer setSpeed ( double speed ) {
+        if( speed <= 0 ) throw new IllegalArgumentException( "The speed must be greater than 0." );
+        this.speed = speed;
+        return this;
+    }
+
+    /**
+     * Returns the lookup latencies of the recording in milliseconds, for {@link StubFraudServer#empirical}.
+     */
+    long[] recordedLookupLatencies () {
+        long[] latencies = new long[ records.size() ];
+        int count = 0;
+
+        for( BlockingRequestRecorder.Record record : records ) {
+            if( record.source == BlockingRequestRecorder.Source.LOOKUP ) {
+                latencies[ count++ ] = record.latencyMicros / 1000;
+            }
+        }
+
+        return Arrays.copyOf( latencies, count );
+    }
+
+    /**
+     * Reports what the recording itself saw, as a baseline for replays.
+     */
+    Report recorded () {
+        Report report = new Report();
+        long[] latencies = new long[ records.size() ];
+
+        for( BlockingRequestRecorder.Record record : records ) {
+            latencies[ report.completed++ ] = record.latencyMicros * 1000;
+
+            switch( record.source ) {
+                case LOOKUP:
+                    report.fraudRequests++;
+                    report.misses++;
+                    break;
+                case CACHE:
+                    report.hits++;
+                    break;
+                case ERROR:
+                    report.errors++;
+                    report.misses++;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        report.latencies = latencies;
+        Arrays.sort( report.latencies );
+        return report;
+    }
+
+    /**
+     * Initializes the SDK with the given config, pointed at the stub, and replays the recording.
+     * The config's fraud URL, blocking strategy and callback executor are replaced.
+     */
+    Report replay ( Context context, BlockingConfig.Builder builder ) throws InterruptedException {
+        ReplayStrategy strategy = new ReplayStrategy( builder.build().getTTL() );
+        PixalateBlocking.initialize( context, builder
+            .setFraudURL( server.getFraudURL() )
+            .setBlockingStrategy( strategy )
+            .setCallbackExecutor( BlockingConfig.DIRECT_EXECUTOR )
+            .build() );
+
+        BlockingStats before = PixalateBlocking.getStats();
+        long fraudBefore = server.fraudRequests.get();
+
+        long[] latencies = new long[ records.size() ];
+        AtomicInteger completed = new AtomicInteger();
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch finished = new CountDownLatch( records.size() );
+
+        long start = System.nanoTime();
+        long firstTime = records.isEmpty() ? 0 : records.get( 0 ).time;
+
+        for( BlockingRequestRecorder.Record record : records ) {
+            long due = start + (long) ( TimeUnit.MILLISECONDS.toNanos( record.time - firstTime ) / speed );
+            long wait = due - System.nanoTime();
+            if( wait > 0 ) TimeUnit.NANOSECONDS.sleep( wait );
+
+            strategy.current = record;
+
+            long sent = System.nanoTime();
+            Runnable done = () -> {
+                latencies[ completed.getAndIncrement() ] = System.nanoTime() - sent;
+                finished.countDown();
+            };
+
+            // requests the SDK cannot take on are answered with an error, counted as failures.
+            PixalateBlocking.requestBlockStatus( new BlockingStatusListener() {
+                @Override
+                public void onBlock () {
+                    done.run();
+                }
+
+                @Override
+                public void onAllow () {
+                    done.run();
+                }
+
+                @Override
+                public void onError ( int errorCode, String message ) {
+                    errors.incrementAndGet();
+                    done.run();
+                }
+            });
+        }
+
+        if( !finished.await( 5, TimeUnit.MINUTES ) ) {
+            throw new IllegalStateException( "Replayed requests did not finish in time." );
+        }
+
+        BlockingStats after = PixalateBlocking.getStats();
+
+        Report report = new Report();
+        report.completed = completed.get();
+        report.errors = errors.get();
+        report.hits = after.getCacheHits() - before.getCacheHits();
+        report.misses = after.getCacheMisses() - before.getCacheMisses();
+        report.fraudRequests = server.fraudRequests.get() - fraudBefore;
+        report.latencies = Arrays.copyOf( latencies, report.completed );
+        Arrays.sort( report.latencies );
+
+        return report;
+    }
+
+    /**
+     * Supplies made-up parameters for the request being replayed, derived from the recorded fingerprints.
+     * Requests in flight when the next one is made may pick up its parameters, which only matters when they changed.
+     */
+    private static final class ReplayStrategy extends DefaultBlockingStrategy {
+        volatile BlockingRequestRecorder.Record current;
+
+        ReplayStrategy ( long cacheTTL ) {
+            super( cacheTTL );
+        }
+
+        @Override
+        public void getDeviceIDImpl ( Context context, BlockingStrategyCallback callback ) {
+            callback.done( value( "device-", current.deviceId ) );
+        }
+
+        @Override
+        public void getIPv4Impl ( Context context, BlockingStrategyCallback callback ) {
+            callback.done( value( "ipv4-", current.ipv4 ) );
+        }
+
+        @Override
+        public void getIPv6Impl ( Context context, BlockingStrategyCallback callback ) {
+            callback.done( value( "ipv6-", current.ipv6 ) );
+        }
+
+        @Override
+        public void getUserAgentImpl ( Context context, BlockingStrategyCallback callback ) {
+            callback.done( value( "agent-", current.userAgent ) );
+        }
+
+        private static String value ( String prefix, long fingerprint ) {
+            return fingerprint == 0 ? null : prefix + Long.toHexString( fingerprint );
+        }
+    }
+
+    static final class Report {
+        int completed;
+        long errors;
+        long hits;
+        long misses;
+        long fraudRequests;
+        long[] latencies;
+
+        double hitRatio () {
+            return hits + misses == 0 ? 0 : (double) hits / ( hits + misses );
+        }
+
+        /**
+         * The given percentile of the latencies, in milliseconds.
+         */
+        double percentile ( double percentile ) {
+            if( latencies.length == 0 ) return 0;
+
+            int index = (int) Math.min( latencies.length - 1, Math.ceil( percentile * latencies.length ) - 1 );
+            return latencies[ Math.max( index, 0 ) ] / 1e6;
+        }
+
+        void log ( String tag, String name ) {
+            Log.i( tag, String.format( Locale.US,
+                "%s: %d requests, %d errors, %d fraud API calls, cache hit ratio %.3f (%d hits, %d misses)",
+                name, completed, errors, fraudRequests, hitRatio(), hits, misses ) );
+            Log.i( tag, String.format( Locale.US,
+                "%s: latency p50 %.2fms, p90 %.2fms, p99 %.2fms, max %.2fms",
+                name, percentile( 0.5 ), percentile( 0.9 ), percentile( 0.99 ), percentile( 1 ) ) );
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.pixalate.android.blocking;
+
+import static org.junit.Assert.*;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Tests the SharedDecisionCache class.
+ */
+@RunWith( AndroidJUnit4.class )
+public class SharedDecisionCacheTest {
+
+    private Context context;
+
+    @Before
+    public void before () {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        new File( context.getNoBackupFilesDir(), SharedDecisionCache.FILE_NAME ).delete();
+    }
+
+    @Test
+    public void writesShouldBeVisibleToOtherMappings () throws IOException {
+        SharedDecisionCache writer = SharedDecisionCache.open( context );
+        SharedDecisionCache reader = SharedDecisionCache.open( context );
+
+        writer.put( 42, 0.8, 2000 );
+
+        PixalateBlocking.BlockingResult result = new PixalateBlocking.BlockingResult();
+        assertTrue( reader.get( 42, 1000, result ) );
+        assertEquals( 0.8, result.probability, 0 );
+        assertEquals( 2000, result.time );
+
+        writer.close();
+        reader.close();
+    }
+
+    @Test
+    public void expiredEntriesShouldMiss () throws IOException {
+        SharedDecisionCache cache = SharedDecisionCache.open( context );
+
+        cache.put( 42, 0.8, 2000 );
+
+        assertFalse( cache.get( 42, 2000, new PixalateBlocking.BlockingResult() ) );
+
+        cache.close();
+    }
+
+    @Test
+    public void differentFingerprintsShouldMiss () throws IOException {
+        SharedDecisionCache cache = SharedDecisionCache.open( context );
+
+        cache.put( 42, 0.8, 2000 );
+
+        assertFalse( cache.get( 42 + 256, 1000, new PixalateBlocking.BlockingResult() ) );
+        assertFalse( cache.get( 43, 1000, new PixalateBlocking.BlockingResult() ) );
+
+        cache.close();
+    }
+
+    @Test
+    public void entriesShouldSurviveReopening () throws IOException {
+        SharedDecisionCache cache = SharedDecisionCache.open( context );
+        cache.put( 7, 0.25, 5000 );
+        cache.close();
+
+        cache = SharedDecisionCache.open( context );
+        PixalateBlocking.BlockingResult result = new PixalateBlocking.BlockingResult();
+        assertTrue( cache.get( 7, 1000, result ) );
+        assertEquals( 0.25, result.probability, 0 );
+
+        cache.close();
+    }
+
+    @Test
+    public void fingerprintsShouldMatchForEqualParameters () {
+        PixalateBlocking.BlockingCacheParameters a = new PixalateBlocking.BlockingCacheParameters();
+        a.deviceId = "device";
+        a.ipv4 = "1.2.3.4";
+        a.mode = PixalateBlocking.BlockingMode.DEFAULT;
+
+        PixalateBlocking.BlockingCacheParameters b = new PixalateBlocking.BlockingCacheParameters();
+        b.deviceId = "device";
+        b.ipv4 = "1.2.3.4";
+        b.mode = PixalateBlocking.BlockingMode.DEFAULT;
+
+        assertEquals( a.fingerprint(), b.fingerprint() );
+
+        b.ipv4 = null;
+        b.ipv6 = "1.2.3.4";
+        assertNotEquals( a.fingerprint(), b.fingerprint() );
+    }
+}
@@ -0,0 +1,123 @@
+package com.pixalate.android.blocking;
+
+import static org.junit.Assert.*;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures what initialization and the first request cost the calling thread, and fails if either goes over budget.
+ * Timings are logged under the "PixalateStartup" tag.
+ */
+@LargeTest
+@RunWith( AndroidJUnit4.class )
+public class StartupBenchmarkTest {
+
+    private static final String TAG = "PixalateStartup";
+
+    private static final int RUNS = 50;
+    private static final long INITIALIZE_BUDGET = TimeUnit.MILLISECONDS.toNanos( 5 );
+    private static final long FIRST_REQUEST_BUDGET = TimeUnit.MILLISECONDS.toNanos( 5 );
+
+    @Test
+    public void initializeShouldStayWithinBudget () throws InterruptedException {
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        BlockingConfig config = new BlockingConfig.Builder( "" )
+            .setSharedCacheEnabled( true )
+            .setRefreshWindow( 1000 * 60 )
+            .build();
+
+        long[] timings = new long[ RUNS ];
+        Executor executor = PixalateBlocking.executor;
+
+        for( int i = 0; i < RUNS; i++ ) {
+            long start = System.nanoTime();
+            PixalateBlocking.initialize( appContext, config );
+            timings[ i ] = System.nanoTime() - start;
+
+            awaitBackgroundSetup();
+        }
+
+        long first = timings[ 0 ];
+        Arrays.sort( timings );
+        long median = timings[ RUNS / 2 ];
+
+        Log.i( TAG, String.format( Locale.US, "initialize: first %.2fms, median %.2fms, max %.2fms",
+            first / 1e6, median / 1e6, timings[ RUNS - 1 ] / 1e6 ) );
+
+        assertSame( "initialize should neither create nor replace the executor.", executor, PixalateBlocking.executor );
+        assertTrue( "initialize took " + median / 1e6 + "ms", median < INITIALIZE_BUDGET );
+    }
+
+    @Test
+    public void firstRequestShouldStayWithinBudget () throws Exception {
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        try( StubFraudServer server = new StubFraudServer() ) {
+            BlockingConfig config = new BlockingConfig.Builder( "" )
+                .setFraudURL( server.getFraudURL() )
+                .setIPv4URL( server.getIPv4URL() )
+                .setIPv6URL( server.getIPv6URL() )
+                .setCallbackExecutor( BlockingConfig.DIRECT_EXECUTOR )
+                .build();
+
+            PixalateBlocking.initialize( appContext, config );
+
+            CountDownLatch done = new CountDownLatch( 1 );
+            AtomicLong finished = new AtomicLong();
+
+            long start = System.nanoTime();
+            PixalateBlocking.requestBlockStatus( new BlockingStatusListener() {
+                @Override
+                public void onBlock () {
+                    finished.set( System.nanoTime() );
+                    done.countDown();
+                }
+
+                @Override
+                public void onAllow () {
+                    finished.set( System.nanoTime() );
+                    done.countDown();
+                }
+
+                @Override
+                public void onError ( int errorCode, String message ) {
+                    finished.set( System.nanoTime() );
+                    done.countDown();
+                }
+            });
+            long returned = System.nanoTime() - start;
+
+            assertTrue( done.await( 10, TimeUnit.SECONDS ) );
+
+            Log.i( TAG, String.format( Locale.US, "first request: %.2fms on the calling thread, %.2fms until the listener was called",
+                returned / 1e6, ( finished.get() - start ) / 1e6 ) );
+
+            assertTrue( "requestBlockStatus took " + returned / 1e6 + "ms", returned < FIRST_REQUEST_BUDGET );
+        }
+    }
+
+    /**
+     * Waits for the setup work initialize hands off to a background thread, so runs don't overlap.
+     */
+    private static void awaitBackgroundSetup () throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch( 1 );
+        AsyncTask.SERIAL_EXECUTOR.execute( latch::countDown );
+        assertTrue( latch.await( 10, TimeUnit.SECONDS ) );
+    }
+}
@@ -0,0 +1,192 @@
+package com.pixalate.android.blocking;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local HTTP stand-in for the fraud API and the IP lookup endpoints, so the SDK can be put under load
+ * without touching production. Response latency, error rate and the returned probabilities are configurable,
+ * and may be changed while the server is running.
+ */
+final class StubFraudServer implements Closeable {
+
+    static final String FRAUD_PATH = "/api/v2/fraud";
+    static final String IPV4_PATH = "/ipv4";
+    static final String IPV6_PATH = "/ipv6";
+
+    /**
+     * A distribution of response latencies, in milliseconds.
+     */
+    interface LatencyDistribution {
+        long sample ( ThreadLocalRandom random );
+    }
+
+    static LatencyDistribution fixed ( long millis ) {
+        return random -> millis;
+    }
+
+    static LatencyDistribution uniform ( long minMillis, long maxMillis ) {
+        return random -> minMillis + random.nextLong( maxMillis - minMillis + 1 );
+    }
+
+    /**
+     * A long-tailed distribution, closer to what real network requests look like than a uniform one.
+     */
+    static LatencyDistribution logNormal ( long medianMillis, double sigma ) {
+        return random -> Math.round( medianMillis * Math.exp( sigma * random.nextGaussian() ) );
+    }
+
+    /**
+     * Samples from observed latencies, such as the lookup latencies of a request recording.
+     */
+    static LatencyDistribution empirical ( long[] millis ) {
+        if( millis.length == 0 ) return fixed( 0 );
+        return random -> millis[ random.nextInt( millis.length ) ];
+    }
+
+    private final ServerSocket socket;
+    private final ExecutorService workers;
+
+    private volatile LatencyDistribution latency = fixed( 0 );
+    private volatile double errorRate;
+    private volatile double minProbability;
+    private volatile double maxProbability;
+
+    final AtomicLong fraudRequests = new AtomicLong();
+    final AtomicLong ipRequests = new AtomicLong();
+    final AtomicLong errors = new AtomicLong();
+
+    StubFraudServer () throws IOException {
+        socket = new ServerSocket( 0, 512, InetAddress.getByName( "127.0.0.1" ) );
+        workers = Executors.newCachedThreadPool();
+
+        Thread acceptor = new Thread( this::accept, "StubFraudServer" );
+        acceptor.setDaemon( true );
+        acceptor.start();
+    }
+
+    String getFraudURL () {
+        return getBaseURL() + FRAUD_PATH;
+    }
+
+    String getIPv4URL () {
+        return getBaseURL() + IPV4_PATH;
+    }
+
+    String getIPv6URL () {
+        return getBaseURL() + IPV6_PATH;
+    }
+
+    private String getBaseURL () {
+        return "http://127.0.0.1:" + socket.getLocalPort();
+    }
+
+    StubFraudServer setLatency ( LatencyDistribution latency ) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * The fraction of fraud API requests answered with a 500 error.
+     */
+    StubFraudServer setErrorRate ( double errorRate ) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * Returned probabilities are picked uniformly from the given range.
+     */
+    StubFraudServer setProbability ( double min, double max ) {
+        this.minProbability = min;
+        this.maxProbability = max;
+        return this;
+    }
+
+    @Override
+    public void close () throws IOException {
+        socket.close();
+        workers.shutdownNow();
+    }
+
+    private void accept () {
+        while( !socket.isClosed() ) {
+            try {
+                Socket connection = socket.accept();
+                workers.execute( () -> handle( connection ) );
+            } catch( IOException ignored ) {}
+        }
+    }
+
+    private void handle ( Socket connection ) {
+        try( Socket ignored = connection ) {
+            BufferedReader reader = new BufferedReader( new InputStreamReader( connection.getInputStream(), StandardCharsets.ISO_8859_1 ) );
+
+            String requestLine = reader.readLine();
+            if( requestLine == null ) return;
+
+            // skip the headers, requests never have a body.
+            String header;
+            do {
+                header = reader.readLine();
+            } while( header != null && !header.isEmpty() );
+
+            String[] parts = requestLine.split( " " );
+            String path = parts.length > 1 ? parts[ 1 ] : "";
+            int query = path.indexOf( '?' );
+            if( query >= 0 ) path = path.substring( 0, query );
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long delay = latency.sample( random );
+            if( delay > 0 ) Thread.sleep( delay );
+
+            switch( path ) {
+                case FRAUD_PATH:
+                    fraudRequests.incrementAndGet();
+                    if( random.nextDouble() < errorRate ) {
+                        errors.incrementAndGet();
+                        respond( connection.getOutputStream(), 500, "Internal Server Error", "{}" );
+                    } else {
+                        double probability = minProbability + random.nextDouble() * ( maxProbability - minProbability );
+                        respond( connection.getOutputStream(), 200, "OK", String.format( Locale.US, "{\"probability\":%.4f}", probability ) );
+                    }
+                    break;
+                case IPV4_PATH:
+                    ipRequests.incrementAndGet();
+                    respond( connection.getOutputStream(), 200, "OK", "{\"ip\":\"203.0.113.7\"}" );
+                    break;
+                case IPV6_PATH:
+                    ipRequests.incrementAndGet();
+                    respond( connection.getOutputStream(), 200, "OK", "{\"ip\":\"2001:db8::7\"}" );
+                    break;
+                default:
+                    respond( connection.getOutputStream(), 404, "Not Found", "{}" );
+                    break;
+            }
+        } catch( IOException | InterruptedException ignored ) {}
+    }
+
+    private static void respond ( OutputStream out, int status, String reason, String body ) throws IOException {
+        byte[] content = body.getBytes( StandardCharsets.UTF_8 );
+        String head = "HTTP/1.1 " + status + " " + reason + "\r\n" +
+            "Content-Type: application/json\r\n" +
+            "Content-Length: " + content.length + "\r\n" +
+            "Connection: close\r\n\r\n";
+
+        out.write( head.getBytes( StandardCharsets.ISO_8859_1 ) );
+        out.write( content );
+        out.flush();
+    }
+}
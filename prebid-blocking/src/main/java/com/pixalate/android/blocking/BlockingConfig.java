@@ -1,13 +1,62 @@
 package com.pixalate.android.blocking;
 
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
 /**
  * Global configuration for the Pixalate SDK's com.pixalate.android.blocking behavior.
  */
 public final class BlockingConfig {
+    /**
+     * Delivers listener callbacks on the main thread. This is the default.
+     */
+    public static final Executor MAIN_THREAD_EXECUTOR = new MainThreadExecutor();
+
+    /**
+     * Delivers listener callbacks inline, on whichever SDK thread produced the result.
+     * Callbacks should return quickly when using this executor.
+     */
+    public static final Executor DIRECT_EXECUTOR = Runnable::run;
+
+    static final String DEFAULT_FRAUD_URL = "https://fraud-api.pixalate.com/api/v2/fraud";
+
     private String apiKey;
     private long ttl;
     private double blockingThreshold;
+    private Map<String,Double> placementThresholds;
+    private Map<String,PixalateBlocking.BlockingMode> placementModes;
     private int requestTimeout;
+    private int hedgingDelay;
+    private double hedgingBudget;
+    private long refreshWindow;
+    private int maxConcurrentRefreshes;
+    private Executor callbackExecutor;
+    private boolean sharedCache;
+    private DecisionPolicy decisionPolicy;
+    private CacheKeyPolicy cacheKeyPolicy;
+    private int ipv6PrefixLength;
+    private boolean compactCache;
+    private List<String> fraudURLs;
+    private String ipv4URL;
+    private String ipv6URL;
+    private boolean tracingEnabled;
+    private int eventLogSize;
+    private int requestRecordingSize;
+    private boolean serverInferredIP;
+    private BlockingTransport transport;
+    private double rateLimit;
+    private int rateLimitBurst;
+    private FallbackDecision rateLimitFallback;
+    private int decisionDeadline;
+    private FallbackDecision deadlineDecision;
     private BlockingStrategy blockingStrategy;
 
     /**
@@ -26,6 +75,26 @@ public final class BlockingConfig {
         return blockingThreshold;
     }
 
+    /**
+     * Returns the blocking threshold for the given placement.
+     * @param placementId The placement ID.
+     * @return The placement's threshold, or the global threshold if the placement has none of its own.
+     */
+    public double getBlockingThreshold ( String placementId ) {
+        Double threshold = placementThresholds.get( placementId );
+        return threshold != null ? threshold : blockingThreshold;
+    }
+
+    /**
+     * Returns the blocking mode for the given placement.
+     * @param placementId The placement ID.
+     * @return The placement's mode, or {@link PixalateBlocking.BlockingMode#DEFAULT} if the placement has none of its own.
+     */
+    public PixalateBlocking.BlockingMode getBlockingMode ( String placementId ) {
+        PixalateBlocking.BlockingMode mode = placementModes.get( placementId );
+        return mode != null ? mode : PixalateBlocking.BlockingMode.DEFAULT;
+    }
+
     /**
      * Returns the configured com.pixalate.android.blocking strategy, which provides critical device values for determining block probability.
      * @return The com.pixalate.android.blocking strategy.
@@ -50,6 +119,198 @@ public final class BlockingConfig {
         return requestTimeout;
     }
 
+    /**
+     * Returns the configured delay after which an unanswered fraud request is hedged with a second, identical request.
+     * @return The hedging delay in milliseconds, or 0 if hedging is disabled.
+     */
+    public int getHedgingDelay () {
+        return hedgingDelay;
+    }
+
+    /**
+     * Returns the configured hedging budget, the maximum fraction of fraud requests that may be hedged.
+     * @return The hedging budget.
+     */
+    public double getHedgingBudget () {
+        return hedgingBudget;
+    }
+
+    /**
+     * Returns how long before expiry hot cached results and strategy parameters are refreshed in the background.
+     * @return The refresh window in milliseconds, or 0 if background refreshing is disabled.
+     */
+    public long getRefreshWindow () {
+        return refreshWindow;
+    }
+
+    /**
+     * Returns the maximum number of background refreshes that may run at the same time.
+     * @return The concurrent refresh cap.
+     */
+    public int getMaxConcurrentRefreshes () {
+        return maxConcurrentRefreshes;
+    }
+
+    /**
+     * Returns the configured executor used to deliver listener callbacks.
+     * @return The callback executor.
+     */
+    public Executor getCallbackExecutor () {
+        return callbackExecutor;
+    }
+
+    /**
+     * Returns whether cached results are shared between all processes of the app.
+     * @return Whether the shared cache is enabled.
+     */
+    public boolean isSharedCacheEnabled () {
+        return sharedCache;
+    }
+
+    /**
+     * Returns the configured decision policy, which controls how often a full lookup is performed.
+     * @return The decision policy.
+     */
+    public DecisionPolicy getDecisionPolicy () {
+        return decisionPolicy;
+    }
+
+    /**
+     * Returns the configured cache key policy, which controls which parameters make up the key of cached results.
+     * @return The cache key policy.
+     */
+    public CacheKeyPolicy getCacheKeyPolicy () {
+        return cacheKeyPolicy;
+    }
+
+    /**
+     * Returns the prefix length IPv6 addresses are truncated to in cache keys.
+     * @return The prefix length, where 128 means addresses are used as-is.
+     */
+    public int getIPv6PrefixLength () {
+        return ipv6PrefixLength;
+    }
+
+    /**
+     * Returns whether cached results are stored as compact fingerprints rather than full parameter objects.
+     * @return Whether the compact cache is enabled.
+     */
+    public boolean isCompactCacheEnabled () {
+        return compactCache;
+    }
+
+    /**
+     * Returns the base URL of the fraud API, or the first of the candidate URLs if there are several.
+     * @return The fraud API URL.
+     */
+    public String getFraudURL () {
+        return fraudURLs.get( 0 );
+    }
+
+    /**
+     * Returns the candidate base URLs of the fraud API, which requests are routed between by latency and error rate.
+     * @return The fraud API URLs.
+     */
+    public List<String> getFraudURLs () {
+        return fraudURLs;
+    }
+
+    /**
+     * Returns the IPv4 lookup endpoint passed to the default strategy, if overridden.
+     * @return The endpoint, or null if the default strategy's own endpoint is used.
+     */
+    public String getIPv4URL () {
+        return ipv4URL;
+    }
+
+    /**
+     * Returns the IPv6 lookup endpoint passed to the default strategy, if overridden.
+     * @return The endpoint, or null if the default strategy's own endpoint is used.
+     */
+    public String getIPv6URL () {
+        return ipv6URL;
+    }
+
+    /**
+     * Returns whether the SDK emits system trace sections for each phase of a lookup.
+     * @return Whether tracing is enabled.
+     */
+    public boolean isTracingEnabled () {
+        return tracingEnabled;
+    }
+
+    /**
+     * Returns how many recent SDK events are kept in memory for {@link PixalateBlocking#dumpEventLog()}.
+     * @return The number of events, or 0 if the event log is disabled.
+     */
+    public int getEventLogSize () {
+        return eventLogSize;
+    }
+
+    /**
+     * Returns how many recent requests are kept in memory for {@link PixalateBlocking#writeRequestRecording}.
+     * @return The number of requests, or 0 if recording is disabled.
+     */
+    public int getRequestRecordingSize () {
+        return requestRecordingSize;
+    }
+
+    /**
+     * Returns whether the fraud API infers the device's IP address from the connection, rather than the SDK looking it up.
+     * @return Whether server-inferred IP mode is enabled.
+     */
+    public boolean isServerInferredIPEnabled () {
+        return serverInferredIP;
+    }
+
+    /**
+     * Returns the transport the SDK's HTTP requests are sent through.
+     * @return The transport.
+     */
+    public BlockingTransport getTransport () {
+        return transport;
+    }
+
+    /**
+     * Returns the number of fraud API calls per second allowed for this config's API key.
+     * @return The rate, or 0 if calls are not rate limited.
+     */
+    public double getRateLimit () {
+        return rateLimit;
+    }
+
+    /**
+     * Returns the number of fraud API calls allowed in a burst, on top of the steady rate.
+     * @return The burst size.
+     */
+    public int getRateLimitBurst () {
+        return rateLimitBurst;
+    }
+
+    /**
+     * Returns the decision given to rate limited requests that cannot be answered from a previous decision.
+     * @return The fallback decision.
+     */
+    public FallbackDecision getRateLimitFallback () {
+        return rateLimitFallback;
+    }
+
+    /**
+     * Returns the time after which a request without a decision is answered with the deadline decision.
+     * @return The deadline in milliseconds, or 0 if requests wait for their lookup.
+     */
+    public int getDecisionDeadline () {
+        return decisionDeadline;
+    }
+
+    /**
+     * Returns the decision given to requests that reach the decision deadline.
+     * @return The deadline decision.
+     */
+    public FallbackDecision getDeadlineDecision () {
+        return deadlineDecision;
+    }
+
     /**
      * Helper class for building PixalateConfig objects.
      */
@@ -57,8 +318,33 @@ public final class BlockingConfig {
         private final String apiKey;
 
         private int requestTimeout;
+        private int hedgingDelay;
+        private double hedgingBudget;
+        private long refreshWindow;
+        private int maxConcurrentRefreshes;
+        private Executor callbackExecutor;
+        private boolean sharedCache;
+        private DecisionPolicy decisionPolicy;
+        private CacheKeyPolicy cacheKeyPolicy;
+        private int ipv6PrefixLength;
+        private boolean compactCache;
+        private List<String> fraudURLs;
+        private String ipv4URL;
+        private String ipv6URL;
+        private boolean tracingEnabled;
+        private int eventLogSize;
+        private int requestRecordingSize;
+        private boolean serverInferredIP;
+        private BlockingTransport transport;
+        private double rateLimit;
+        private int rateLimitBurst;
+        private FallbackDecision rateLimitFallback;
+        private int decisionDeadline;
+        private FallbackDecision deadlineDecision;
 
         private double blockingThreshold;
+        private final Map<String,Double> placementThresholds = new HashMap<>();
+        private final Map<String,PixalateBlocking.BlockingMode> placementModes = new HashMap<>();
         private long ttl;
 
         private BlockingStrategy blockingStrategy;
@@ -68,6 +354,18 @@ public final class BlockingConfig {
             this.blockingThreshold = 0.75f;
             this.requestTimeout = 2000;
             this.ttl = 1000 * 60 * 60 * 8;
+            this.hedgingDelay = 0;
+            this.hedgingBudget = 0.05;
+            this.refreshWindow = 0;
+            this.maxConcurrentRefreshes = 2;
+            this.callbackExecutor = MAIN_THREAD_EXECUTOR;
+            this.decisionPolicy = DecisionPolicy.always();
+            this.cacheKeyPolicy = CacheKeyPolicy.ALL_FIELDS;
+            this.ipv6PrefixLength = 128;
+            this.fraudURLs = Collections.singletonList( DEFAULT_FRAUD_URL );
+            this.transport = DefaultBlockingTransport.SHARED;
+            this.rateLimitFallback = FallbackDecision.NONE;
+            this.deadlineDecision = FallbackDecision.ALLOW;
         }
 
         /**
@@ -85,6 +383,41 @@ public final class BlockingConfig {
             return this;
         }
 
+        /**
+         * The threshold for a single placement, used by {@link PixalateBlocking#requestBlockStatus(String, BlockingStatusListener)}.
+         * Use a stricter threshold for placements that are more valuable to fraudsters, such as interstitials.
+         * Every placement is evaluated against the same cached probability, so additional placements cost no additional lookups.
+         * @param placementId The placement ID.
+         * @param blockingThreshold The threshold, from 0.1 to 1, that sets the maximum allowable IVT probability for the placement.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setPlacementThreshold ( String placementId, double blockingThreshold ) {
+            if( placementId == null ) throw new IllegalArgumentException( "The placement ID cannot be null." );
+            if( blockingThreshold < 0.1 || blockingThreshold > 1 ) {
+                throw new IllegalArgumentException( "The com.pixalate.android.blocking threshold must be between 0.1 and 1, inclusive." );
+            }
+
+            this.placementThresholds.put( placementId, blockingThreshold );
+
+            return this;
+        }
+
+        /**
+         * The blocking mode for a single placement, used by {@link PixalateBlocking#requestBlockStatus(String, BlockingStatusListener)}.
+         * Useful for simulating blocked traffic on one placement during development.
+         * @param placementId The placement ID.
+         * @param mode The blocking mode.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setPlacementMode ( String placementId, PixalateBlocking.BlockingMode mode ) {
+            if( placementId == null ) throw new IllegalArgumentException( "The placement ID cannot be null." );
+            if( mode == null ) throw new IllegalArgumentException( "The blocking mode cannot be null." );
+
+            this.placementModes.put( placementId, mode );
+
+            return this;
+        }
+
         /**
          * The maximum time a request can take, including any strategy executions -- anything beyond this will count as a failed attempt and call the error listener.
          * @param timeout The timeout value in milliseconds.
@@ -97,6 +430,35 @@ public final class BlockingConfig {
             return this;
         }
 
+        /**
+         * The time to wait for a fraud API response before sending a second, identical request on a fresh connection.
+         * The first response wins and the other request is cancelled. A value around the observed p90 latency works well.
+         * A value of 0 disables hedging.
+         * @param hedgingDelay The hedging delay in milliseconds.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setHedgingDelay ( int hedgingDelay ) {
+            if( hedgingDelay < 0 ) hedgingDelay = 0;
+            this.hedgingDelay = hedgingDelay;
+
+            return this;
+        }
+
+        /**
+         * The maximum fraction of fraud API requests that may be hedged, to keep the extra API volume bounded.
+         * @param hedgingBudget The budget, from 0 to 1. Defaults to 0.05, or at most 5% extra requests.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setHedgingBudget ( double hedgingBudget ) {
+            if( hedgingBudget < 0 || hedgingBudget > 1 ) {
+                throw new IllegalArgumentException( "The hedging budget must be between 0 and 1, inclusive." );
+            }
+
+            this.hedgingBudget = hedgingBudget;
+
+            return this;
+        }
+
         /**
          * The maximum time a cached result should be stored in the cache.
          * A value of 0 disables the cache.
@@ -110,6 +472,282 @@ public final class BlockingConfig {
             return this;
         }
 
+        /**
+         * How long before expiry recently used cached results and default strategy parameters should be refreshed in the background.
+         * Refreshes run when the app comes to the foreground, when the network becomes available, and while the app stays in the foreground.
+         * Network availability is only observed if the app holds the ACCESS_NETWORK_STATE permission.
+         * A value of 0 disables background refreshing.
+         * @param refreshWindow The refresh window in milliseconds.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setRefreshWindow ( long refreshWindow ) {
+            if( refreshWindow < 0 ) throw new IllegalArgumentException( "The refresh window must be greater than or equal to 0." );
+            this.refreshWindow = refreshWindow;
+
+            return this;
+        }
+
+        /**
+         * The maximum number of background refreshes that may run at the same time.
+         * @param maxConcurrentRefreshes The concurrent refresh cap, at least 1.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setMaxConcurrentRefreshes ( int maxConcurrentRefreshes ) {
+            if( maxConcurrentRefreshes < 1 ) throw new IllegalArgumentException( "The concurrent refresh cap must be at least 1." );
+            this.maxConcurrentRefreshes = maxConcurrentRefreshes;
+
+            return this;
+        }
+
+        /**
+         * The executor used to deliver {@link BlockingStatusListener} callbacks.
+         * Defaults to {@link BlockingConfig#MAIN_THREAD_EXECUTOR}. Pass {@link BlockingConfig#DIRECT_EXECUTOR} to receive
+         * callbacks on the SDK's background thread without touching the main looper, or any executor of your own.
+         * @param executor The callback executor.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setCallbackExecutor ( Executor executor ) {
+            if( executor == null ) throw new IllegalArgumentException( "The callback executor cannot be null." );
+            this.callbackExecutor = executor;
+
+            return this;
+        }
+
+        /**
+         * Whether cached results should be shared between all processes of the app, such as a separate ad process.
+         * The shared cache is a memory-mapped file, so a result fetched in one process is visible to the others
+         * immediately and without any IPC. Strategy parameters are still fetched and cached per process.
+         * @param enabled Whether to enable the shared cache.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setSharedCacheEnabled ( boolean enabled ) {
+            this.sharedCache = enabled;
+            return this;
+        }
+
+        /**
+         * How often block status requests should perform a full lookup, rather than reusing the last decision.
+         * Defaults to {@link DecisionPolicy#always()}.
+         * @param policy The decision policy.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setDecisionPolicy ( DecisionPolicy policy ) {
+            if( policy == null ) throw new IllegalArgumentException( "The decision policy cannot be null." );
+            this.decisionPolicy = policy;
+
+            return this;
+        }
+
+        /**
+         * Which parameters make up the key of cached results. Looser keys reuse results across changes to the
+         * parameters they leave out. Only the cache key is affected, the API request always includes every parameter.
+         * Defaults to {@link CacheKeyPolicy#ALL_FIELDS}.
+         * @param policy The cache key policy.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setCacheKeyPolicy ( CacheKeyPolicy policy ) {
+            if( policy == null ) throw new IllegalArgumentException( "The cache key policy cannot be null." );
+            this.cacheKeyPolicy = policy;
+
+            return this;
+        }
+
+        /**
+         * The prefix length IPv6 addresses are truncated to in cache keys, for example 64 to ignore privacy address rotation
+         * within the same network. Defaults to 128, which uses addresses as-is.
+         * @param prefixLength The prefix length, from 0 to 128.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setIPv6PrefixLength ( int prefixLength ) {
+            if( prefixLength < 0 || prefixLength > 128 ) {
+                throw new IllegalArgumentException( "The IPv6 prefix length must be between 0 and 128, inclusive." );
+            }
+
+            this.ipv6PrefixLength = prefixLength;
+
+            return this;
+        }
+
+        /**
+         * Whether cached results should be keyed by a 128-bit fingerprint of the cache key and stored in primitive arrays,
+         * rather than holding on to the full parameter strings. This greatly reduces the memory held per cached result,
+         * which matters for long sessions or many identities. Compact entries are not refreshed in the background.
+         * @param enabled Whether to enable the compact cache.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setCompactCacheEnabled ( boolean enabled ) {
+            this.compactCache = enabled;
+            return this;
+        }
+
+        /**
+         * The base URL of the fraud API, which lookup parameters are appended to as a query string.
+         * Only meant for pointing the SDK at a test server.
+         * @param url The fraud API URL.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setFraudURL ( String url ) {
+            if( url == null ) throw new IllegalArgumentException( "The fraud URL cannot be null." );
+            this.fraudURLs = Collections.singletonList( url );
+            return this;
+        }
+
+        /**
+         * Candidate base URLs of the fraud API, such as regional hosts or a local proxy. The SDK tracks the latency and
+         * error rate of each, sends every request to the best one, and periodically probes the others so it notices when
+         * they improve. A host that keeps failing is avoided for a while, and a failed request is retried on another host
+         * while its timeout allows. Hedge requests go to the second best host.
+         * @param urls The fraud API URLs, at least one.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setFraudURLs ( String... urls ) {
+            if( urls == null || urls.length == 0 ) throw new IllegalArgumentException( "At least one fraud URL is required." );
+            for( String url : urls ) {
+                if( url == null ) throw new IllegalArgumentException( "The fraud URL cannot be null." );
+            }
+
+            this.fraudURLs = Collections.unmodifiableList( new ArrayList<>( Arrays.asList( urls ) ) );
+            return this;
+        }
+
+        /**
+         * The endpoint the default strategy uses to look up the device's IPv4 address, unless the strategy
+         * was given an endpoint of its own. Only meant for pointing the SDK at a test server.
+         * @param url The IPv4 lookup URL.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setIPv4URL ( String url ) {
+            if( url == null ) throw new IllegalArgumentException( "The IPv4 URL cannot be null." );
+            this.ipv4URL = url;
+            return this;
+        }
+
+        /**
+         * The endpoint the default strategy uses to look up the device's IPv6 address, unless the strategy
+         * was given an endpoint of its own. Only meant for pointing the SDK at a test server.
+         * @param url The IPv6 lookup URL.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setIPv6URL ( String url ) {
+            if( url == null ) throw new IllegalArgumentException( "The IPv6 URL cannot be null." );
+            this.ipv6URL = url;
+            return this;
+        }
+
+        /**
+         * Whether the SDK should emit {@link android.os.Trace} sections for each phase of a lookup: strategy calls, cache lookup,
+         * HTTP connect and read, JSON parsing and listener dispatch. Sections are only recorded while a system trace is running,
+         * and cost next to nothing when this is disabled.
+         * @param enabled Whether to enable tracing.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setTracingEnabled ( boolean enabled ) {
+            this.tracingEnabled = enabled;
+            return this;
+        }
+
+        /**
+         * The number of recent SDK events to keep in memory, such as requests, cache hits, fraud API responses and decisions,
+         * which can be retrieved with {@link PixalateBlocking#dumpEventLog()} when investigating an issue in the field.
+         * Events are recorded into a fixed-size buffer without allocating, and the oldest are overwritten once it is full.
+         * Defaults to 0, which disables the event log.
+         * @param size The number of events to keep.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setEventLogSize ( int size ) {
+            if( size < 0 ) throw new IllegalArgumentException( "The event log size cannot be negative." );
+            this.eventLogSize = size;
+            return this;
+        }
+
+        /**
+         * The number of recent block status requests to record, for replaying them against a stub of the fraud API
+         * to compare SDK versions and configs on real traffic. Each request is recorded with its time, fingerprints of
+         * its parameters, its answer and how long it took, without allocating. Retrieve the recording with
+         * {@link PixalateBlocking#writeRequestRecording}. Defaults to 0, which disables recording.
+         * @param size The number of requests to keep.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setRequestRecordingSize ( int size ) {
+            if( size < 0 ) throw new IllegalArgumentException( "The request recording size cannot be negative." );
+            this.requestRecordingSize = size;
+            return this;
+        }
+
+        /**
+         * Whether the fraud API should infer the device's IP address from the connection, instead of the strategy
+         * looking up the IPv4 and IPv6 addresses before every uncached lookup. This takes two round trips off the critical path.
+         * The strategy's IP lookups are still used as a fallback if the fraud API cannot infer the address.
+         * Cached results are then keyed without the IP address, and dropped whenever the device changes networks, which requires the ACCESS_NETWORK_STATE permission.
+         * @param enabled Whether to enable server-inferred IP mode.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setServerInferredIPEnabled ( boolean enabled ) {
+            this.serverInferredIP = enabled;
+            return this;
+        }
+
+        /**
+         * The transport the SDK's HTTP requests are sent through, including the default strategy's IP address lookups
+         * unless the strategy was given a transport of its own. Pass an implementation backed by your app's HTTP client
+         * to share its connection pool and DNS cache.
+         * @param transport The transport.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setTransport ( BlockingTransport transport ) {
+            if( transport == null ) throw new IllegalArgumentException( "The transport cannot be null." );
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * Limits the rate of fraud API calls made with this API key, including background refreshes and hedge requests,
+         * so that a burst of ad requests never turns into a burst of billable calls. Calls are limited by a token bucket
+         * holding up to the burst size, refilled at the given rate, and the limit is shared by every config using the same key.
+         * A request that finds the bucket empty waits for a token for as long as its timeout allows. If none arrives in time,
+         * it is answered with the last decision if there is one, and with the rate limit fallback otherwise.
+         * Requests answered from the cache never take a token. Set the rate to 0 to disable rate limiting, which is the default.
+         * @param callsPerSecond The number of calls allowed per second.
+         * @param burst The number of calls allowed in a burst, at least 1.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setRateLimit ( double callsPerSecond, int burst ) {
+            if( callsPerSecond < 0 ) throw new IllegalArgumentException( "The rate limit cannot be negative." );
+            if( burst < 1 ) throw new IllegalArgumentException( "The rate limit burst must be at least 1." );
+            this.rateLimit = callsPerSecond;
+            this.rateLimitBurst = burst;
+            return this;
+        }
+
+        /**
+         * The decision given to rate limited requests that cannot be answered from the last decision.
+         * Defaults to {@link FallbackDecision#NONE}, which reports the request to onError with status code 429.
+         * @param decision The fallback decision.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setRateLimitFallback ( FallbackDecision decision ) {
+            if( decision == null ) throw new IllegalArgumentException( "The fallback decision cannot be null." );
+            this.rateLimitFallback = decision;
+            return this;
+        }
+
+        /**
+         * Bounds the latency a request adds to the ad path. A request with no decision after the deadline is answered
+         * with the given decision right away, while its lookup keeps running for up to the request timeout and caches
+         * its result, so the next request gets a real answer. Requests answered from the cache or the last decision are
+         * not affected. Set the deadline to 0 to wait for the lookup, which is the default.
+         * @param deadline The deadline in milliseconds, which should be below the request timeout to have any effect.
+         * @param decision The decision given at the deadline. {@link FallbackDecision#NONE} reports the request to onError with status code 408.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setDecisionDeadline ( int deadline, FallbackDecision decision ) {
+            if( deadline < 0 ) throw new IllegalArgumentException( "The decision deadline cannot be negative." );
+            if( decision == null ) throw new IllegalArgumentException( "The deadline decision cannot be null." );
+            this.decisionDeadline = deadline;
+            this.deadlineDecision = decision;
+            return this;
+        }
+
         /**
          * The strategy to use for retrieving important com.pixalate.android.blocking parameters.
          * Defaults to an implementation that provides the most common use case.
@@ -129,8 +767,33 @@ public final class BlockingConfig {
             BlockingConfig config = new BlockingConfig();
             config.apiKey = apiKey;
             config.blockingThreshold = blockingThreshold;
+            config.placementThresholds = Collections.unmodifiableMap( new HashMap<>( placementThresholds ) );
+            config.placementModes = Collections.unmodifiableMap( new HashMap<>( placementModes ) );
             config.requestTimeout = requestTimeout;
             config.ttl = ttl;
+            config.hedgingDelay = hedgingDelay;
+            config.hedgingBudget = hedgingBudget;
+            config.refreshWindow = refreshWindow;
+            config.maxConcurrentRefreshes = maxConcurrentRefreshes;
+            config.callbackExecutor = callbackExecutor;
+            config.sharedCache = sharedCache;
+            config.decisionPolicy = decisionPolicy;
+            config.cacheKeyPolicy = cacheKeyPolicy;
+            config.ipv6PrefixLength = ipv6PrefixLength;
+            config.compactCache = compactCache;
+            config.fraudURLs = fraudURLs;
+            config.ipv4URL = ipv4URL;
+            config.ipv6URL = ipv6URL;
+            config.tracingEnabled = tracingEnabled;
+            config.eventLogSize = eventLogSize;
+            config.requestRecordingSize = requestRecordingSize;
+            config.serverInferredIP = serverInferredIP;
+            config.transport = transport;
+            config.rateLimit = rateLimit;
+            config.rateLimitBurst = rateLimitBurst;
+            config.rateLimitFallback = rateLimitFallback;
+            config.decisionDeadline = decisionDeadline;
+            config.deadlineDecision = deadlineDecision;
 
             if( this.blockingStrategy != null ) {
                 config.blockingStrategy = blockingStrategy;
@@ -139,12 +802,45 @@ public final class BlockingConfig {
                     if( defaultBlockingStrategy.getRequestTimeout() < 0 ) {
                         defaultBlockingStrategy.setRequestTimeout( requestTimeout );
                     }
+                    applyNetworkSettings( defaultBlockingStrategy );
+                } else if( blockingStrategy instanceof CachingBlockingStrategy ) {
+                    ( (CachingBlockingStrategy) blockingStrategy ).applyRequestTimeout( requestTimeout );
                 }
             } else {
-                config.blockingStrategy = new DefaultBlockingStrategy( ttl );
+                // configs with the same settings share the cached device ID and IP addresses, but not the strategy.
+                config.blockingStrategy = DefaultBlockingStrategy.create( ttl, requestTimeout, ipv4URL, ipv6URL, transport );
             }
 
             return config;
         }
+
+        private void applyNetworkSettings ( DefaultBlockingStrategy strategy ) {
+            if( ipv4URL != null && DefaultBlockingStrategy.DEFAULT_IPV4_ENDPOINT.equals( strategy.getIPv4Endpoint() ) ) {
+                strategy.setIPv4Endpoint( ipv4URL );
+            }
+
+            if( ipv6URL != null && DefaultBlockingStrategy.DEFAULT_IPV6_ENDPOINT.equals( strategy.getIPv6Endpoint() ) ) {
+                strategy.setIPv6Endpoint( ipv6URL );
+            }
+
+            if( strategy.getTransport() == DefaultBlockingTransport.SHARED ) {
+                strategy.setTransport( transport );
+            }
+        }
+    }
+
+    private static final class MainThreadExecutor implements Executor {
+        private volatile Handler handler;
+
+        @Override
+        public void execute ( Runnable command ) {
+            Handler handler = this.handler;
+            if( handler == null ) {
+                handler = new Handler( Looper.getMainLooper() );
+                this.handler = handler;
+            }
+
+            handler.post( command );
+        }
     }
 }
@@ -0,0 +1,231 @@
+package com.pixalate.android.blocking;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes block decisions to subscribers: the current decision as soon as they subscribe, and afterwards only when it changes.
+ * Every new decision is checked, whoever requested it, including background refreshes. While anyone is subscribed,
+ * the decision is looked up again when it expires, and when the network or the device's IP addresses change.
+ */
+final class BlockingDecisionPublisher {
+
+    private static final long RETRY_DELAY = 1000 * 10;
+
+    private final Context context;
+    private final List<BlockingSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    // subscribers that joined while there was no fresh decision, who get the next one even if it is unchanged.
+    private final List<BlockingSubscription> awaitingDecision = new ArrayList<>();
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final AtomicBoolean evaluating = new AtomicBoolean();
+
+    private PixalateBlocking.BlockingResult current;
+    private Boolean blocked;
+    private ScheduledFuture<?> nextEvaluation;
+
+    BlockingDecisionPublisher ( Context context ) {
+        this.context = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+
+        this.scheduler = new ScheduledThreadPoolExecutor( 1 );
+        this.scheduler.setKeepAliveTime( 30, TimeUnit.SECONDS );
+        this.scheduler.allowCoreThreadTimeOut( true );
+        this.scheduler.setRemoveOnCancelPolicy( true );
+    }
+
+    BlockingSubscription add ( BlockingStatusListener listener ) {
+        BlockingSubscription subscription = new BlockingSubscription( this, listener );
+        PixalateBlocking.BlockingResult result;
+        boolean first;
+
+        synchronized( this ) {
+            subscriptions.add( subscription );
+            first = subscriptions.size() == 1;
+
+            if( current == null ) {
+                PixalateBlocking.BlockingResult last = PixalateBlocking.lastResult;
+                if( last != null ) update( last );
+            }
+
+            result = current;
+            if( result == null || isExpired( result ) ) {
+                awaitingDecision.add( subscription );
+            }
+        }
+
+        // network changes are observed by the SDK's monitor, which re-evaluates subscriptions through onNetworkChanged.
+        if( first ) PixalateBlocking.observeNetwork( context );
+
+        if( result != null && !isExpired( result ) ) {
+            deliver( subscription, result );
+        } else {
+            evaluate();
+        }
+
+        return subscription;
+    }
+
+    void remove ( BlockingSubscription subscription ) {
+        boolean last;
+
+        synchronized( this ) {
+            subscriptions.remove( subscription );
+            awaitingDecision.remove( subscription );
+
+            last = subscriptions.isEmpty();
+            if( last ) {
+                if( nextEvaluation != null ) nextEvaluation.cancel( false );
+                nextEvaluation = null;
+            }
+        }
+
+        if( last ) PixalateBlocking.stopObservingNetworkIfUnused();
+    }
+
+    boolean hasSubscriptions () {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * Called with every new decision. Subscribers are only told about it if it differs from the last one,
+     * or if they have not been given a decision yet.
+     */
+    void onResult ( PixalateBlocking.BlockingResult result ) {
+        if( result.hasError() ) return;
+
+        List<BlockingSubscription> targets;
+
+        synchronized( this ) {
+            if( update( result ) ) {
+                targets = new ArrayList<>( subscriptions );
+                PixalateBlocking.LogDebug( "Block decision changed, notifying %d subscribers.", targets.size() );
+            } else {
+                targets = new ArrayList<>( awaitingDecision );
+            }
+
+            awaitingDecision.clear();
+        }
+
+        for( BlockingSubscription subscription : targets ) {
+            deliver( subscription, result );
+        }
+    }
+
+    /**
+     * Stores the result as the current one, and schedules the lookup that replaces it.
+     * @return Whether the decision changed.
+     */
+    private boolean update ( PixalateBlocking.BlockingResult result ) {
+        boolean block = result.probability > PixalateBlocking.globalConfig.getBlockingThreshold();
+        boolean changed = blocked == null || blocked != block;
+
+        current = result;
+        blocked = block;
+
+        if( result.time > 0 && !subscriptions.isEmpty() ) {
+            schedule( result.time - new Date().getTime() );
+        }
+
+        return changed;
+    }
+
+    /**
+     * Looks the decision up again, unless a lookup is already underway or nobody is subscribed.
+     */
+    void evaluate () {
+        if( subscriptions.isEmpty() || !evaluating.compareAndSet( false, true ) ) return;
+
+        try {
+            PixalateBlocking.requestBlockStatus( PixalateBlocking.BlockingMode.DEFAULT, new BlockingStatusListener() {
+                @Override
+                public void onBlock () {
+                    evaluating.set( false );
+                }
+
+                @Override
+                public void onAllow () {
+                    evaluating.set( false );
+                }
+
+                @Override
+                public void onError ( int errorCode, String message ) {
+                    evaluating.set( false );
+                    onLookupFailed( errorCode, message );
+                }
+            });
+        } catch( RuntimeException e ) {
+            evaluating.set( false );
+            PixalateBlocking.LogDebug( "Failed to start decision lookup: %s", e.getMessage() );
+            synchronized( this ) {
+                schedule( RETRY_DELAY );
+            }
+        }
+    }
+
+    private void onLookupFailed ( int errorCode, String message ) {
+        List<BlockingSubscription> targets = null;
+        List<BlockingSubscription> waiting = null;
+        PixalateBlocking.BlockingResult standing;
+
+        synchronized( this ) {
+            // once a decision is known it stands until a lookup succeeds, so errors are only passed on before that.
+            if( blocked == null ) {
+                targets = new ArrayList<>( subscriptions );
+            } else {
+                waiting = new ArrayList<>( awaitingDecision );
+            }
+
+            awaitingDecision.clear();
+            standing = current;
+            schedule( RETRY_DELAY );
+        }
+
+        if( targets != null ) {
+            for( BlockingSubscription subscription : targets ) {
+                if( !subscription.isCancelled() ) subscription.listener.onError( errorCode, message );
+            }
+        }
+
+        // subscribers still waiting for their first decision get the standing one, even if it has expired.
+        if( waiting != null ) {
+            for( BlockingSubscription subscription : waiting ) {
+                deliver( subscription, standing );
+            }
+        }
+    }
+
+    private void schedule ( long delay ) {
+        if( subscriptions.isEmpty() ) return;
+
+        if( nextEvaluation != null ) nextEvaluation.cancel( false );
+        nextEvaluation = scheduler.schedule( this::evaluate, Math.max( delay, 0 ), TimeUnit.MILLISECONDS );
+    }
+
+    private void deliver ( BlockingSubscription subscription, PixalateBlocking.BlockingResult result ) {
+        BlockingConfig config = PixalateBlocking.globalConfig;
+
+        // checked again on delivery, since the subscription can be cancelled while the callback is queued.
+        PixalateBlocking.dispatch( config.getCallbackExecutor(), result, config.getBlockingThreshold(), new BlockingStatusListener() {
+            @Override
+            public void onBlock () {
+                if( !subscription.isCancelled() ) subscription.listener.onBlock();
+            }
+
+            @Override
+            public void onAllow () {
+                if( !subscription.isCancelled() ) subscription.listener.onAllow();
+            }
+        });
+    }
+
+    private static boolean isExpired ( PixalateBlocking.BlockingResult result ) {
+        return result.time != 0 && result.time <= new Date().getTime();
+    }
+}
@@ -0,0 +1,178 @@
+package com.pixalate.android.blocking;
+
+import java.util.List;
+
+/**
+ * Routes fraud API requests between candidate endpoints by their observed latency and error rate.
+ * Both are tracked as moving averages of the requests actually made, so no extra traffic is sent to measure them:
+ * endpoints that have not been used for a while are instead given the occasional real request, at most one per probe
+ * interval and per {@link #SELECTIONS_PER_PROBE} requests. An endpoint that fails
+ * several times in a row is avoided for a cooldown period, unless every endpoint is cooling down.
+ */
+final class BlockingEndpointSelector {
+
+    static final long PROBE_INTERVAL = 1000 * 30;
+    static final long COOLDOWN = 1000 * 30;
+    static final int FAILURES_BEFORE_COOLDOWN = 3;
+    static final int SELECTIONS_PER_PROBE = 10;
+
+    /**
+     * The latency an error is counted as, so failing one request in ten weighs as much as 100ms of extra latency.
+     */
+    private static final double ERROR_PENALTY = 1000;
+    private static final double SMOOTHING = 0.2;
+
+    private final List<String> urls;
+    private final Endpoint[] endpoints;
+
+    private long lastProbe;
+    private int selectionsSinceProbe;
+
+    private static final class Endpoint {
+        int samples;
+        double latency;
+        double errorRate;
+        int consecutiveFailures;
+        long cooldownUntil;
+        long lastSelected;
+    }
+
+    BlockingEndpointSelector ( List<String> urls ) {
+        this.urls = urls;
+        this.endpoints = new Endpoint[ urls.size() ];
+        for( int i = 0; i < endpoints.length; i++ ) {
+            endpoints[ i ] = new Endpoint();
+        }
+    }
+
+    /**
+     * Returns the selector to use for the given URLs, keeping the current one and its measurements if the URLs are unchanged.
+     */
+    static BlockingEndpointSelector forURLs ( List<String> urls, BlockingEndpointSelector current ) {
+        return current != null && current.urls.equals( urls ) ? current : new BlockingEndpointSelector( urls );
+    }
+
+    int size () {
+        return endpoints.length;
+    }
+
+    String url ( int endpoint ) {
+        return urls.get( endpoint );
+    }
+
+    /**
+     * Picks the endpoint for a request: the best endpoint, unless another is due to be probed.
+     * @return The index of the endpoint.
+     */
+    int select () {
+        return select( System.currentTimeMillis() );
+    }
+
+    synchronized int select ( long now ) {
+        if( endpoints.length == 1 ) return 0;
+
+        boolean anyAvailable = anyAvailable( now );
+        int selected = best( -1, now, anyAvailable );
+        selectionsSinceProbe++;
+
+        // endpoints that were never used get the request first, and after that the endpoint unused for longest is given
+        // one request per probe interval and per so many selections, so the best endpoint keeps nearly all of the
+        // requests even when they are far apart.
+        if( endpoints[ selected ].lastSelected != 0 ) {
+            int probed = -1;
+            for( int i = 0; i < endpoints.length; i++ ) {
+                Endpoint endpoint = endpoints[ i ];
+                if( i == selected || ( anyAvailable && endpoint.cooldownUntil > now ) ) continue;
+
+                if( now - endpoint.lastSelected >= PROBE_INTERVAL ) {
+                    if( probed == -1 || endpoint.lastSelected < endpoints[ probed ].lastSelected ) {
+                        probed = i;
+                    }
+                }
+            }
+
+            boolean due = now - lastProbe >= PROBE_INTERVAL && selectionsSinceProbe >= SELECTIONS_PER_PROBE;
+            if( probed != -1 && ( endpoints[ probed ].lastSelected == 0 || due ) ) {
+                selected = probed;
+                lastProbe = now;
+                selectionsSinceProbe = 0;
+            }
+        }
+
+        endpoints[ selected ].lastSelected = now;
+        return selected;
+    }
+
+    /**
+     * Picks the best endpoint other than the given one, for hedge requests and failover.
+     * @return The index of the endpoint, or the given endpoint if there is no other.
+     */
+    synchronized int alternate ( int excluded ) {
+        if( endpoints.length == 1 ) return excluded;
+
+        long now = System.currentTimeMillis();
+        int selected = best( excluded, now, anyAvailable( now ) );
+
+        endpoints[ selected ].lastSelected = now;
+        return selected;
+    }
+
+    /**
+     * Records the outcome of a request sent to an endpoint.
+     * @param latency The time from sending the request to its outcome, in milliseconds.
+     * @param success Whether the endpoint answered, as opposed to failing or answering with a server error.
+     */
+    synchronized void report ( int endpoint, long latency, boolean success ) {
+        if( endpoints.length == 1 ) return;
+
+        Endpoint stats = endpoints[ endpoint ];
+
+        if( stats.samples == 0 ) {
+            stats.latency = latency;
+            stats.errorRate = success ? 0 : 1;
+        } else {
+            stats.latency += SMOOTHING * ( latency - stats.latency );
+            stats.errorRate += SMOOTHING * ( ( success ? 0 : 1 ) - stats.errorRate );
+        }
+        stats.samples++;
+
+        if( success ) {
+            stats.consecutiveFailures = 0;
+        } else if( ++stats.consecutiveFailures >= FAILURES_BEFORE_COOLDOWN ) {
+            PixalateBlocking.LogDebug( "Fraud API endpoint %s keeps failing, avoiding it for a while.", urls.get( endpoint ) );
+            stats.cooldownUntil = System.currentTimeMillis() + COOLDOWN;
+            stats.consecutiveFailures = 0;
+        }
+    }
+
+    private boolean anyAvailable ( long now ) {
+        for( Endpoint endpoint : endpoints ) {
+            if( endpoint.cooldownUntil <= now ) return true;
+        }
+        return false;
+    }
+
+    private int best ( int excluded, long now, boolean anyAvailable ) {
+        int best = -1;
+        double bestScore = Double.POSITIVE_INFINITY;
+
+        for( int i = 0; i < endpoints.length; i++ ) {
+            Endpoint endpoint = endpoints[ i ];
+            if( i == excluded || ( anyAvailable && endpoint.cooldownUntil > now ) ) continue;
+
+            // endpoints without measurements are only picked over a measured endpoint when probed.
+            double score = endpoint.samples == 0 ? Double.MAX_VALUE : endpoint.latency + endpoint.errorRate * ERROR_PENALTY;
+            if( score < bestScore ) {
+                best = i;
+                bestScore = score;
+            }
+        }
+
+        // every other endpoint is cooling down, so any of them is better than none.
+        if( best == -1 ) {
+            best = excluded == 0 ? 1 : 0;
+        }
+
+        return best;
+    }
+}
@@ -0,0 +1,113 @@
+package com.pixalate.android.blocking;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size ring buffer of recent SDK events, for debugging production issues without logcat output.
+ * Events are stored as fixed-size binary records, so recording one allocates nothing and never formats a string;
+ * formatting only happens when the buffer is dumped. When the buffer is disabled, recording is a single field read.
+ *
+ * Each record holds a sequence number, the time, the recording thread and event, and a numeric value.
+ * The sequence number is cleared while a record is written, so a dump skips records that are being overwritten.
+ */
+final class BlockingEventLog {
+
+    enum Event {
+        CONFIG_UPDATED,
+        REQUEST_STARTED,
+        DECISION_REUSED,
+        CACHE_HIT,
+        CACHE_MISS,
+        FRAUD_REQUEST_SENT,
+        HEDGE_SENT,
+        FRAUD_RESPONSE,
+        REQUEST_FAILED,
+        DECISION_BLOCK,
+        DECISION_ALLOW,
+        RESULT_REFRESHED,
+        MEMORY_TRIMMED,
+        NETWORK_CHANGED,
+        RATE_LIMITED,
+        DEADLINE_EXCEEDED
+    }
+
+    private static final Event[] EVENTS = Event.values();
+    private static final int RECORD_SIZE = 4;
+
+    private static volatile BlockingEventLog instance;
+
+    private final int capacity;
+    private final AtomicLongArray records;
+    private final AtomicLong next = new AtomicLong();
+
+    private BlockingEventLog ( int capacity ) {
+        this.capacity = capacity;
+        this.records = new AtomicLongArray( capacity * RECORD_SIZE );
+    }
+
+    /**
+     * Resizes the buffer, dropping its contents, or disables it if the size is 0. Keeps the buffer if its size is unchanged.
+     */
+    static synchronized void configure ( int size ) {
+        BlockingEventLog current = instance;
+
+        if( size <= 0 ) {
+            instance = null;
+        } else if( current == null || current.capacity != size ) {
+            instance = new BlockingEventLog( size );
+        }
+    }
+
+    static void record ( Event event ) {
+        record( event, 0 );
+    }
+
+    static void record ( Event event, long value ) {
+        BlockingEventLog log = instance;
+        if( log == null ) return;
+
+        long sequence = log.next.incrementAndGet();
+        int base = (int) ( ( sequence - 1 ) % log.capacity ) * RECORD_SIZE;
+
+        log.records.set( base, 0 );
+        log.records.lazySet( base + 1, System.currentTimeMillis() );
+        log.records.lazySet( base + 2, ( Thread.currentThread().getId() << 16 ) | event.ordinal() );
+        log.records.lazySet( base + 3, value );
+        log.records.set( base, sequence );
+    }
+
+    /**
+     * Formats the buffered events, oldest first, one per line.
+     * @return The events, or an empty string if the buffer is disabled.
+     */
+    static String dump () {
+        BlockingEventLog log = instance;
+        if( log == null ) return "";
+
+        long last = log.next.get();
+        long first = Math.max( 1, last - log.capacity + 1 );
+        StringBuilder out = new StringBuilder( (int) ( last - first + 1 ) * 48 );
+
+        for( long sequence = first; sequence <= last; sequence++ ) {
+            int base = (int) ( ( sequence - 1 ) % log.capacity ) * RECORD_SIZE;
+
+            // the record is still being written, or holds an older or newer event.
+            if( log.records.get( base ) != sequence ) continue;
+
+            long time = log.records.get( base + 1 );
+            long tag = log.records.get( base + 2 );
+            long value = log.records.get( base + 3 );
+
+            // the record was overwritten while it was read.
+            if( log.records.get( base ) != sequence ) continue;
+
+            int ordinal = (int) ( tag & 0xffff );
+            out.append( String.format( Locale.US, "%tF %<tT.%<tL [%d] %s %d%n",
+                time, tag >>> 16, ordinal < EVENTS.length ? EVENTS[ ordinal ] : "UNKNOWN", value ) );
+        }
+
+        return out.toString();
+    }
+}
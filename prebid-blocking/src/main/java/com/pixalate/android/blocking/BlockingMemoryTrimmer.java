@@ -0,0 +1,23 @@
+package com.pixalate.android.blocking;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+
+/**
+ * Forwards system memory pressure signals to the SDK, so that its caches shrink when the system asks apps to free memory.
+ * Registered against the application context on initialization.
+ */
+final class BlockingMemoryTrimmer implements ComponentCallbacks2 {
+    @Override
+    public void onTrimMemory ( int level ) {
+        PixalateBlocking.trimMemory( level );
+    }
+
+    @Override
+    public void onLowMemory () {
+        PixalateBlocking.trimMemory( TRIM_MEMORY_COMPLETE );
+    }
+
+    @Override
+    public void onConfigurationChanged ( Configuration newConfig ) {}
+}
@@ -0,0 +1,150 @@
+package com.pixalate.android.blocking;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.net.ConnectivityManager;
+import android.net.LinkAddress;
+import android.net.LinkProperties;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls back when the device moves to another network or its IP addresses change, once the change has settled.
+ * From Android 7 only the default network is followed; before, the addresses of each network are compared with that
+ * network's own earlier addresses. Requires the ACCESS_NETWORK_STATE permission, without which nothing is observed.
+ */
+final class BlockingNetworkMonitor {
+
+    /**
+     * Network callbacks tend to arrive in bursts while a network comes up, so changes are acted on once they settle.
+     */
+    static final long SETTLE_DELAY = 1000;
+
+    private static ScheduledThreadPoolExecutor timer;
+
+    private final Context context;
+    private final Runnable onChange;
+
+    private ConnectivityManager.NetworkCallback networkCallback;
+    private boolean defaultNetworkOnly;
+    private Network lastNetwork;
+    private final Map<Network,List<LinkAddress>> lastAddresses = new HashMap<>();
+    private ScheduledFuture<?> pendingChange;
+
+    BlockingNetworkMonitor ( Context context, Runnable onChange ) {
+        this.context = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        this.onChange = onChange;
+    }
+
+    /**
+     * Starts observing the network.
+     * @return Whether the network is observed, which requires the ACCESS_NETWORK_STATE permission.
+     */
+    synchronized boolean start () {
+        if( networkCallback != null ) return true;
+
+        if( context.checkCallingOrSelfPermission( Manifest.permission.ACCESS_NETWORK_STATE ) != PackageManager.PERMISSION_GRANTED ) {
+            return false;
+        }
+
+        ConnectivityManager connectivity = (ConnectivityManager) context.getSystemService( Context.CONNECTIVITY_SERVICE );
+        if( connectivity == null ) return false;
+
+        networkCallback = new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable ( Network network ) {
+                synchronized( BlockingNetworkMonitor.this ) {
+                    // every network is available while callbacks follow all of them, which is not a change.
+                    if( !defaultNetworkOnly ) return;
+
+                    // the callback is called for the current network on registration, which is not a change.
+                    if( lastNetwork != null && !lastNetwork.equals( network ) ) {
+                        scheduleChange();
+                    }
+                    lastNetwork = network;
+                }
+            }
+
+            @Override
+            public void onLinkPropertiesChanged ( Network network, LinkProperties linkProperties ) {
+                List<LinkAddress> addresses = linkProperties.getLinkAddresses();
+                List<LinkAddress> copy = addresses != null ? new ArrayList<>( addresses ) : new ArrayList<>();
+
+                synchronized( BlockingNetworkMonitor.this ) {
+                    List<LinkAddress> previous = lastAddresses.put( network, copy );
+                    if( previous != null && !previous.equals( copy ) ) {
+                        scheduleChange();
+                    }
+                }
+            }
+
+            @Override
+            public void onLost ( Network network ) {
+                synchronized( BlockingNetworkMonitor.this ) {
+                    lastAddresses.remove( network );
+                }
+            }
+        };
+
+        try {
+            if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.N ) {
+                defaultNetworkOnly = true;
+                connectivity.registerDefaultNetworkCallback( networkCallback );
+            } else {
+                defaultNetworkOnly = false;
+                connectivity.registerNetworkCallback( new NetworkRequest.Builder()
+                    .addCapability( NetworkCapabilities.NET_CAPABILITY_INTERNET )
+                    .build(), networkCallback );
+            }
+        } catch( SecurityException e ) {
+            networkCallback = null;
+            return false;
+        }
+
+        return true;
+    }
+
+    synchronized void stop () {
+        if( networkCallback != null ) {
+            ConnectivityManager connectivity = (ConnectivityManager) context.getSystemService( Context.CONNECTIVITY_SERVICE );
+            if( connectivity != null ) connectivity.unregisterNetworkCallback( networkCallback );
+            networkCallback = null;
+        }
+
+        if( pendingChange != null ) pendingChange.cancel( false );
+        pendingChange = null;
+        lastNetwork = null;
+        lastAddresses.clear();
+    }
+
+    private void scheduleChange () {
+        if( pendingChange != null ) pendingChange.cancel( false );
+        pendingChange = timer().schedule( onChange, SETTLE_DELAY, TimeUnit.MILLISECONDS );
+    }
+
+    private static synchronized ScheduledThreadPoolExecutor timer () {
+        if( timer == null ) {
+            timer = new ScheduledThreadPoolExecutor( 1, runnable -> {
+                Thread thread = new Thread( runnable, "PixalateNetworkMonitor" );
+                thread.setDaemon( true );
+                return thread;
+            });
+            timer.setKeepAliveTime( 30, TimeUnit.SECONDS );
+            timer.allowCoreThreadTimeOut( true );
+            timer.setRemoveOnCancelPolicy( true );
+        }
+
+        return timer;
+    }
+}
@@ -0,0 +1,85 @@
+package com.pixalate.android.blocking;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket limiting the rate of fraud API calls made with one API key. The bucket holds up to the burst size in tokens,
+ * refilled at the configured rate, and each call takes one. Limiters are kept per API key, so every config using the same key
+ * draws from the same bucket, and a config update keeps the bucket's state unless the limits changed. A key's limiter is
+ * dropped once no config or client holds it anymore.
+ */
+final class BlockingRateLimiter {
+
+    private static final Map<String,WeakReference<BlockingRateLimiter>> limiters = new ConcurrentHashMap<>();
+
+    private final double permitsPerSecond;
+    private final int burst;
+
+    private double tokens;
+    private long lastRefill;
+
+    BlockingRateLimiter ( double permitsPerSecond, int burst ) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Returns the limiter for the given API key and limits, replacing the key's limiter if its limits differ.
+     * @return The limiter, or null if the limits disable rate limiting.
+     */
+    static BlockingRateLimiter forKey ( String apiKey, double permitsPerSecond, int burst ) {
+        // other configs or clients with the same key may still be using its limiter, so it is left in place.
+        if( permitsPerSecond <= 0 ) return null;
+
+        String key = apiKey != null ? apiKey : "";
+        limiters.values().removeIf( reference -> reference.get() == null );
+
+        BlockingRateLimiter[] limiter = new BlockingRateLimiter[ 1 ];
+        limiters.compute( key, ( k, reference ) -> {
+            BlockingRateLimiter current = reference != null ? reference.get() : null;
+            if( current != null && current.permitsPerSecond == permitsPerSecond && current.burst == burst ) {
+                limiter[ 0 ] = current;
+                return reference;
+            }
+
+            limiter[ 0 ] = new BlockingRateLimiter( permitsPerSecond, burst );
+            return new WeakReference<>( limiter[ 0 ] );
+        });
+
+        return limiter[ 0 ];
+    }
+
+    /**
+     * Takes a token, waiting for one if none is left and the wait would not exceed the given time.
+     * A waiting caller reserves its token up front, so callers are served in the order they arrive.
+     * @param maxWait The longest time to wait in milliseconds, or a negative value to wait as long as it takes.
+     * @return The time waited in milliseconds, or -1 if no token could be taken in time.
+     */
+    long acquire ( long maxWait ) throws InterruptedException {
+        long wait;
+
+        synchronized( this ) {
+            long now = System.nanoTime();
+            tokens = Math.min( burst, tokens + ( now - lastRefill ) * permitsPerSecond / TimeUnit.SECONDS.toNanos( 1 ) );
+            lastRefill = now;
+
+            wait = tokens >= 1 ? 0 : (long) Math.ceil( ( 1 - tokens ) * 1000 / permitsPerSecond );
+            if( maxWait >= 0 && wait > maxWait ) {
+                return -1;
+            }
+
+            tokens -= 1;
+        }
+
+        if( wait > 0 ) {
+            Thread.sleep( wait );
+        }
+
+        return wait;
+    }
+}
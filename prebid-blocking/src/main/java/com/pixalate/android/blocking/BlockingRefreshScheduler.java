@@ -0,0 +1,208 @@
+package com.pixalate.android.blocking;
+
+import android.Manifest;
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.os.Bundle;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refreshes recently used cached results and default strategy parameters shortly before they expire,
+ * so that requests made while the app is in use never have to wait on an expired entry.
+ * Refresh passes run when the app comes to the foreground, when the network becomes available,
+ * and, while the app stays in the foreground, just ahead of the next expiry.
+ */
+final class BlockingRefreshScheduler implements Application.ActivityLifecycleCallbacks {
+
+    /**
+     * Cached results that have not been served within this window are considered cold, and are left to expire.
+     */
+    static final long HOT_ENTRY_WINDOW = 1000 * 60 * 60;
+
+    private final Context context;
+    private final long refreshWindow;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final Random random = new Random();
+
+    private ConnectivityManager.NetworkCallback networkCallback;
+    private ScheduledFuture<?> nextPass;
+    private int startedActivities;
+    private volatile boolean foreground = true;
+
+    BlockingRefreshScheduler ( Context context, long refreshWindow, int maxConcurrentRefreshes ) {
+        this.context = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        this.refreshWindow = refreshWindow;
+
+        // the pool size doubles as the cap on concurrent refreshes.
+        this.scheduler = new ScheduledThreadPoolExecutor( maxConcurrentRefreshes );
+        this.scheduler.setKeepAliveTime( 30, TimeUnit.SECONDS );
+        this.scheduler.allowCoreThreadTimeOut( true );
+    }
+
+    void start () {
+        if( context instanceof Application ) {
+            ( (Application) context ).registerActivityLifecycleCallbacks( this );
+        }
+
+        if( context.checkCallingOrSelfPermission( Manifest.permission.ACCESS_NETWORK_STATE ) == PackageManager.PERMISSION_GRANTED ) {
+            ConnectivityManager connectivity = (ConnectivityManager) context.getSystemService( Context.CONNECTIVITY_SERVICE );
+
+            if( connectivity != null ) {
+                networkCallback = new ConnectivityManager.NetworkCallback() {
+                    @Override
+                    public void onAvailable ( Network network ) {
+                        PixalateBlocking.LogDebug( "Network became available, scheduling cache refresh." );
+                        schedulePass( jitter() );
+                    }
+                };
+
+                try {
+                    connectivity.registerNetworkCallback( new NetworkRequest.Builder()
+                        .addCapability( NetworkCapabilities.NET_CAPABILITY_INTERNET )
+                        .build(), networkCallback );
+                } catch( SecurityException e ) {
+                    networkCallback = null;
+                }
+            }
+        } else {
+            PixalateBlocking.LogDebug( "ACCESS_NETWORK_STATE not granted, cache refresh will not observe network changes." );
+        }
+
+        schedulePass( jitter() );
+    }
+
+    void stop () {
+        if( context instanceof Application ) {
+            ( (Application) context ).unregisterActivityLifecycleCallbacks( this );
+        }
+
+        if( networkCallback != null ) {
+            ConnectivityManager connectivity = (ConnectivityManager) context.getSystemService( Context.CONNECTIVITY_SERVICE );
+            if( connectivity != null ) connectivity.unregisterNetworkCallback( networkCallback );
+            networkCallback = null;
+        }
+
+        scheduler.shutdownNow();
+    }
+
+    private synchronized void schedulePass ( long delay ) {
+        if( scheduler.isShutdown() ) return;
+
+        if( nextPass != null ) {
+            nextPass.cancel( false );
+        }
+
+        nextPass = scheduler.schedule( this::runPass, Math.max( delay, 0 ), TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Brings the next pass forward if a result stored with the given expiry is due for refresh before it,
+     * so results cached while the app stays in the foreground are refreshed too.
+     */
+    synchronized void onResultStored ( long expiry ) {
+        if( !foreground ) return;
+
+        long delay = expiry - refreshWindow - System.currentTimeMillis();
+        if( nextPass != null && !nextPass.isDone() && nextPass.getDelay( TimeUnit.MILLISECONDS ) <= delay ) return;
+
+        schedulePass( delay );
+    }
+
+    /**
+     * A random delay of up to a quarter of the refresh window, to spread refreshes out.
+     */
+    private long jitter () {
+        long bound = Math.max( refreshWindow / 4, 1 );
+        synchronized( random ) {
+            return (long) ( random.nextDouble() * bound );
+        }
+    }
+
+    private void runPass () {
+        BlockingConfig config = PixalateBlocking.globalConfig;
+        Map<PixalateBlocking.BlockingCacheParameters,PixalateBlocking.BlockingResult> cache = PixalateBlocking.cachedResults;
+
+        if( config == null || cache == null ) return;
+
+        BlockingStrategy strategy = config.getBlockingStrategy();
+        if( strategy instanceof DefaultBlockingStrategy ) {
+            scheduler.execute( () -> ( (DefaultBlockingStrategy) strategy ).refreshExpiring( context, refreshWindow ) );
+        }
+
+        long now = System.currentTimeMillis();
+        long nextDue = Long.MAX_VALUE;
+
+        for( Map.Entry<PixalateBlocking.BlockingCacheParameters,PixalateBlocking.BlockingResult> entry : cache.entrySet() ) {
+            PixalateBlocking.BlockingCacheParameters key = entry.getKey();
+            PixalateBlocking.BlockingResult result = entry.getValue();
+
+            if( key.mode != PixalateBlocking.BlockingMode.DEFAULT || now - result.lastAccess > HOT_ENTRY_WINDOW ) {
+                continue;
+            }
+
+            long refreshAt = result.time - refreshWindow;
+
+            if( refreshAt > now ) {
+                nextDue = Math.min( nextDue, refreshAt );
+            } else if( !result.refreshing && result.time > now ) {
+                result.refreshing = true;
+                scheduler.schedule( () -> {
+                    if( PixalateBlocking.refreshCachedResult( key, result ) && foreground ) {
+                        schedulePass( jitter() );
+                    }
+                }, jitter(), TimeUnit.MILLISECONDS );
+            }
+        }
+
+        if( foreground && nextDue != Long.MAX_VALUE ) {
+            schedulePass( nextDue - now );
+        }
+    }
+
+    @Override
+    public void onActivityStarted ( Activity activity ) {
+        startedActivities++;
+
+        if( !foreground ) {
+            foreground = true;
+            PixalateBlocking.LogDebug( "App came to the foreground, scheduling cache refresh." );
+            schedulePass( jitter() );
+        }
+    }
+
+    @Override
+    public void onActivityStopped ( Activity activity ) {
+        // the scheduler may have started after some activities, so this can undercount.
+        startedActivities = Math.max( startedActivities - 1, 0 );
+
+        if( startedActivities == 0 ) {
+            foreground = false;
+        }
+    }
+
+    @Override
+    public void onActivityCreated ( Activity activity, Bundle savedInstanceState ) {}
+
+    @Override
+    public void onActivityResumed ( Activity activity ) {}
+
+    @Override
+    public void onActivityPaused ( Activity activity ) {}
+
+    @Override
+    public void onActivitySaveInstanceState ( Activity activity, Bundle outState ) {}
+
+    @Override
+    public void onActivityDestroyed ( Activity activity ) {}
+}
@@ -0,0 +1,236 @@
+package com.pixalate.android.blocking;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records a compact trace of block status requests, for replaying real traffic against a stub of the fraud API
+ * to compare SDK versions and configs. Like the event log, requests are stored as fixed-size binary records in a ring buffer,
+ * so recording one allocates nothing, and the oldest are overwritten once it is full.
+ *
+ * Each record holds the time of the request, a fingerprint of each of its parameters, the time it took to answer,
+ * where the answer came from and the answer itself. Fingerprints are salted with a random value chosen when the recorder
+ * is configured, so they tell equal parameters apart within one recording without revealing the parameters.
+ */
+final class BlockingRequestRecorder {
+
+    /**
+     * Where a request's answer came from.
+     */
+    enum Source {
+        LOOKUP,
+        CACHE,
+        REUSED,
+        SIMULATED,
+        FALLBACK,
+        ERROR
+    }
+
+    private static final Source[] SOURCES = Source.values();
+    private static final int RECORD_SIZE = 8;
+
+    private static final int MAGIC = 0x50585254;
+    private static final int VERSION = 1;
+
+    private static volatile BlockingRequestRecorder instance;
+
+    private final int capacity;
+    private final long salt;
+    private final AtomicLongArray records;
+    private final AtomicLong next = new AtomicLong();
+
+    private BlockingRequestRecorder ( int capacity ) {
+        this.capacity = capacity;
+        this.salt = new SecureRandom().nextLong();
+        this.records = new AtomicLongArray( capacity * RECORD_SIZE );
+    }
+
+    /**
+     * Resizes the buffer, dropping its contents, or disables it if the size is 0. Keeps the buffer if its size is unchanged.
+     */
+    static synchronized void configure ( int size ) {
+        BlockingRequestRecorder current = instance;
+
+        if( size <= 0 ) {
+            instance = null;
+        } else if( current == null || current.capacity != size ) {
+            instance = new BlockingRequestRecorder( size );
+        }
+    }
+
+    /**
+     * Records a request that was answered.
+     * @param time       When the request was made, in milliseconds since the epoch.
+     * @param parameters The parameters of the request, or null if unknown.
+     * @param latency    The time it took to answer the request, in nanoseconds.
+     */
+    static void record ( long time, PixalateBlocking.BlockingCacheParameters parameters, long latency, PixalateBlocking.BlockingResult result, Source source ) {
+        BlockingRequestRecorder recorder = instance;
+        if( recorder == null ) return;
+
+        // the answer is a status code for errors, and the probability in thousandths otherwise.
+        long answer = result.hasError() ? result.errorCode : Math.round( result.probability * 1000 );
+
+        long sequence = recorder.next.incrementAndGet();
+        int base = (int) ( ( sequence - 1 ) % recorder.capacity ) * RECORD_SIZE;
+        AtomicLongArray records = recorder.records;
+
+        records.set( base, 0 );
+        records.lazySet( base + 1, time );
+        records.lazySet( base + 2, parameters != null ? recorder.fingerprint( parameters.deviceId ) : 0 );
+        records.lazySet( base + 3, parameters != null ? recorder.fingerprint( parameters.ipv4 ) : 0 );
+        records.lazySet( base + 4, parameters != null ? recorder.fingerprint( parameters.ipv6 ) : 0 );
+        records.lazySet( base + 5, parameters != null ? recorder.fingerprint( parameters.userAgent ) : 0 );
+        records.lazySet( base + 6, latency / 1000 );
+        records.lazySet( base + 7, ( (long) source.ordinal() << 32 ) | ( answer & 0xffffffffL ) );
+        records.set( base, sequence );
+    }
+
+    /**
+     * A salted 64-bit hash of a parameter. Never returns 0, which marks a missing parameter.
+     */
+    private long fingerprint ( String value ) {
+        if( value == null ) return 0;
+
+        long hash = 0xcbf29ce484222325L ^ salt;
+        for( int i = 0; i < value.length(); i++ ) {
+            hash = ( hash ^ value.charAt( i ) ) * 0x100000001b3L;
+        }
+
+        hash = ( hash ^ ( hash >>> 33 ) ) * 0xff51afd7ed558ccdL;
+        hash = ( hash ^ ( hash >>> 33 ) ) * 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Returns the recorded requests, oldest first.
+     * @return The requests, or an empty list if the recorder is disabled.
+     */
+    static List<Record> snapshot () {
+        BlockingRequestRecorder recorder = instance;
+        if( recorder == null ) return new ArrayList<>();
+
+        long last = recorder.next.get();
+        long first = Math.max( 1, last - recorder.capacity + 1 );
+        List<Record> snapshot = new ArrayList<>( (int) ( last - first + 1 ) );
+
+        for( long sequence = first; sequence <= last; sequence++ ) {
+            int base = (int) ( ( sequence - 1 ) % recorder.capacity ) * RECORD_SIZE;
+            AtomicLongArray records = recorder.records;
+
+            // the record is still being written, or holds an older or newer request.
+            if( records.get( base ) != sequence ) continue;
+
+            Record record = new Record();
+            record.time = records.get( base + 1 );
+            record.deviceId = records.get( base + 2 );
+            record.ipv4 = records.get( base + 3 );
+            record.ipv6 = records.get( base + 4 );
+            record.userAgent = records.get( base + 5 );
+            record.latencyMicros = records.get( base + 6 );
+
+            long outcome = records.get( base + 7 );
+            int source = (int) ( outcome >>> 32 );
+            record.source = source < SOURCES.length ? SOURCES[ source ] : Source.ERROR;
+            record.answer = (int) outcome;
+
+            // the record was overwritten while it was read.
+            if( records.get( base ) != sequence ) continue;
+
+            snapshot.add( record );
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Writes the given records in the recording format: a header followed by the records, with times stored as the
+     * difference to the previous record.
+     */
+    static void write ( List<Record> records, OutputStream out ) throws IOException {
+        DataOutputStream data = new DataOutputStream( out );
+        data.writeInt( MAGIC );
+        data.writeByte( VERSION );
+        data.writeInt( records.size() );
+
+        long previous = records.isEmpty() ? 0 : records.get( 0 ).time;
+        data.writeLong( previous );
+
+        for( Record record : records ) {
+            data.writeInt( (int) Math.max( 0, Math.min( Integer.MAX_VALUE, record.time - previous ) ) );
+            data.writeLong( record.deviceId );
+            data.writeLong( record.ipv4 );
+            data.writeLong( record.ipv6 );
+            data.writeLong( record.userAgent );
+            data.writeInt( (int) Math.min( Integer.MAX_VALUE, record.latencyMicros ) );
+            data.writeByte( record.source.ordinal() );
+            data.writeInt( record.answer );
+            previous = record.time;
+        }
+
+        data.flush();
+    }
+
+    /**
+     * Reads records written by {@link #write}.
+     * @throws IOException If the stream does not hold a recording, or holds one of a newer version.
+     */
+    static List<Record> read ( InputStream in ) throws IOException {
+        DataInputStream data = new DataInputStream( in );
+        if( data.readInt() != MAGIC ) throw new IOException( "Not a request recording." );
+
+        int version = data.readUnsignedByte();
+        if( version > VERSION ) throw new IOException( "Unsupported request recording version " + version + "." );
+
+        int count = data.readInt();
+        long time = data.readLong();
+        List<Record> records = new ArrayList<>( count );
+
+        for( int i = 0; i < count; i++ ) {
+            Record record = new Record();
+            time += data.readInt();
+            record.time = time;
+            record.deviceId = data.readLong();
+            record.ipv4 = data.readLong();
+            record.ipv6 = data.readLong();
+            record.userAgent = data.readLong();
+            record.latencyMicros = data.readInt();
+
+            int source = data.readUnsignedByte();
+            record.source = source < SOURCES.length ? SOURCES[ source ] : Source.ERROR;
+            record.answer = data.readInt();
+
+            records.add( record );
+        }
+
+        return records;
+    }
+
+    /**
+     * A recorded request. Parameters are fingerprints, or 0 if the parameter was missing.
+     */
+    static final class Record {
+        long time;
+        long deviceId;
+        long ipv4;
+        long ipv6;
+        long userAgent;
+        long latencyMicros;
+        Source source;
+
+        /**
+         * The HTTP status code for errors, and the probability in thousandths otherwise.
+         */
+        int answer;
+    }
+}
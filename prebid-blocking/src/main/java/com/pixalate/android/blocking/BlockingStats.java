@@ -0,0 +1,105 @@
+package com.pixalate.android.blocking;
+
+/**
+ * A snapshot of the SDK's runtime statistics. Retrieve one through {@link PixalateBlocking#getStats()}.
+ */
+public final class BlockingStats {
+    private final CacheKeyPolicy cacheKeyPolicy;
+    private final long cacheHits;
+    private final long cacheMisses;
+
+    int cachedResults;
+    int compactResults;
+    long estimatedCacheBytes;
+    int executorThreads;
+    long fraudRequests;
+    long rateLimitedRequests;
+    long deadlineDecisions;
+
+    BlockingStats ( CacheKeyPolicy cacheKeyPolicy, long cacheHits, long cacheMisses ) {
+        this.cacheKeyPolicy = cacheKeyPolicy;
+        this.cacheHits = cacheHits;
+        this.cacheMisses = cacheMisses;
+    }
+
+    /**
+     * Returns the cache key policy the cache statistics were gathered under.
+     * @return The cache key policy.
+     */
+    public CacheKeyPolicy getCacheKeyPolicy () {
+        return cacheKeyPolicy;
+    }
+
+    /**
+     * Returns the number of requests answered from the result cache.
+     * @return The number of cache hits.
+     */
+    public long getCacheHits () {
+        return cacheHits;
+    }
+
+    /**
+     * Returns the number of requests that missed the result cache.
+     * @return The number of cache misses.
+     */
+    public long getCacheMisses () {
+        return cacheMisses;
+    }
+
+    /**
+     * Returns the fraction of cache lookups that were hits.
+     * @return The hit ratio, from 0 to 1, or 0 if there were no lookups.
+     */
+    public double getCacheHitRatio () {
+        long lookups = cacheHits + cacheMisses;
+        return lookups == 0 ? 0 : (double) cacheHits / lookups;
+    }
+
+    /**
+     * Returns the number of results held in the in-memory result cache.
+     * @return The number of cached results.
+     */
+    public int getCachedResultCount () {
+        return cachedResults + compactResults;
+    }
+
+    /**
+     * Returns a rough estimate of the heap held by the in-memory result caches.
+     * @return The estimated size in bytes.
+     */
+    public long getEstimatedCacheBytes () {
+        return estimatedCacheBytes;
+    }
+
+    /**
+     * Returns the number of threads currently alive in the SDK's strategy executor.
+     * @return The number of executor threads.
+     */
+    public int getExecutorThreadCount () {
+        return executorThreads;
+    }
+
+    /**
+     * Returns the number of fraud API calls made, including hedge requests and background refreshes.
+     * @return The number of calls.
+     */
+    public long getFraudRequestCount () {
+        return fraudRequests;
+    }
+
+    /**
+     * Returns the number of fraud API calls the rate limiter held back, for which the request was answered without a lookup.
+     * @return The number of rate limited calls.
+     */
+    public long getRateLimitedRequestCount () {
+        return rateLimitedRequests;
+    }
+
+    /**
+     * Returns the number of requests answered with the deadline decision because their lookup did not finish in time.
+     * @return The number of requests.
+     */
+    public long getDeadlineDecisionCount () {
+        return deadlineDecisions;
+    }
+}
@@ -7,6 +7,34 @@ import android.content.Context;
  * implementation is not suitable for your use case.
  */
 public interface BlockingStrategy {
+    /**
+     * The blocking parameters a strategy provides.
+     */
+    enum Parameter {
+        DEVICE_ID,
+        IPV4,
+        IPV6,
+        USER_AGENT
+    }
+
+    /**
+     * Returned by {@link #getCachedValue} for a parameter the strategy recently found to have no value,
+     * such as the IPv6 address on an IPv4-only network. Compare it by identity.
+     */
+    @SuppressWarnings( "StringOperationCanBeSimplified" )
+    String MISSING = new String( "" );
+
+    /**
+     * Returns the value of a parameter if the strategy has it cached, without fetching it and without blocking.
+     * When every parameter a request needs is cached, and so is its result, the request is answered on the calling thread.
+     * This method is not meant to be called directly by user code.
+     * @param parameter The parameter.
+     * @return The cached value, {@link #MISSING} if the parameter is known to have no value, or null if it is not cached.
+     */
+    default String getCachedValue ( Parameter parameter ) {
+        return null;
+    }
+
     /**
      * Gets the device ID associated with the device.
      * This method is not meant to be called directly by user code.
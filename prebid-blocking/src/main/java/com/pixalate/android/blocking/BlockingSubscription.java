@@ -0,0 +1,35 @@
+package com.pixalate.android.blocking;
+
+/**
+ * A registration made with {@link PixalateBlocking#subscribe(BlockingStatusListener)}.
+ * Cancel it when the subscribing component goes away.
+ */
+public final class BlockingSubscription {
+
+    final BlockingStatusListener listener;
+    private final BlockingDecisionPublisher publisher;
+    private volatile boolean cancelled;
+
+    BlockingSubscription ( BlockingDecisionPublisher publisher, BlockingStatusListener listener ) {
+        this.publisher = publisher;
+        this.listener = listener;
+    }
+
+    /**
+     * Stops delivery of further decisions to the listener. Safe to call more than once.
+     */
+    public void cancel () {
+        if( cancelled ) return;
+
+        cancelled = true;
+        publisher.remove( this );
+    }
+
+    /**
+     * Returns whether the subscription has been cancelled.
+     * @return Whether the subscription has been cancelled.
+     */
+    public boolean isCancelled () {
+        return cancelled;
+    }
+}
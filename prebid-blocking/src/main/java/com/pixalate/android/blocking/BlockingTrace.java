@@ -0,0 +1,74 @@
+package com.pixalate.android.blocking;
+
+import android.os.Build;
+import android.os.Trace;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Emits {@link Trace} sections for each phase of a lookup, so the SDK's work shows up in system traces
+ * alongside the app's own spans. Tracing is off unless enabled in the config, and costs a single field read per call when off.
+ *
+ * Phases that stay on one thread are traced with regular sections. Phases that hop threads, such as the request
+ * as a whole and each strategy call, are traced with async sections keyed by the request's cookie. Async sections
+ * require Android 10; on older versions only the regular sections are emitted.
+ */
+final class BlockingTrace {
+
+    static final String REQUEST = "PixalateBlocking:request";
+    static final String DEVICE_ID = "PixalateBlocking:getDeviceID";
+    static final String IPV4 = "PixalateBlocking:getIPv4";
+    static final String IPV6 = "PixalateBlocking:getIPv6";
+    static final String USER_AGENT = "PixalateBlocking:getUserAgent";
+    static final String CACHE_LOOKUP = "PixalateBlocking:cacheLookup";
+    static final String HTTP_CONNECT = "PixalateBlocking:httpConnect";
+    static final String HTTP_READ = "PixalateBlocking:httpRead";
+    static final String JSON_PARSE = "PixalateBlocking:jsonParse";
+    static final String DISPATCH = "PixalateBlocking:dispatch";
+
+    private static volatile boolean enabled;
+    private static final AtomicInteger cookies = new AtomicInteger();
+
+    private BlockingTrace () {}
+
+    static void setEnabled ( boolean enabled ) {
+        BlockingTrace.enabled = enabled;
+    }
+
+    /**
+     * Returns a new cookie for a request's async sections, or 0 if tracing is off, in which case none are emitted.
+     */
+    static int nextCookie () {
+        if( !enabled ) return 0;
+
+        int cookie = cookies.incrementAndGet();
+        return cookie != 0 ? cookie : cookies.incrementAndGet();
+    }
+
+    /**
+     * Begins a section on the current thread.
+     * @return Whether a section was begun, to be passed to {@link #end(boolean)}.
+     */
+    static boolean begin ( String name ) {
+        if( !enabled ) return false;
+
+        Trace.beginSection( name );
+        return true;
+    }
+
+    static void end ( boolean begun ) {
+        if( begun ) Trace.endSection();
+    }
+
+    static void beginAsync ( String name, int cookie ) {
+        if( cookie != 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q ) {
+            Trace.beginAsyncSection( name, cookie );
+        }
+    }
+
+    static void endAsync ( String name, int cookie ) {
+        if( cookie != 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q ) {
+            Trace.endAsyncSection( name, cookie );
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.pixalate.android.blocking;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Performs the SDK's HTTP requests: fraud API lookups and the default strategy's IP address lookups.
+ * Implement this to route them through your app's own HTTP client, so they share its connection pool and DNS cache.
+ * Defaults to {@link DefaultBlockingTransport}, which uses HttpURLConnection.
+ */
+public interface BlockingTransport {
+
+    /**
+     * Starts a request. The callback must be called exactly once, on any thread, and may be called before this returns.
+     * The request should fail once its deadline has passed, although the SDK stops waiting for it at that point either way.
+     * @param request  The request to send.
+     * @param callback The callback receiving the response or the failure.
+     * @return A handle to cancel the request with.
+     */
+    Call execute ( Request request, Callback callback );
+
+    /**
+     * A request in flight.
+     */
+    interface Call {
+        /**
+         * Aborts the request. The callback may still be called, and its result will be ignored.
+         */
+        void cancel ();
+    }
+
+    /**
+     * Receives the outcome of a request.
+     */
+    interface Callback {
+        /**
+         * Called when a response arrives, whatever its status code.
+         * @param response The response.
+         */
+        void onResponse ( Response response );
+
+        /**
+         * Called when no response could be received, for example on a connection failure or an expired deadline.
+         * @param e The cause of the failure.
+         */
+        void onFailure ( IOException e );
+    }
+
+    /**
+     * A GET request made by the SDK.
+     */
+    final class Request {
+        private final String url;
+        private final Map<String,String> headers;
+        private final int timeout;
+
+        Request ( String url, Map<String,String> headers, int timeout ) {
+            this.url = url;
+            this.headers = headers;
+            this.timeout = timeout;
+        }
+
+        Request ( String url, int timeout ) {
+            this( url, Collections.emptyMap(), timeout );
+        }
+
+        static Request withHeader ( String url, String name, String value, int timeout ) {
+            Map<String,String> headers = new LinkedHashMap<>( 2 );
+            headers.put( name, value );
+            return new Request( url, Collections.unmodifiableMap( headers ), timeout );
+        }
+
+        /**
+         * Returns the URL to send a GET request to.
+         * @return The URL.
+         */
+        public String getUrl () {
+            return url;
+        }
+
+        /**
+         * Returns the request headers.
+         * @return The headers.
+         */
+        public Map<String,String> getHeaders () {
+            return headers;
+        }
+
+        /**
+         * Returns the time the request may take in total, from connecting to reading the body.
+         * @return The deadline in milliseconds, or 0 if there is none.
+         */
+        public int getTimeout () {
+            return timeout;
+        }
+    }
+
+    /**
+     * A response to a request.
+     */
+    final class Response {
+        private final int code;
+        private final String message;
+        private final String body;
+
+        /**
+         * @param code    The HTTP status code.
+         * @param message The HTTP status message, or null.
+         * @param body    The response body decoded as UTF-8, or null if there was none.
+         */
+        public Response ( int code, String message, String body ) {
+            this.code = code;
+            this.message = message;
+            this.body = body;
+        }
+
+        public int getCode () {
+            return code;
+        }
+
+        public String getMessage () {
+            return message;
+        }
+
+        public String getBody () {
+            return body;
+        }
+    }
+}
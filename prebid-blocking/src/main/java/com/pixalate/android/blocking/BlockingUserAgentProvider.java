@@ -0,0 +1,266 @@
+package com.pixalate.android.blocking;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageInfo;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.webkit.WebSettings;
+import android.webkit.WebView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Provides the WebView's default user agent for the default strategy. Resolving it initializes the WebView provider,
+ * which takes tens of milliseconds and may block, so it is resolved once on a background thread and persisted together
+ * with the OS build and WebView package version it was resolved with. Afterwards it is served from memory, or from disk
+ * until either version changes. Requests made before it finishes wait on it, for at most their timeout.
+ */
+final class BlockingUserAgentProvider {
+
+    static final String PREFERENCES_NAME = "com.pixalate.android.blocking.user-agent";
+
+    /**
+     * How long a persisted user agent is trusted before Android 8, where WebView updates cannot be detected.
+     */
+    static final long MAX_AGE_WITHOUT_WEBVIEW_VERSION = 1000L * 60 * 60 * 24 * 7;
+
+    /**
+     * How long to wait before resolving again after a failure, doubled with every further failure up to {@link #MAX_RETRY_DELAY}.
+     */
+    static final long RETRY_DELAY = 1000 * 30;
+    static final long MAX_RETRY_DELAY = 1000 * 60 * 30;
+
+    private static volatile String userAgent;
+    // set for good only when the device has no WebView package at all.
+    private static volatile boolean unavailable;
+    private static volatile long retryAt;
+    private static int failures;
+    private static final AtomicBoolean resolving = new AtomicBoolean();
+
+    // callbacks waiting on the resolution in progress, also the lock under which it is finished.
+    private static final List<Waiter> waiters = new ArrayList<>();
+
+    private static ScheduledThreadPoolExecutor timer;
+
+    /**
+     * A callback waiting on the resolution, answered once by whichever of the resolution and its timeout comes first.
+     */
+    private static final class Waiter implements Runnable {
+        private final BlockingStrategyCallback callback;
+        private final AtomicBoolean answered = new AtomicBoolean();
+        private volatile ScheduledFuture<?> timeout;
+
+        Waiter ( BlockingStrategyCallback callback ) {
+            this.callback = callback;
+        }
+
+        void answer ( String userAgent ) {
+            if( !answered.compareAndSet( false, true ) ) return;
+
+            ScheduledFuture<?> timeout = this.timeout;
+            if( timeout != null ) timeout.cancel( false );
+            callback.done( userAgent );
+        }
+
+        @Override
+        public void run () {
+            synchronized( waiters ) {
+                waiters.remove( this );
+            }
+
+            PixalateBlocking.LogDebug( "User agent not resolved in time, continuing without it." );
+            answer( null );
+        }
+    }
+
+    private BlockingUserAgentProvider () {}
+
+    /**
+     * Returns the user agent if it is known, and otherwise starts resolving it in the background.
+     * @return The user agent, or null if it is not known yet or WebView is unavailable.
+     */
+    static String get ( Context context ) {
+        String userAgent = BlockingUserAgentProvider.userAgent;
+        if( userAgent == null && !unavailable() ) {
+            resolve( context );
+        }
+
+        return userAgent;
+    }
+
+    /**
+     * Answers with the user agent, waiting on its resolution if it is not known yet.
+     * @param timeout The longest the callback waits on the resolution, in milliseconds, after which it is answered with null.
+     *                If 0, it waits until the resolution finishes.
+     */
+    static void get ( Context context, long timeout, BlockingStrategyCallback callback ) {
+        String userAgent;
+        Waiter waiter;
+
+        synchronized( waiters ) {
+            userAgent = BlockingUserAgentProvider.userAgent;
+            if( userAgent != null || unavailable() ) {
+                waiter = null;
+            } else {
+                waiter = new Waiter( callback );
+                waiters.add( waiter );
+            }
+        }
+
+        if( waiter == null ) {
+            callback.done( userAgent );
+            return;
+        }
+
+        if( timeout > 0 ) {
+            waiter.timeout = timer().schedule( waiter, timeout, TimeUnit.MILLISECONDS );
+        }
+
+        resolve( context );
+    }
+
+    /**
+     * Starts loading or resolving the user agent in the background, unless it is known or already being resolved.
+     */
+    static void resolve ( Context context ) {
+        if( userAgent != null || unavailable() || !resolving.compareAndSet( false, true ) ) return;
+
+        Context application = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        AsyncTask.THREAD_POOL_EXECUTOR.execute( () -> {
+            String resolved = null;
+            List<Waiter> answered;
+
+            try {
+                resolved = loadOrResolve( application );
+            } finally {
+                synchronized( waiters ) {
+                    userAgent = resolved;
+                    resolving.set( false );
+                    answered = new ArrayList<>( waiters );
+                    waiters.clear();
+                }
+
+                for( Waiter waiter : answered ) {
+                    waiter.answer( resolved );
+                }
+            }
+        });
+    }
+
+    private static String loadOrResolve ( Context context ) {
+        SharedPreferences preferences = context.getSharedPreferences( PREFERENCES_NAME, Context.MODE_PRIVATE );
+        String version = versionKey();
+
+        String persisted = preferences.getString( "userAgent", null );
+        long resolvedAt = preferences.getLong( "resolvedAt", 0 );
+        boolean fresh = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O || System.currentTimeMillis() - resolvedAt < MAX_AGE_WITHOUT_WEBVIEW_VERSION;
+
+        if( persisted != null && fresh && version.equals( preferences.getString( "version", null ) ) ) {
+            PixalateBlocking.LogDebug( "Using persisted user agent: %s", persisted );
+            return persisted;
+        }
+
+        String resolved;
+        try {
+            resolved = WebSettings.getDefaultUserAgent( context );
+        } catch( RuntimeException e ) {
+            // WebView is missing, being updated, or unavailable in this process, of which only the first is for good.
+            PixalateBlocking.LogWarning( "Failed to resolve the WebView user agent: %s", e.getMessage() );
+            if( isMissingWebView( e ) ) {
+                unavailable = true;
+            } else {
+                synchronized( BlockingUserAgentProvider.class ) {
+                    retryAt = System.currentTimeMillis() + Math.min( RETRY_DELAY << Math.min( failures, 16 ), MAX_RETRY_DELAY );
+                    failures++;
+                }
+            }
+            return null;
+        }
+
+        synchronized( BlockingUserAgentProvider.class ) {
+            failures = 0;
+            retryAt = 0;
+        }
+
+        PixalateBlocking.LogDebug( "Resolved user agent: %s", resolved );
+
+        if( resolved != null ) {
+            preferences.edit()
+                .putString( "userAgent", resolved )
+                .putString( "version", version )
+                .putLong( "resolvedAt", System.currentTimeMillis() )
+                .apply();
+        }
+
+        return resolved;
+    }
+
+    /**
+     * Whether the user agent cannot be resolved for now, either for good or until the retry delay after a failure has passed.
+     */
+    private static boolean unavailable () {
+        return unavailable || System.currentTimeMillis() < retryAt;
+    }
+
+    /**
+     * Whether resolving failed because the device has no WebView package, which the framework reports with an exception
+     * of its own, possibly as the cause of the one thrown.
+     */
+    private static boolean isMissingWebView ( Throwable e ) {
+        for( Throwable cause = e; cause != null; cause = cause.getCause() ) {
+            if( "MissingWebViewPackageException".equals( cause.getClass().getSimpleName() ) ) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Identifies the OS build and, from Android 8, the WebView package, either of which changes the user agent when updated.
+     */
+    static String versionKey () {
+        String key = Build.FINGERPRINT;
+
+        if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.O ) {
+            PackageInfo webView = WebView.getCurrentWebViewPackage();
+            if( webView != null ) {
+                key += "|" + webView.packageName + "/" + webView.versionName;
+            }
+        }
+
+        return key;
+    }
+
+    private static synchronized ScheduledThreadPoolExecutor timer () {
+        if( timer == null ) {
+            timer = new ScheduledThreadPoolExecutor( 1, runnable -> {
+                Thread thread = new Thread( runnable, "PixalateUserAgentTimeout" );
+                thread.setDaemon( true );
+                return thread;
+            });
+            timer.setKeepAliveTime( 30, TimeUnit.SECONDS );
+            timer.allowCoreThreadTimeOut( true );
+            timer.setRemoveOnCancelPolicy( true );
+        }
+
+        return timer;
+    }
+
+    /**
+     * Forgets the user agent held in memory, so the next call loads it again.
+     */
+    static void clearMemory () {
+        userAgent = null;
+        unavailable = false;
+
+        synchronized( BlockingUserAgentProvider.class ) {
+            failures = 0;
+            retryAt = 0;
+        }
+    }
+}
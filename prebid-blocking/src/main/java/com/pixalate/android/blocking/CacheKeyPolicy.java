@@ -0,0 +1,27 @@
+package com.pixalate.android.blocking;
+
+/**
+ * Controls which blocking parameters make up the key of cached results. Looser keys reuse results
+ * across changes to the parameters they leave out, at the cost of precision.
+ */
+public enum CacheKeyPolicy {
+    /**
+     * Keys on the device ID, both IP addresses and the user agent. This is the default.
+     */
+    ALL_FIELDS,
+
+    /**
+     * Keys on the device ID and both IP addresses, ignoring user agent changes.
+     */
+    DEVICE_AND_IP,
+
+    /**
+     * Keys on the device ID and the IPv4 address, ignoring IPv6 privacy address rotation.
+     */
+    DEVICE_AND_IPV4,
+
+    /**
+     * Keys on the device ID alone, so a result is reused across any network change.
+     */
+    DEVICE_ONLY
+}
@@ -0,0 +1,412 @@
+package com.pixalate.android.blocking;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Wraps any {@link BlockingStrategy} to give it the same performance characteristics as {@link DefaultBlockingStrategy}:
+ * per-parameter TTL caching, coalescing of concurrent fetches of the same parameter, optional persistence
+ * of cached values across app restarts, and per-call timeouts.
+ *
+ * <pre>
+ * BlockingStrategy strategy = new CachingBlockingStrategy.Builder( new CustomBlockingStrategy() )
+ *     .setTTL( 1000 * 60 * 60 )
+ *     .setTTL( BlockingStrategy.Parameter.IPV4, 1000 * 60 * 5 )
+ *     .setCallTimeout( 500 )
+ *     .build();
+ * </pre>
+ */
+public final class CachingBlockingStrategy implements BlockingStrategy {
+
+    static final String PREFERENCES_NAME = "com.pixalate.android.blocking.strategy-cache";
+
+    private static ScheduledThreadPoolExecutor timer;
+
+    private final BlockingStrategy delegate;
+    private final long[] ttls;
+    private volatile int callTimeout;
+    private final boolean persistent;
+
+    private final Slot[] slots;
+    private volatile boolean persistenceLoaded;
+
+    private CachingBlockingStrategy ( Builder builder ) {
+        this.delegate = builder.delegate;
+        this.ttls = builder.ttls.clone();
+        this.callTimeout = builder.callTimeout;
+        this.persistent = builder.persistent;
+
+        this.slots = new Slot[ Parameter.values().length ];
+        for( int i = 0; i < slots.length; i++ ) {
+            slots[ i ] = new Slot();
+        }
+    }
+
+    /**
+     * Takes the config's request timeout as the call timeout, unless one was set on the builder.
+     * Without a timeout, a delegate that never answers would hold up every later fetch of the parameter.
+     */
+    void applyRequestTimeout ( int requestTimeout ) {
+        if( callTimeout < 0 ) {
+            callTimeout = requestTimeout;
+        }
+    }
+
+    /**
+     * Returns the wrapped strategy.
+     * @return The wrapped strategy.
+     */
+    public BlockingStrategy getDelegate () {
+        return delegate;
+    }
+
+    /**
+     * Clears every cached value, including persisted ones.
+     * @param context App context
+     */
+    public void clearCache ( Context context ) {
+        for( Slot slot : slots ) {
+            synchronized( slot ) {
+                slot.value = null;
+                slot.expiry = 0;
+            }
+        }
+
+        if( persistent ) {
+            context.getSharedPreferences( PREFERENCES_NAME, Context.MODE_PRIVATE ).edit().clear().apply();
+        }
+    }
+
+    /**
+     * Drops cached values from memory. Persisted values are kept, and are loaded again on the next request.
+     */
+    void trimMemory () {
+        for( Slot slot : slots ) {
+            synchronized( slot ) {
+                if( !slot.fetching ) {
+                    slot.value = null;
+                    slot.expiry = 0;
+                }
+            }
+        }
+
+        persistenceLoaded = false;
+    }
+
+    /**
+     * Drops the cached IP addresses, so they are fetched again after a network change.
+     */
+    void clearAddresses () {
+        for( Parameter parameter : new Parameter[] { Parameter.IPV4, Parameter.IPV6 } ) {
+            Slot slot = slots[ parameter.ordinal() ];
+            synchronized( slot ) {
+                slot.value = null;
+                slot.expiry = 0;
+            }
+        }
+    }
+
+    @Override
+    public void getDeviceID ( Context context, BlockingStrategyCallback callback ) {
+        get( Parameter.DEVICE_ID, context, callback );
+    }
+
+    @Override
+    public void getIPv4 ( Context context, BlockingStrategyCallback callback ) {
+        get( Parameter.IPV4, context, callback );
+    }
+
+    @Override
+    public void getIPv6 ( Context context, BlockingStrategyCallback callback ) {
+        get( Parameter.IPV6, context, callback );
+    }
+
+    @Override
+    public void getUserAgent ( Context context, BlockingStrategyCallback callback ) {
+        get( Parameter.USER_AGENT, context, callback );
+    }
+
+    /**
+     * Returns the cached value without fetching it. Persisted values are only reported once a request has loaded them,
+     * so this never reads from disk.
+     */
+    @Override
+    public String getCachedValue ( Parameter parameter ) {
+        if( ttls[ parameter.ordinal() ] <= 0 || ( persistent && !persistenceLoaded ) ) return null;
+
+        Slot slot = slots[ parameter.ordinal() ];
+        synchronized( slot ) {
+            if( slot.expiry <= System.currentTimeMillis() ) return null;
+            return slot.value != null ? slot.value : MISSING;
+        }
+    }
+
+    private void get ( Parameter parameter, Context context, BlockingStrategyCallback callback ) {
+        long ttl = ttls[ parameter.ordinal() ];
+
+        if( ttl <= 0 ) {
+            fetch( parameter, context, callback );
+            return;
+        }
+
+        if( persistent && !persistenceLoaded ) {
+            loadPersisted( context );
+        }
+
+        Slot slot = slots[ parameter.ordinal() ];
+        long now = System.currentTimeMillis();
+        String cached = null;
+        boolean hit = false;
+        boolean leader = false;
+
+        synchronized( slot ) {
+            if( slot.value != null && slot.expiry > now ) {
+                cached = slot.value;
+                hit = true;
+            } else {
+                slot.waiters.add( callback );
+                if( !slot.fetching ) {
+                    slot.fetching = true;
+                    leader = true;
+                }
+            }
+        }
+
+        if( hit ) {
+            PixalateBlocking.LogDebug( "Using cached %s: %s", parameter, cached );
+            callback.done( cached );
+            return;
+        }
+
+        if( !leader ) {
+            PixalateBlocking.LogDebug( "Joining in-flight fetch of %s.", parameter );
+            return;
+        }
+
+        fetch( parameter, context, result -> {
+            List<BlockingStrategyCallback> waiters;
+
+            synchronized( slot ) {
+                // a missing value is remembered briefly, for getCachedValue only.
+                slot.value = result;
+                slot.expiry = System.currentTimeMillis() + ( result != null ? ttl : Math.min( ttl, DefaultBlockingStrategy.MISSING_VALUE_TTL ) );
+
+                slot.fetching = false;
+                waiters = new ArrayList<>( slot.waiters );
+                slot.waiters.clear();
+            }
+
+            if( result != null && persistent ) {
+                persist( context, parameter, slot );
+            }
+
+            for( BlockingStrategyCallback waiter : waiters ) {
+                waiter.done( result );
+            }
+        });
+    }
+
+    /**
+     * Calls through to the delegate, answering null if it takes longer than the call timeout.
+     * A late answer is still cached, so the next request can use it.
+     */
+    private void fetch ( Parameter parameter, Context context, BlockingStrategyCallback callback ) {
+        BlockingStrategyCallback once = callback;
+
+        if( callTimeout > 0 ) {
+            AtomicBoolean done = new AtomicBoolean();
+            Slot slot = slots[ parameter.ordinal() ];
+            long ttl = ttls[ parameter.ordinal() ];
+
+            // cancelled when the delegate answers first, which takes it off the timer's queue right away.
+            ScheduledFuture<?> timeout = timer().schedule( () -> {
+                if( done.compareAndSet( false, true ) ) {
+                    PixalateBlocking.LogDebug( "Timed out fetching %s.", parameter );
+                    callback.done( null );
+                }
+            }, callTimeout, TimeUnit.MILLISECONDS );
+
+            once = result -> {
+                if( done.compareAndSet( false, true ) ) {
+                    timeout.cancel( false );
+                    callback.done( result );
+                } else if( result != null && ttl > 0 ) {
+                    synchronized( slot ) {
+                        slot.value = result;
+                        slot.expiry = System.currentTimeMillis() + ttl;
+                    }
+
+                    if( persistent ) persist( context, parameter, slot );
+                }
+            };
+        }
+
+        try {
+            switch( parameter ) {
+                case DEVICE_ID:
+                    delegate.getDeviceID( context, once );
+                    break;
+                case IPV4:
+                    delegate.getIPv4( context, once );
+                    break;
+                case IPV6:
+                    delegate.getIPv6( context, once );
+                    break;
+                case USER_AGENT:
+                    delegate.getUserAgent( context, once );
+                    break;
+            }
+        } catch( RuntimeException e ) {
+            PixalateBlocking.LogError( "Strategy failed to fetch %s: %s", parameter, e.getMessage() );
+            once.done( null );
+        }
+    }
+
+    private synchronized void loadPersisted ( Context context ) {
+        if( persistenceLoaded ) return;
+
+        SharedPreferences preferences = context.getSharedPreferences( PREFERENCES_NAME, Context.MODE_PRIVATE );
+
+        for( Parameter parameter : Parameter.values() ) {
+            String value = preferences.getString( parameter.name(), null );
+            long expiry = preferences.getLong( parameter.name() + ".expiry", 0 );
+
+            if( value != null ) {
+                Slot slot = slots[ parameter.ordinal() ];
+                synchronized( slot ) {
+                    if( slot.value == null ) {
+                        slot.value = value;
+                        slot.expiry = expiry;
+                    }
+                }
+            }
+        }
+
+        persistenceLoaded = true;
+    }
+
+    private void persist ( Context context, Parameter parameter, Slot slot ) {
+        String value;
+        long expiry;
+
+        synchronized( slot ) {
+            value = slot.value;
+            expiry = slot.expiry;
+        }
+
+        context.getSharedPreferences( PREFERENCES_NAME, Context.MODE_PRIVATE ).edit()
+            .putString( parameter.name(), value )
+            .putLong( parameter.name() + ".expiry", expiry )
+            .apply();
+    }
+
+    private static synchronized ScheduledThreadPoolExecutor timer () {
+        if( timer == null ) {
+            timer = new ScheduledThreadPoolExecutor( 1, runnable -> {
+                Thread thread = new Thread( runnable, "PixalateStrategyTimer" );
+                thread.setDaemon( true );
+                return thread;
+            });
+            timer.setKeepAliveTime( 30, TimeUnit.SECONDS );
+            timer.allowCoreThreadTimeOut( true );
+            timer.setRemoveOnCancelPolicy( true );
+        }
+
+        return timer;
+    }
+
+    private static final class Slot {
+        String value;
+        long expiry;
+        boolean fetching;
+        final List<BlockingStrategyCallback> waiters = new ArrayList<>( 1 );
+    }
+
+    /**
+     * Helper class for building CachingBlockingStrategy objects.
+     */
+    public static final class Builder {
+        private final BlockingStrategy delegate;
+        private final long[] ttls;
+        private int callTimeout;
+        private boolean persistent;
+
+        public Builder ( BlockingStrategy delegate ) {
+            if( delegate == null ) throw new IllegalArgumentException( "The wrapped strategy cannot be null." );
+
+            this.delegate = delegate;
+            this.ttls = new long[ Parameter.values().length ];
+            this.callTimeout = -1;
+            this.persistent = false;
+
+            setTTL( 1000 * 60 * 60 * 8 );
+        }
+
+        /**
+         * The maximum time any parameter should be cached. A value of 0 disables caching.
+         * @param ttl The cache age value in milliseconds.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setTTL ( long ttl ) {
+            for( Parameter parameter : Parameter.values() ) {
+                setTTL( parameter, ttl );
+            }
+
+            return this;
+        }
+
+        /**
+         * The maximum time the given parameter should be cached. A value of 0 disables caching for the parameter.
+         * @param parameter The parameter.
+         * @param ttl       The cache age value in milliseconds.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setTTL ( Parameter parameter, long ttl ) {
+            if( ttl < 0 ) throw new IllegalArgumentException( "The ttl must be greater than or equal to 0." );
+            this.ttls[ parameter.ordinal() ] = ttl;
+
+            return this;
+        }
+
+        /**
+         * The maximum time a single call to the wrapped strategy may take. Past this, the parameter is treated as null
+         * for the request, while a late answer is still cached. Defaults to the request timeout of the config the strategy
+         * is used with. A value of 0 disables the timeout, in which case a delegate that never answers holds up every
+         * later request for the parameter.
+         * @param timeout The timeout value in milliseconds.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setCallTimeout ( int timeout ) {
+            if( timeout < 0 ) timeout = 0;
+            this.callTimeout = timeout;
+
+            return this;
+        }
+
+        /**
+         * Whether cached values should be persisted, so they survive app restarts until they expire.
+         * Only one persistent CachingBlockingStrategy should be used per app.
+         * @param persistent Whether to persist cached values.
+         * @return This builder instance for chaining purposes.
+         */
+        public Builder setPersistent ( boolean persistent ) {
+            this.persistent = persistent;
+            return this;
+        }
+
+        /**
+         * Build the strategy.
+         * @return The built strategy.
+         */
+        public CachingBlockingStrategy build () {
+            return new CachingBlockingStrategy( this );
+        }
+    }
+}
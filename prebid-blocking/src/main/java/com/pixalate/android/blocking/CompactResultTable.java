@@ -0,0 +1,190 @@
+package com.pixalate.android.blocking;
+
+/**
+ * A result cache keyed by 128-bit parameter fingerprints, stored in parallel primitive arrays.
+ * Entries hold only the fingerprint, the probability and the expiry time, so the cache costs 32 bytes
+ * per slot no matter how long the parameters are, and holds no references to parameter strings.
+ *
+ * Uses open addressing with linear probing and backward-shift deletion. Errors are never cached,
+ * so no error state is stored. A high fingerprint half of 0 marks an empty slot.
+ */
+final class CompactResultTable {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keysHigh;
+    private long[] keysLow;
+    private double[] probabilities;
+    private long[] expiries;
+
+    private int size;
+
+    CompactResultTable () {
+        allocate( MIN_CAPACITY );
+    }
+
+    private void allocate ( int capacity ) {
+        keysHigh = new long[ capacity ];
+        keysLow = new long[ capacity ];
+        probabilities = new double[ capacity ];
+        expiries = new long[ capacity ];
+    }
+
+    private int indexOf ( long high, long low ) {
+        int mask = keysHigh.length - 1;
+        int index = (int) ( low ^ ( low >>> 32 ) ) & mask;
+
+        while( keysHigh[ index ] != 0 ) {
+            if( keysHigh[ index ] == high && keysLow[ index ] == low ) {
+                return index;
+            }
+
+            index = ( index + 1 ) & mask;
+        }
+
+        return -1 - index;
+    }
+
+    /**
+     * Looks up an unexpired result, removing it if it has expired.
+     * @param out Receives the probability and expiry time on a hit.
+     * @return Whether an unexpired result was found.
+     */
+    synchronized boolean get ( long high, long low, long now, PixalateBlocking.BlockingResult out ) {
+        int index = indexOf( high, low );
+        if( index < 0 ) return false;
+
+        if( expiries[ index ] <= now ) {
+            removeAt( index );
+            return false;
+        }
+
+        out.probability = probabilities[ index ];
+        out.time = expiries[ index ];
+        return true;
+    }
+
+    /**
+     * Looks up a result like {@link #get(long, long, long, PixalateBlocking.BlockingResult)}, but allocates it only on a hit,
+     * so that misses allocate nothing.
+     * @return The result, or null if there is none or it expired.
+     */
+    synchronized PixalateBlocking.BlockingResult get ( long high, long low, long now ) {
+        int index = indexOf( high, low );
+        if( index < 0 ) return null;
+
+        if( expiries[ index ] <= now ) {
+            removeAt( index );
+            return null;
+        }
+
+        PixalateBlocking.BlockingResult result = new PixalateBlocking.BlockingResult();
+        result.probability = probabilities[ index ];
+        result.time = expiries[ index ];
+        return result;
+    }
+
+    synchronized void put ( long high, long low, double probability, long expiry ) {
+        int index = indexOf( high, low );
+
+        if( index < 0 ) {
+            if( ( size + 1 ) * 2 > keysHigh.length ) {
+                removeExpired( System.currentTimeMillis() );
+
+                if( ( size + 1 ) * 2 > keysHigh.length ) {
+                    resize( keysHigh.length * 2 );
+                }
+            }
+
+            index = -1 - indexOf( high, low );
+            keysHigh[ index ] = high;
+            keysLow[ index ] = low;
+            size++;
+        }
+
+        probabilities[ index ] = probability;
+        expiries[ index ] = expiry;
+    }
+
+    synchronized int size () {
+        return size;
+    }
+
+    /**
+     * The heap held by the table's arrays.
+     */
+    synchronized long estimateSize () {
+        return 4 * ( 16 + 8L * keysHigh.length );
+    }
+
+    synchronized void clear () {
+        allocate( MIN_CAPACITY );
+        size = 0;
+    }
+
+    /**
+     * Removes every expired entry, shrinking the table if it is mostly empty afterwards.
+     * @return The number of entries removed.
+     */
+    synchronized int removeExpired ( long now ) {
+        int removed = 0;
+
+        for( int i = 0; i < keysHigh.length; i++ ) {
+            // backward shifting can move an unvisited, expired entry into this slot, so check it again.
+            while( keysHigh[ i ] != 0 && expiries[ i ] <= now ) {
+                removeAt( i );
+                removed++;
+            }
+        }
+
+        if( keysHigh.length > MIN_CAPACITY && size * 8 < keysHigh.length ) {
+            resize( Math.max( MIN_CAPACITY, Integer.highestOneBit( Math.max( size, 1 ) * 4 ) ) );
+        }
+
+        return removed;
+    }
+
+    private void removeAt ( int index ) {
+        int mask = keysHigh.length - 1;
+        int hole = index;
+        int next = ( hole + 1 ) & mask;
+
+        while( keysHigh[ next ] != 0 ) {
+            int home = (int) ( keysLow[ next ] ^ ( keysLow[ next ] >>> 32 ) ) & mask;
+
+            // move the entry into the hole unless its home slot lies cyclically between the hole and its position.
+            if( ( ( next - home ) & mask ) >= ( ( next - hole ) & mask ) ) {
+                keysHigh[ hole ] = keysHigh[ next ];
+                keysLow[ hole ] = keysLow[ next ];
+                probabilities[ hole ] = probabilities[ next ];
+                expiries[ hole ] = expiries[ next ];
+                hole = next;
+            }
+
+            next = ( next + 1 ) & mask;
+        }
+
+        keysHigh[ hole ] = 0;
+        keysLow[ hole ] = 0;
+        size--;
+    }
+
+    private void resize ( int capacity ) {
+        long[] oldHigh = keysHigh;
+        long[] oldLow = keysLow;
+        double[] oldProbabilities = probabilities;
+        long[] oldExpiries = expiries;
+
+        allocate( capacity );
+
+        for( int i = 0; i < oldHigh.length; i++ ) {
+            if( oldHigh[ i ] != 0 ) {
+                int index = -1 - indexOf( oldHigh[ i ], oldLow[ i ] );
+                keysHigh[ index ] = oldHigh[ i ];
+                keysLow[ index ] = oldLow[ i ];
+                probabilities[ index ] = oldProbabilities[ i ];
+                expiries[ index ] = oldExpiries[ i ];
+            }
+        }
+    }
+}
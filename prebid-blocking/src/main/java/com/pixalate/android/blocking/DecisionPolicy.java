@@ -0,0 +1,85 @@
+package com.pixalate.android.blocking;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Controls how often a block status request performs a full lookup, rather than reusing the last decision.
+ * Reused decisions are answered straight from memory, without running the strategy or checking the cache.
+ * A decision is only ever reused while it is within the configured TTL, and the session starts over
+ * whenever the SDK is initialized or the global config is updated.
+ */
+public final class DecisionPolicy {
+
+    private static final DecisionPolicy ALWAYS = new DecisionPolicy( Type.ALWAYS, 0, 1 );
+    private static final DecisionPolicy ONCE_PER_SESSION = new DecisionPolicy( Type.ONCE_PER_SESSION, 0, 0 );
+
+    private enum Type {
+        ALWAYS,
+        ONCE_PER_SESSION,
+        EVERY_N_REQUESTS,
+        SAMPLE
+    }
+
+    private final Type type;
+    private final int interval;
+    private final double sampleRate;
+
+    private DecisionPolicy ( Type type, int interval, double sampleRate ) {
+        this.type = type;
+        this.interval = interval;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Performs a full lookup for every request. This is the default.
+     * @return The policy.
+     */
+    public static DecisionPolicy always () {
+        return ALWAYS;
+    }
+
+    /**
+     * Performs a single lookup, and reuses its decision for the rest of the session.
+     * @return The policy.
+     */
+    public static DecisionPolicy oncePerSession () {
+        return ONCE_PER_SESSION;
+    }
+
+    /**
+     * Performs a full lookup on every Nth request, and reuses the last decision in between.
+     * @param interval The number of requests per lookup, at least 1.
+     * @return The policy.
+     */
+    public static DecisionPolicy everyNRequests ( int interval ) {
+        if( interval < 1 ) throw new IllegalArgumentException( "The request interval must be at least 1." );
+        return new DecisionPolicy( Type.EVERY_N_REQUESTS, interval, 0 );
+    }
+
+    /**
+     * Performs a full lookup for a random sample of requests, and reuses the last decision for the rest.
+     * @param sampleRate The fraction of requests to look up, from 0 to 1.
+     * @return The policy.
+     */
+    public static DecisionPolicy sample ( double sampleRate ) {
+        if( sampleRate < 0 || sampleRate > 1 ) throw new IllegalArgumentException( "The sample rate must be between 0 and 1, inclusive." );
+        return new DecisionPolicy( Type.SAMPLE, 0, sampleRate );
+    }
+
+    /**
+     * Whether the last decision may be reused for a request.
+     * @param requestsSinceLookup The number of requests since the last full lookup, including this one.
+     */
+    boolean shouldReuse ( long requestsSinceLookup ) {
+        switch( type ) {
+            case ONCE_PER_SESSION:
+                return true;
+            case EVERY_N_REQUESTS:
+                return requestsSinceLookup < interval;
+            case SAMPLE:
+                return ThreadLocalRandom.current().nextDouble() >= sampleRate;
+            default:
+                return false;
+        }
+    }
+}
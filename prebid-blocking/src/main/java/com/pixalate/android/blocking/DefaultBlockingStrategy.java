@@ -8,19 +8,18 @@ import android.telephony.TelephonyManager;
 import android.util.JsonReader;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.math.BigInteger;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.security.InvalidParameterException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Date;
-
-import javax.net.ssl.HttpsURLConnection;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * Provides some default strategires for common use-cases.
@@ -29,18 +28,56 @@ import javax.net.ssl.HttpsURLConnection;
  */
 public class DefaultBlockingStrategy implements BlockingStrategy {
 
-    private long nextDeviceIDFetchTime;
-    private long nextIPv4FetchTime;
-    private long nextIPv6FetchTime;
-    private long nextUserAgentFetchTime;
+    static final String DEFAULT_IPV4_ENDPOINT = "https://get-ipv4.adrta.com/ipv4";
+    static final String DEFAULT_IPV6_ENDPOINT = "https://ipv6.adrta.com/ipv6";
+
+    /**
+     * How long a parameter that could not be fetched is reported as missing by {@link #getCachedValue},
+     * kept short since the failure may be temporary.
+     */
+    static final long MISSING_VALUE_TTL = 1000 * 60;
+
+    /**
+     * A fetched parameter together with its expiry, swapped as one so the value and expiry are always read together,
+     * including by requests answered inline on the calling thread.
+     */
+    private static final class Cached {
+        final String value;
+        final long expiry;
+
+        Cached ( String value, long expiry ) {
+            this.value = value;
+            this.expiry = expiry;
+        }
+
+        boolean isFresh ( long now ) {
+            return value != null && expiry > now;
+        }
+    }
+
+    /**
+     * The cached parameters, which strategies built by configs with the same settings share.
+     */
+    static final class Values {
+        volatile Cached deviceID;
+        volatile Cached ipv4;
+        volatile Cached ipv6;
+        volatile Cached userAgent;
+    }
+
+    private static volatile Method getAdvertisingIdInfo;
+
+    // keyed by transport first, held weakly, so neither a transport nor the values fetched through it outlive their configs.
+    private static final Map<BlockingTransport,Map<List<Object>,WeakReference<Values>>> shared = new WeakHashMap<>();
 
-    private String cachedDeviceID;
-    private String cachedIPv4;
-    private String cachedIPv6;
-    private String cachedUserAgent;
+    private volatile Values values = new Values();
+    private boolean sharesValues;
 
     private long cacheTTL;
     private int requestTimeout = -1;
+    private String ipv4Endpoint;
+    private String ipv6Endpoint;
+    private BlockingTransport transport;
 
     public DefaultBlockingStrategy ( long cacheTTL ) {
         this.cacheTTL = cacheTTL;
@@ -52,10 +89,59 @@ public class DefaultBlockingStrategy implements BlockingStrategy {
         this.setRequestTimeout( requestTimeout );
     }
 
+    /**
+     * Creates the default strategy of a config. Each config gets a strategy of its own, but those built with the same
+     * settings share their cached parameters, so that configs and clients running side by side fetch the device ID and
+     * IP addresses once rather than once each.
+     */
+    static DefaultBlockingStrategy create ( long cacheTTL, int requestTimeout, String ipv4Endpoint, String ipv6Endpoint, BlockingTransport transport ) {
+        DefaultBlockingStrategy strategy = new DefaultBlockingStrategy( cacheTTL, requestTimeout );
+        if( ipv4Endpoint != null ) strategy.setIPv4Endpoint( ipv4Endpoint );
+        if( ipv6Endpoint != null ) strategy.setIPv6Endpoint( ipv6Endpoint );
+        strategy.setTransport( transport );
+
+        List<Object> key = Arrays.asList( cacheTTL, ipv4Endpoint, ipv6Endpoint );
+
+        synchronized( shared ) {
+            Map<List<Object>,WeakReference<Values>> byTransport = shared.get( transport );
+            if( byTransport == null ) {
+                byTransport = new HashMap<>();
+                shared.put( transport, byTransport );
+            }
+
+            // drops the entries of strategies that are gone.
+            byTransport.values().removeIf( reference -> reference.get() == null );
+
+            WeakReference<Values> reference = byTransport.get( key );
+            Values values = reference != null ? reference.get() : null;
+
+            if( values == null ) {
+                values = strategy.values;
+                byTransport.put( key, new WeakReference<>( values ) );
+            }
+
+            strategy.values = values;
+            strategy.sharesValues = true;
+        }
+
+        return strategy;
+    }
+
+    /**
+     * Stops sharing cached parameters once a setting they depend on is changed, so the change only affects this strategy.
+     */
+    private synchronized void unshareValues () {
+        if( sharesValues ) {
+            values = new Values();
+            sharesValues = false;
+        }
+    }
+
     public long getCacheTTL () {
         return cacheTTL;
     }
     public void setCacheTTL ( long cacheTTL ) {
+        unshareValues();
         this.cacheTTL = cacheTTL;
     }
 
@@ -67,22 +153,104 @@ public class DefaultBlockingStrategy implements BlockingStrategy {
         this.requestTimeout = requestTimeout;
     }
 
+    /**
+     * The endpoint used to look up the device's IPv4 address. It must answer a GET with a JSON object holding an "ip" field.
+     */
+    public String getIPv4Endpoint () {
+        return ipv4Endpoint != null ? ipv4Endpoint : DEFAULT_IPV4_ENDPOINT;
+    }
+    public void setIPv4Endpoint ( String ipv4Endpoint ) {
+        if( ipv4Endpoint == null ) throw new InvalidParameterException( "IPv4 endpoint cannot be null." );
+        unshareValues();
+        this.ipv4Endpoint = ipv4Endpoint;
+    }
+
+    /**
+     * The endpoint used to look up the device's IPv6 address. It must answer a GET with a JSON object holding an "ip" field.
+     */
+    public String getIPv6Endpoint () {
+        return ipv6Endpoint != null ? ipv6Endpoint : DEFAULT_IPV6_ENDPOINT;
+    }
+    public void setIPv6Endpoint ( String ipv6Endpoint ) {
+        if( ipv6Endpoint == null ) throw new InvalidParameterException( "IPv6 endpoint cannot be null." );
+        unshareValues();
+        this.ipv6Endpoint = ipv6Endpoint;
+    }
+
+    /**
+     * The transport IP address lookups are sent through.
+     */
+    public BlockingTransport getTransport () {
+        return transport != null ? transport : DefaultBlockingTransport.SHARED;
+    }
+    public void setTransport ( BlockingTransport transport ) {
+        if( transport == null ) throw new InvalidParameterException( "Transport cannot be null." );
+        unshareValues();
+        this.transport = transport;
+    }
+
+    /**
+     * Clears all cached parameters, so that they are fetched again on the next request.
+     */
+    public void clearCache () {
+        values.deviceID = null;
+        values.ipv4 = null;
+        values.ipv6 = null;
+        values.userAgent = null;
+    }
+
+    /**
+     * Clears the cached IP addresses, so they are fetched again after a network change.
+     */
+    void clearAddresses () {
+        values.ipv4 = null;
+        values.ipv6 = null;
+    }
+
+    @Override
+    public String getCachedValue ( Parameter parameter ) {
+        if( cacheTTL <= 0 ) return null;
+
+        switch( parameter ) {
+            case DEVICE_ID:
+                return cachedValue( values.deviceID );
+            case IPV4:
+                return cachedValue( values.ipv4 );
+            case IPV6:
+                return cachedValue( values.ipv6 );
+            case USER_AGENT:
+                return cachedValue( values.userAgent );
+            default:
+                return null;
+        }
+    }
+
+    private static String cachedValue ( Cached cached ) {
+        if( cached == null || cached.expiry <= System.currentTimeMillis() ) return null;
+        return cached.value != null ? cached.value : MISSING;
+    }
+
+    /**
+     * Wraps a fetched parameter with its expiry, which is short when the parameter could not be fetched.
+     */
+    private Cached cache ( String value, long now ) {
+        return new Cached( value, now + ( value != null ? cacheTTL : Math.min( cacheTTL, MISSING_VALUE_TTL ) ) );
+    }
+
     @Override
     public final void getDeviceID ( Context context, BlockingStrategyCallback callback ) {
         if( cacheTTL > 0 ) {
             PixalateBlocking.LogDebug( "Checking device ID cache..." );
-            long now = new Date().getTime();
-            if( nextDeviceIDFetchTime > now && cachedDeviceID != null ) {
-                PixalateBlocking.LogDebug( "Using cached deviceID: " + cachedDeviceID );
-                callback.done( cachedDeviceID );
+            long now = System.currentTimeMillis();
+            Cached cached = values.deviceID;
+            if( cached != null && cached.isFresh( now ) ) {
+                PixalateBlocking.LogDebug( "Using cached deviceID: %s", cached.value );
+                callback.done( cached.value );
             } else {
                 PixalateBlocking.LogDebug( "Cache missed, fetching device ID..." );
                 getDeviceIDImpl( context, result -> {
-                    PixalateBlocking.LogDebug( "Fetched deviceID: " + result );
-                    if( result != null ) {
-                        cachedDeviceID = result;
-                        nextDeviceIDFetchTime = now + cacheTTL;
-                    }
+                    PixalateBlocking.LogDebug( "Fetched deviceID: %s", result );
+                    values.deviceID = cache( result, now );
                     callback.done( result );
                 });
             }
@@ -101,11 +269,7 @@ public class DefaultBlockingStrategy implements BlockingStrategy {
     @SuppressLint( { "MissingPermission", "HardwareIds" } )
     public void getDeviceIDImpl ( Context context, BlockingStrategyCallback callback ) {
         try {
-            Class<?> client = context.getClassLoader().loadClass( "com.google.android.gms.ads.identifier.AdvertisingIdClient" );
-
-            Method getAdvertisingIdInfo = client.getMethod( "getAdvertisingIdInfo", Context.class );
-
-            Object infoResult = getAdvertisingIdInfo.invoke( null, context );
+            Object infoResult = advertisingIdInfoMethod( context ).invoke( null, context );
 
             if( infoResult != null ) {
                 String adId = (String) infoResult.getClass().getMethod( "getId" ).invoke( infoResult );
@@ -118,7 +282,7 @@ public class DefaultBlockingStrategy implements BlockingStrategy {
         } catch( ClassNotFoundException e ) {
             PixalateBlocking.LogDebug( "GMS not enabled for this app, unable to fetch GMS ad ID." );
         } catch( Exception e ) {
-            PixalateBlocking.LogDebug( "Failed to fetch GMS device ID: " + e.getMessage() );
+            PixalateBlocking.LogDebug( "Failed to fetch GMS device ID: %s", e.getMessage() );
         }
 
         if( Build.VERSION.SDK_INT < Build.VERSION_CODES.Q ) {
@@ -148,22 +312,50 @@ public class DefaultBlockingStrategy implements BlockingStrategy {
         callback.done( null );
     }
 
+    /**
+     * Looks up the GMS advertising ID client by reflection, caching the method for later requests.
+     */
+    private static Method advertisingIdInfoMethod ( Context context ) throws ClassNotFoundException, NoSuchMethodException {
+        Method method = getAdvertisingIdInfo;
+        if( method == null ) {
+            Class<?> client = context.getClassLoader().loadClass( "com.google.android.gms.ads.identifier.AdvertisingIdClient" );
+            method = client.getMethod( "getAdvertisingIdInfo", Context.class );
+            getAdvertisingIdInfo = method;
+        }
+
+        return method;
+    }
+
+    /**
+     * Loads the GMS classes used to fetch the device ID ahead of the first request, and starts resolving the user agent
+     * unless a subclass provides its own. Called from a background thread when the config is applied.
+     */
+    void warmUp ( Context context ) {
+        try {
+            advertisingIdInfoMethod( context );
+        } catch( ClassNotFoundException | NoSuchMethodException ignored ) {}
+
+        try {
+            if( getClass().getMethod( "getUserAgentImpl", Context.class, BlockingStrategyCallback.class ).getDeclaringClass() == DefaultBlockingStrategy.class ) {
+                BlockingUserAgentProvider.resolve( context );
+            }
+        } catch( NoSuchMethodException ignored ) {}
+    }
+
     @Override
     public final void getIPv4 ( Context context, BlockingStrategyCallback callback ) {
         if( cacheTTL > 0 ) {
             PixalateBlocking.LogDebug( "Checking IPv4 address cache..." );
-            long now = new Date().getTime();
-            if( nextIPv4FetchTime > now && cachedIPv4 != null ) {
-                PixalateBlocking.LogDebug( "Using cached IPv4 address: " + cachedIPv4 );
-                callback.done( cachedIPv4 );
+            long now = System.currentTimeMillis();
+            Cached cached = values.ipv4;
+            if( cached != null && cached.isFresh( now ) ) {
+                PixalateBlocking.LogDebug( "Using cached IPv4 address: %s", cached.value );
+                callback.done( cached.value );
             } else {
                 PixalateBlocking.LogDebug( "Cache missed, fetching IPv4 address..." );
                 getIPv4Impl( context, ( result ) -> {
-                    PixalateBlocking.LogDebug( "Fetched IPv4 address: " + result );
-                    if( result != null ) {
-                        cachedIPv4 = result;
-                        nextIPv4FetchTime = now + cacheTTL;
-                    }
+                    PixalateBlocking.LogDebug( "Fetched IPv4 address: %s", result );
+                    values.ipv4 = cache( result, now );
 
                     callback.done( result );
                 });
@@ -181,69 +373,68 @@ public class DefaultBlockingStrategy implements BlockingStrategy {
      * @param callback The callback containing the fetched IPv4 address, or null if none found.
      */
     public void getIPv4Impl ( Context context, BlockingStrategyCallback callback ) {
-        String ip = null;
-
-        try {
-            String ipEndpoint = "https://get-ipv4.adrta.com/ipv4";
-            URL url = new URL( ipEndpoint );
-
-            HttpsURLConnection connection = (HttpsURLConnection) url.openConnection();
-
-            connection.setRequestMethod( "GET" );
-            if( requestTimeout > 0 ) {
-                connection.setConnectTimeout( requestTimeout );
-            }
-
-            int connStatus = connection.getResponseCode();
+        fetchIP( getIPv4Endpoint(), callback );
+    }
 
-            if( connStatus != 200 ) {
-                throw new PixalateBlocking.HTTPException( connStatus, "Failed to fetch IP address" );
-            }
+    /**
+     * Looks up an IP address through the transport. The endpoint must answer with a JSON object holding an "ip" field.
+     */
+    private void fetchIP ( String endpoint, BlockingStrategyCallback callback ) {
+        getTransport().execute( new BlockingTransport.Request( endpoint, Math.max( requestTimeout, 0 ) ), new BlockingTransport.Callback() {
+            @Override
+            public void onResponse ( BlockingTransport.Response response ) {
+                String ip = null;
+
+                try {
+                    if( response.getCode() != 200 ) {
+                        throw new PixalateBlocking.HTTPException( response.getCode(), "Failed to fetch IP address" );
+                    }
 
-            InputStream in = connection.getInputStream();
+                    JsonReader reader = new JsonReader( new StringReader( response.getBody() != null ? response.getBody() : "" ) );
 
-            JsonReader reader = new JsonReader( new InputStreamReader( in, StandardCharsets.UTF_8 ) );
+                    reader.beginObject();
 
-            reader.beginObject();
+                    while( reader.hasNext() ) {
+                        String name = reader.nextName();
 
-            while( reader.hasNext() ) {
-                String name = reader.nextName();
+                        if( "ip".equals( name ) ) {
+                            ip = reader.nextString();
+                            break;
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
 
-                if( "ip".equals( name ) ) {
-                    ip = reader.nextString();
                     reader.close();
-                    break;
-                } else {
-                    reader.skipValue();
+                } catch ( IOException | IllegalStateException | PixalateBlocking.HTTPException exc ) {
+                    PixalateBlocking.LogError( "Failed to fetch IP Address" );
+                } finally {
+                    callback.done( ip );
                 }
             }
 
-            in.close();
-        } catch ( MalformedURLException exc ) {
-            PixalateBlocking.LogInfo( "Failed to create IP URL." );
-        } catch ( IOException | PixalateBlocking.HTTPException exc ) {
-            PixalateBlocking.LogError( "Failed to fetch IP Address" );
-        } finally {
-            callback.done( ip );
-        }
+            @Override
+            public void onFailure ( IOException e ) {
+                PixalateBlocking.LogError( "Failed to fetch IP Address" );
+                callback.done( null );
+            }
+        });
     }
 
     @Override
     public final void getIPv6 ( Context context, BlockingStrategyCallback callback ) {
         if( cacheTTL > 0 ) {
             PixalateBlocking.LogDebug( "Checking IPv6 address cache..." );
-            long now = new Date().getTime();
-            if( nextIPv6FetchTime > now && cachedIPv6 != null ) {
-                PixalateBlocking.LogDebug( "Using cached IPv6 address: " + cachedIPv6 );
-                callback.done( cachedIPv6 );
+            long now = System.currentTimeMillis();
+            Cached cached = values.ipv6;
+            if( cached != null && cached.isFresh( now ) ) {
+                PixalateBlocking.LogDebug( "Using cached IPv6 address: %s", cached.value );
+                callback.done( cached.value );
             } else {
                 PixalateBlocking.LogDebug( "Cache missed, fetching IPv6 address..." );
                 getIPv6Impl( context, ( result ) -> {
-                    PixalateBlocking.LogDebug( "Fetched IPv6 address: " + result );
-                    if( result != null ) {
-                        cachedIPv6 = result;
-                        nextIPv6FetchTime = now + cacheTTL;
-                    }
+                    PixalateBlocking.LogDebug( "Fetched IPv6 address: %s", result );
+                    values.ipv6 = cache( result, now );
 
                     callback.done( result );
                 });
@@ -261,69 +452,23 @@ public class DefaultBlockingStrategy implements BlockingStrategy {
      * @param callback The callback containing the fetched IPv6 address, or null if none found.
      */
     public void getIPv6Impl ( Context context, BlockingStrategyCallback callback ) {
-        String ip = null;
-
-        try {
-            String ipEndpoint = "https://ipv6.adrta.com/ipv6";
-            URL url = new URL( ipEndpoint );
-
-            HttpsURLConnection connection = (HttpsURLConnection) url.openConnection();
-
-            connection.setRequestMethod( "GET" );
-            if( requestTimeout > 0 ) {
-                connection.setConnectTimeout( requestTimeout );
-            }
-
-            int connStatus = connection.getResponseCode();
-
-            if( connStatus != 200 ) {
-                throw new PixalateBlocking.HTTPException( connStatus, "Failed to fetch IP address" );
-            }
-
-            InputStream in = connection.getInputStream();
-
-            JsonReader reader = new JsonReader( new InputStreamReader( in, StandardCharsets.UTF_8 ) );
-
-            reader.beginObject();
-
-            while( reader.hasNext() ) {
-                String name = reader.nextName();
-
-                if( "ip".equals( name ) ) {
-                    ip = reader.nextString();
-                    reader.close();
-                    break;
-                } else {
-                    reader.skipValue();
-                }
-            }
-
-            in.close();
-        } catch ( MalformedURLException exc ) {
-            PixalateBlocking.LogInfo( "Failed to create IPv6 URL." );
-        } catch ( IOException | PixalateBlocking.HTTPException exc ) {
-            PixalateBlocking.LogError( "Failed to fetch IPv6 Address" );
-        } finally {
-            callback.done( ip );
-        }
+        fetchIP( getIPv6Endpoint(), callback );
     }
 
     @Override
     public final void getUserAgent ( Context context, BlockingStrategyCallback callback ) {
         if( cacheTTL > 0 ) {
             PixalateBlocking.LogDebug( "Checking user agent cache..." );
-            long now = new Date().getTime();
-            if( nextUserAgentFetchTime > now && cachedUserAgent != null ) {
-                PixalateBlocking.LogDebug( "Using cached user agent: " + cachedIPv6 );
-                callback.done( cachedUserAgent );
+            long now = System.currentTimeMillis();
+            Cached cached = values.userAgent;
+            if( cached != null && cached.isFresh( now ) ) {
+                PixalateBlocking.LogDebug( "Using cached user agent: %s", cached.value );
+                callback.done( cached.value );
             } else {
                 PixalateBlocking.LogDebug( "Cache missed, fetching user agent..." );
                 getUserAgentImpl( context, ( String result ) -> {
-                    PixalateBlocking.LogDebug( "Fetched user agent: " + result );
-                    if( result != null ) {
-                        cachedUserAgent = result;
-                        nextUserAgentFetchTime = now + cacheTTL;
-                    }
+                    PixalateBlocking.LogDebug( "Fetched user agent: %s", result );
+                    values.userAgent = cache( result, now );
 
                     callback.done( result );
                 });
@@ -337,10 +482,65 @@ public class DefaultBlockingStrategy implements BlockingStrategy {
     /**
      * Implement a user agent strategy using this method to preserve default caching behavior.
      * This method is not meant to be called directly by user code.
+     * The default implementation answers with the WebView's default user agent, which is resolved once in the background
+     * and persisted until the OS or WebView is updated. Until it has been resolved, it answers once the resolution finishes,
+     * or with null if that takes longer than the request timeout.
      * @param context App context
      * @param callback The callback containing the fetched user agent, or null if none found.
      */
     public void getUserAgentImpl ( Context context, BlockingStrategyCallback callback ) {
-        callback.done( null );
+        BlockingUserAgentProvider.get( context, getRequestTimeout(), callback );
+    }
+
+    /**
+     * Re-fetches any cached parameters that expire within the given window, so that requests
+     * made around the expiry time don't have to wait on the fetch. Called from the refresh scheduler.
+     * @param context App context
+     * @param window  The refresh window in milliseconds.
+     */
+    void refreshExpiring ( Context context, long window ) {
+        if( cacheTTL <= 0 ) return;
+
+        long now = System.currentTimeMillis();
+
+        Cached deviceID = values.deviceID;
+        if( deviceID != null && deviceID.value != null && deviceID.expiry - window <= now ) {
+            PixalateBlocking.LogDebug( "Refreshing device ID ahead of expiry..." );
+            getDeviceIDImpl( context, result -> {
+                if( result != null ) {
+                    values.deviceID = new Cached( result, now + cacheTTL );
+                }
+            });
+        }
+
+        Cached ipv4 = values.ipv4;
+        if( ipv4 != null && ipv4.value != null && ipv4.expiry - window <= now ) {
+            PixalateBlocking.LogDebug( "Refreshing IPv4 address ahead of expiry..." );
+            getIPv4Impl( context, result -> {
+                if( result != null ) {
+                    values.ipv4 = new Cached( result, now + cacheTTL );
+                }
+            });
+        }
+
+        Cached ipv6 = values.ipv6;
+        if( ipv6 != null && ipv6.value != null && ipv6.expiry - window <= now ) {
+            PixalateBlocking.LogDebug( "Refreshing IPv6 address ahead of expiry..." );
+            getIPv6Impl( context, result -> {
+                if( result != null ) {
+                    values.ipv6 = new Cached( result, now + cacheTTL );
+                }
+            });
+        }
+
+        Cached userAgent = values.userAgent;
+        if( userAgent != null && userAgent.value != null && userAgent.expiry - window <= now ) {
+            PixalateBlocking.LogDebug( "Refreshing user agent ahead of expiry..." );
+            getUserAgentImpl( context, result -> {
+                if( result != null ) {
+                    values.userAgent = new Cached( result, now + cacheTTL );
+                }
+            });
+        }
     }
 }
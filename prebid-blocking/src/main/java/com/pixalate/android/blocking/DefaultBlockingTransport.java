@@ -0,0 +1,149 @@
+package com.pixalate.android.blocking;
+
+import android.os.AsyncTask;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The built-in transport, which sends each request on a fresh HttpURLConnection.
+ * Requests block a thread of the given executor, which defaults to {@link AsyncTask#THREAD_POOL_EXECUTOR}.
+ */
+public class DefaultBlockingTransport implements BlockingTransport {
+
+    static final DefaultBlockingTransport SHARED = new DefaultBlockingTransport();
+
+    private final Executor executor;
+
+    public DefaultBlockingTransport () {
+        this( AsyncTask.THREAD_POOL_EXECUTOR );
+    }
+
+    public DefaultBlockingTransport ( Executor executor ) {
+        if( executor == null ) throw new IllegalArgumentException( "The executor cannot be null." );
+        this.executor = executor;
+    }
+
+    @Override
+    public Call execute ( Request request, Callback callback ) {
+        ConnectionCall call = new ConnectionCall( request, callback );
+
+        try {
+            executor.execute( call );
+        } catch( RejectedExecutionException e ) {
+            callback.onFailure( new IOException( "Too many requests in flight.", e ) );
+        }
+
+        return call;
+    }
+
+    private static final class ConnectionCall implements Call, Runnable {
+        final Request request;
+        final Callback callback;
+
+        volatile HttpURLConnection connection;
+        volatile boolean cancelled;
+
+        ConnectionCall ( Request request, Callback callback ) {
+            this.request = request;
+            this.callback = callback;
+        }
+
+        @Override
+        public void cancel () {
+            cancelled = true;
+
+            HttpURLConnection connection = this.connection;
+            if( connection != null ) connection.disconnect();
+        }
+
+        @Override
+        public void run () {
+            Response response;
+
+            try {
+                response = perform();
+            } catch( IOException e ) {
+                callback.onFailure( e );
+                return;
+            } catch( RuntimeException e ) {
+                callback.onFailure( new IOException( e ) );
+                return;
+            }
+
+            callback.onResponse( response );
+        }
+
+        private Response perform () throws IOException {
+            if( cancelled ) {
+                throw new InterruptedIOException( "Request was cancelled." );
+            }
+
+            HttpURLConnection connection = (HttpURLConnection) new URL( request.getUrl() ).openConnection();
+            this.connection = connection;
+
+            try {
+                if( cancelled ) {
+                    throw new InterruptedIOException( "Request was cancelled." );
+                }
+
+                connection.setRequestMethod( "GET" );
+                if( request.getTimeout() > 0 ) {
+                    connection.setConnectTimeout( request.getTimeout() );
+                    connection.setReadTimeout( request.getTimeout() );
+                }
+
+                for( Map.Entry<String,String> header : request.getHeaders().entrySet() ) {
+                    connection.setRequestProperty( header.getKey(), header.getValue() );
+                }
+
+                int code;
+                boolean traced = BlockingTrace.begin( BlockingTrace.HTTP_CONNECT );
+                try {
+                    code = connection.getResponseCode();
+                } finally {
+                    BlockingTrace.end( traced );
+                }
+
+                if( code != 200 ) {
+                    return new Response( code, connection.getResponseMessage(), null );
+                }
+
+                String body;
+                traced = BlockingTrace.begin( BlockingTrace.HTTP_READ );
+                try {
+                    body = readBody( connection.getInputStream() );
+                } finally {
+                    BlockingTrace.end( traced );
+                }
+
+                return new Response( code, connection.getResponseMessage(), body );
+            } finally {
+                connection.disconnect();
+            }
+        }
+
+        private static String readBody ( InputStream in ) throws IOException {
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream( 128 );
+                byte[] buffer = new byte[ 512 ];
+                int read;
+                while( ( read = in.read( buffer ) ) != -1 ) {
+                    out.write( buffer, 0, read );
+                }
+
+                return new String( out.toByteArray(), StandardCharsets.UTF_8 );
+            } finally {
+                in.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.pixalate.android.blocking;
+
+/**
+ * The decision given to a request the SDK cannot answer with a looked up probability.
+ */
+public enum FallbackDecision {
+    /**
+     * Passes the failure on to {@link BlockingStatusListener#onError}. This is the default.
+     */
+    NONE,
+
+    /**
+     * Calls {@link BlockingStatusListener#onAllow}, failing open.
+     */
+    ALLOW,
+
+    /**
+     * Calls {@link BlockingStatusListener#onBlock}, failing closed.
+     */
+    BLOCK
+}
@@ -1,43 +1,72 @@
 package com.pixalate.android.blocking;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.net.Uri;
 import android.os.AsyncTask;
-import android.os.Handler;
 import android.util.JsonReader;
 import android.util.Log;
 
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
 import java.lang.ref.WeakReference;
+import java.net.InetAddress;
 import java.net.SocketTimeoutException;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.util.Date;
-import java.util.HashMap;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
-import javax.net.ssl.HttpsURLConnection;
 
 public final class PixalateBlocking {
 
     static final String TAG = "PixalateBlocking";
 
-    private static final String baseFraudURL = "https://fraud-api.pixalate.com/api/v2/fraud?";
 
     static LogLevel logLevel = LogLevel.INFO;
 
-    static HashMap<BlockingCacheParameters,BlockingResult> cachedResults;
+    static ConcurrentHashMap<BlockingCacheParameters,BlockingResult> cachedResults;
     static BlockingConfig globalConfig;
     static boolean initialized;
     static WeakReference<Context> context;
-    static Executor executor;
-    final static ArrayBlockingQueue<Runnable> queue = new ArrayBlockingQueue<>( 4 );
+    static volatile Executor executor;
+    static volatile BlockingRefreshScheduler refreshScheduler;
+    static volatile SharedDecisionCache sharedCache;
+    static CompactResultTable compactResults;
+    static BlockingMemoryTrimmer memoryTrimmer;
+    static volatile BlockingDecisionPublisher publisher;
+    static volatile BlockingRateLimiter rateLimiter;
+    static volatile BlockingEndpointSelector fraudEndpoints;
+    static BlockingNetworkMonitor networkMonitor;
+    private static ScheduledThreadPoolExecutor deadlineTimer;
+
+    static volatile BlockingResult lastResult;
+    static final AtomicLong requestsSinceLookup = new AtomicLong();
+    final static LinkedBlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+
+    static final AtomicLong fraudRequestCount = new AtomicLong();
+    static final AtomicLong hedgedRequestCount = new AtomicLong();
+    static final AtomicLong rateLimitedRequestCount = new AtomicLong();
+    static final AtomicLong deadlineDecisionCount = new AtomicLong();
+    static final AtomicLongArray cacheHits = new AtomicLongArray( CacheKeyPolicy.values().length );
+    static final AtomicLongArray cacheMisses = new AtomicLongArray( CacheKeyPolicy.values().length );
 
     PixalateBlocking () {}
 
@@ -67,8 +96,211 @@ public final class PixalateBlocking {
         }
 
         globalConfig = config;
+        BlockingTrace.setEnabled( config.isTracingEnabled() );
+        BlockingEventLog.configure( config.getEventLogSize() );
+        BlockingRequestRecorder.configure( config.getRequestRecordingSize() );
+        BlockingEventLog.record( BlockingEventLog.Event.CONFIG_UPDATED );
+
+        // a new config starts a new decision session.
+        resetDecisionSession();
+
+        // the executor is shared by every config and client, so it is kept and only picks up the new timeout.
+        Executor executor = PixalateBlocking.executor;
+        if( executor instanceof ThreadPoolExecutor ) {
+            ( (ThreadPoolExecutor) executor ).setKeepAliveTime( keepAlive( config ), TimeUnit.MILLISECONDS );
+        }
+
+        // kept across updates for the same key and limits, so updating the config never refills the bucket.
+        rateLimiter = BlockingRateLimiter.forKey( config.getApiKey(), config.getRateLimit(), config.getRateLimitBurst() );
+        fraudEndpoints = BlockingEndpointSelector.forURLs( config.getFraudURLs(), fraudEndpoints );
+
+        if( config.isCompactCacheEnabled() ) {
+            if( compactResults == null ) compactResults = new CompactResultTable();
+        } else {
+            compactResults = null;
+        }
+
+        // file and system service work is kept off the calling thread, which is often the main thread during app startup.
+        // requests run on the same serial executor, so they never see a half-applied config.
+        AsyncTask.SERIAL_EXECUTOR.execute( () -> applyConfig( config ) );
+
+        // the threshold may have changed, so subscribers get a fresh decision.
+        BlockingDecisionPublisher publisher = PixalateBlocking.publisher;
+        if( publisher != null ) publisher.evaluate();
+    }
+
+    /**
+     * Forgets the last decision, so the next request performs a full lookup regardless of the decision policy.
+     */
+    static void resetDecisionSession () {
+        lastResult = null;
+        requestsSinceLookup.set( 0 );
+    }
+
+    /**
+     * Opens or closes the shared cache and restarts the refresh scheduler for the given config, and warms up the strategy.
+     * Runs on a background thread.
+     */
+    private static void applyConfig ( BlockingConfig config ) {
+        if( config.isSharedCacheEnabled() ) {
+            Context ctx = context.get();
+            if( sharedCache == null && ctx != null ) {
+                try {
+                    sharedCache = SharedDecisionCache.open( ctx );
+                } catch( IOException e ) {
+                    LogWarning( "Failed to open the shared decision cache, falling back to a per-process cache: %s", e.getMessage() );
+                }
+            }
+        } else if( sharedCache != null ) {
+            sharedCache.close();
+            sharedCache = null;
+        }
+
+        if( refreshScheduler != null ) {
+            refreshScheduler.stop();
+            refreshScheduler = null;
+        }
+
+        Context ctx = context.get();
+        if( ctx != null && config.getRefreshWindow() > 0 && config.getTTL() > 0 ) {
+            refreshScheduler = new BlockingRefreshScheduler( ctx, config.getRefreshWindow(), config.getMaxConcurrentRefreshes() );
+            refreshScheduler.start();
+        }
+
+        if( ctx != null && config.isServerInferredIPEnabled() ) {
+            observeNetwork( ctx );
+        } else {
+            stopObservingNetworkIfUnused();
+        }
+
+        if( ctx != null && config.getBlockingStrategy() instanceof DefaultBlockingStrategy ) {
+            ( (DefaultBlockingStrategy) config.getBlockingStrategy() ).warmUp( ctx );
+        }
+    }
+
+    /**
+     * Starts observing the network, for configs whose cached results hold no IP address and so must be dropped
+     * when the device changes networks, and for subscriptions, which get a fresh decision. One monitor serves both.
+     */
+    static synchronized void observeNetwork ( Context context ) {
+        if( networkMonitor != null ) return;
+
+        BlockingNetworkMonitor monitor = new BlockingNetworkMonitor( context, PixalateBlocking::onNetworkChanged );
+        if( monitor.start() ) {
+            networkMonitor = monitor;
+        } else {
+            LogWarning( "ACCESS_NETWORK_STATE not granted, cached results and subscriptions will outlive network changes." );
+        }
+    }
+
+    /**
+     * Stops observing the network once no config infers the IP address and nobody is subscribed to decisions.
+     */
+    static void stopObservingNetworkIfUnused () {
+        BlockingConfig config = globalConfig;
+        if( config != null && config.isServerInferredIPEnabled() ) return;
+
+        BlockingDecisionPublisher publisher = PixalateBlocking.publisher;
+        if( anyClientInfersIP() || ( publisher != null && publisher.hasSubscriptions() ) ) return;
+
+        stopObservingNetwork();
+    }
+
+    private static synchronized void stopObservingNetwork () {
+        if( networkMonitor != null ) {
+            networkMonitor.stop();
+            networkMonitor = null;
+        }
+    }
+
+    private static boolean anyClientInfersIP () {
+        for( PixalateBlockingClient client : PixalateBlockingClient.clients() ) {
+            if( client.getConfig().isServerInferredIPEnabled() ) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * The device's IP addresses may have changed, so the cached addresses, results cached without an address,
+     * and the reused decisions can no longer be trusted, for the global config and every client.
+     */
+    static void onNetworkChanged () {
+        BlockingEventLog.record( BlockingEventLog.Event.NETWORK_CHANGED );
+
+        BlockingConfig config = globalConfig;
+        if( config != null ) {
+            clearAddresses( config.getBlockingStrategy() );
+
+            // results cached without an IP address may belong to the previous network.
+            if( config.isServerInferredIPEnabled() ) {
+                clearCachedResults();
+            }
+
+            resetDecisionSession();
+        }
+
+        for( PixalateBlockingClient client : PixalateBlockingClient.clients() ) {
+            client.onNetworkChanged();
+        }
+
+        BlockingDecisionPublisher publisher = PixalateBlocking.publisher;
+        if( publisher != null && publisher.hasSubscriptions() ) {
+            LogDebug( "Network changed, looking up the block decision again." );
+            publisher.evaluate();
+        }
+    }
+
+    static void clearAddresses ( BlockingStrategy strategy ) {
+        if( strategy instanceof DefaultBlockingStrategy ) {
+            ( (DefaultBlockingStrategy) strategy ).clearAddresses();
+        } else if( strategy instanceof CachingBlockingStrategy ) {
+            ( (CachingBlockingStrategy) strategy ).clearAddresses();
+        }
+    }
+
+    /**
+     * Returns the executor strategies run on, creating it on first use. It is shared by the global config and every client.
+     */
+    static Executor executor ( BlockingConfig config ) {
+        Executor executor = PixalateBlocking.executor;
+        if( executor == null ) {
+            synchronized( PixalateBlocking.class ) {
+                executor = PixalateBlocking.executor;
+                if( executor == null ) {
+                    // the queue is unbounded, so strategy calls wait their turn rather than being rejected when every
+                    // thread is busy, which only creates threads up to the core size, with idle ones timing out.
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor( 4, 4, keepAlive( config ), TimeUnit.MILLISECONDS, queue );
+                    pool.allowCoreThreadTimeOut( true );
+                    executor = pool;
+                    PixalateBlocking.executor = executor;
+                }
+            }
+        }
+
+        return executor;
+    }
+
+    private static long keepAlive ( BlockingConfig config ) {
+        return Math.max( config.getRequestTimeout(), 1000 );
+    }
+
+    /**
+     * Returns the timer decision deadlines are scheduled on, creating it on first use.
+     */
+    private static synchronized ScheduledThreadPoolExecutor deadlineTimer () {
+        if( deadlineTimer == null ) {
+            deadlineTimer = new ScheduledThreadPoolExecutor( 1, runnable -> {
+                Thread thread = new Thread( runnable, "PixalateDeadlineTimer" );
+                thread.setDaemon( true );
+                return thread;
+            });
+            deadlineTimer.setKeepAliveTime( 30, TimeUnit.SECONDS );
+            deadlineTimer.allowCoreThreadTimeOut( true );
+            deadlineTimer.setRemoveOnCancelPolicy( true );
+        }
 
-        executor = new ThreadPoolExecutor( 2, 4, Math.max(globalConfig.getRequestTimeout(),1000), TimeUnit.MILLISECONDS, queue );
+        return deadlineTimer;
     }
 
     /**
@@ -79,6 +311,342 @@ public final class PixalateBlocking {
         return globalConfig;
     }
 
+    /**
+     * Returns runtime statistics, with cache statistics for the active cache key policy.
+     * @return A snapshot of the statistics, or null if the SDK has not been initialized.
+     */
+    public static BlockingStats getStats () {
+        BlockingConfig config = globalConfig;
+        return config == null ? null : getStats( config.getCacheKeyPolicy() );
+    }
+
+    /**
+     * Returns runtime statistics, with cache statistics gathered while the given cache key policy was active,
+     * so that policies can be compared against each other.
+     * @param policy The cache key policy.
+     * @return A snapshot of the statistics.
+     */
+    public static BlockingStats getStats ( CacheKeyPolicy policy ) {
+        BlockingStats stats = new BlockingStats( policy, cacheHits.get( policy.ordinal() ), cacheMisses.get( policy.ordinal() ) );
+
+        long bytes = 0;
+
+        Map<BlockingCacheParameters,BlockingResult> cache = cachedResults;
+        if( cache != null ) {
+            for( BlockingCacheParameters key : cache.keySet() ) {
+                bytes += key.estimateSize() + BlockingResult.ESTIMATED_SIZE;
+            }
+
+            stats.cachedResults = cache.size();
+        }
+
+        CompactResultTable compact = compactResults;
+        if( compact != null ) {
+            stats.compactResults = compact.size();
+            bytes += compact.estimateSize();
+        }
+
+        stats.estimatedCacheBytes = bytes;
+        stats.fraudRequests = fraudRequestCount.get();
+        stats.rateLimitedRequests = rateLimitedRequestCount.get();
+        stats.deadlineDecisions = deadlineDecisionCount.get();
+
+        Executor executor = PixalateBlocking.executor;
+        if( executor instanceof ThreadPoolExecutor ) {
+            stats.executorThreads = ( (ThreadPoolExecutor) executor ).getPoolSize();
+        }
+
+        return stats;
+    }
+
+    /**
+     * Returns the recent SDK events kept by the event log, oldest first, one per line. Each line holds the time,
+     * the ID of the thread that recorded the event, the event, and a value such as an HTTP status code.
+     * Enable the event log with {@link BlockingConfig.Builder#setEventLogSize(int)}.
+     * @return The events, or an empty string if the event log is disabled.
+     */
+    public static String dumpEventLog () {
+        return BlockingEventLog.dump();
+    }
+
+    /**
+     * Writes the recorded block status requests, oldest first, in a compact binary format read by the replay tool
+     * in the SDK's instrumentation tests. Parameters are only recorded as salted fingerprints.
+     * Enable recording with {@link BlockingConfig.Builder#setRequestRecordingSize(int)}.
+     * @param out The stream to write to, which is left open.
+     */
+    public static void writeRequestRecording ( OutputStream out ) throws IOException {
+        BlockingRequestRecorder.write( BlockingRequestRecorder.snapshot(), out );
+    }
+
+    /**
+     * Drops every result cached in this process. The shared cache is left alone.
+     */
+    static void clearCachedResults () {
+        Map<BlockingCacheParameters,BlockingResult> cache = cachedResults;
+        if( cache != null ) cache.clear();
+
+        CompactResultTable compact = compactResults;
+        if( compact != null ) compact.clear();
+    }
+
+    /**
+     * Shrinks the SDK's caches according to the trim level passed to {@link android.content.ComponentCallbacks2#onTrimMemory}.
+     * Expired results are dropped first, then results that have not been used recently, and finally everything held in memory.
+     * Evicted results remain available from the shared cache when it is enabled.
+     * @param level The trim level.
+     */
+    static void trimMemory ( int level ) {
+        int removed = trimResults( cachedResults, compactResults, level );
+
+        for( PixalateBlockingClient client : PixalateBlockingClient.clients() ) {
+            removed += client.trimMemory( level );
+        }
+
+        BlockingConfig config = globalConfig;
+        if( level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE && config != null ) {
+            BlockingStrategy strategy = config.getBlockingStrategy();
+
+            if( strategy instanceof DefaultBlockingStrategy ) {
+                ( (DefaultBlockingStrategy) strategy ).clearCache();
+            } else if( strategy instanceof CachingBlockingStrategy ) {
+                ( (CachingBlockingStrategy) strategy ).trimMemory();
+            }
+        }
+
+        Executor executor = PixalateBlocking.executor;
+        if( level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN && executor instanceof ThreadPoolExecutor ) {
+            ( (ThreadPoolExecutor) executor ).allowCoreThreadTimeOut( true );
+        }
+
+        BlockingEventLog.record( BlockingEventLog.Event.MEMORY_TRIMMED, level );
+        LogDebug( "Trimmed memory at level %d, evicted %d cached results.", level, removed );
+    }
+
+    /**
+     * Evicts results from the given caches according to the trim level.
+     * @return The number of results evicted.
+     */
+    static int trimResults ( Map<BlockingCacheParameters,BlockingResult> cache, CompactResultTable compact, int level ) {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+
+        if( level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND ) {
+            if( cache != null ) {
+                removed += cache.size();
+                cache.clear();
+            }
+
+            if( compact != null ) {
+                removed += compact.size();
+                compact.clear();
+            }
+        } else {
+            // cold entries are dropped once the app's UI is hidden or the system is running critically low.
+            long coldBefore = level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL ? now - BlockingRefreshScheduler.HOT_ENTRY_WINDOW : Long.MIN_VALUE;
+
+            if( cache != null ) {
+                Iterator<BlockingResult> iterator = cache.values().iterator();
+                while( iterator.hasNext() ) {
+                    BlockingResult result = iterator.next();
+                    if( result.time <= now || result.lastAccess < coldBefore ) {
+                        iterator.remove();
+                        removed++;
+                    }
+                }
+            }
+
+            if( compact != null ) {
+                removed += compact.removeExpired( now );
+            }
+        }
+
+        return removed;
+    }
+
+    static void recordCacheLookup ( CacheKeyPolicy policy, boolean hit ) {
+        if( hit ) {
+            cacheHits.incrementAndGet( policy.ordinal() );
+        } else {
+            cacheMisses.incrementAndGet( policy.ordinal() );
+        }
+    }
+
+    /**
+     * Fetches a fresh result for a cached entry ahead of its expiry, replacing the entry if successful.
+     * The lookup is made with the parameters of the previous request, which may hold more than the cache key.
+     * Called from the refresh scheduler's background threads.
+     * @return Whether the entry was refreshed.
+     */
+    static boolean refreshCachedResult ( BlockingCacheParameters key, BlockingResult previous ) {
+        BlockingConfig config = globalConfig;
+
+        try {
+            BlockingResult result = SendPreBidBlockingRequestTask.fetchResult( previous.parameters, config.getTransport(), fraudEndpoints, config.getApiKey(), config.getRequestTimeout(), config.getHedgingDelay(), config.getHedgingBudget(), rateLimiter );
+
+            if( result.hasError() ) {
+                LogDebug( "Failed to refresh cached result: %s %s", result.errorCode, result.message );
+                return false;
+            }
+
+            result.parameters = previous.parameters;
+            result.time = System.currentTimeMillis() + config.getTTL();
+            result.lastAccess = previous.lastAccess;
+
+            cachedResults.put( key, result );
+            storeShared( key, result );
+            BlockingEventLog.record( BlockingEventLog.Event.RESULT_REFRESHED );
+            LogDebug( "Refreshed cached result ahead of expiry." );
+
+            if( lastResult == previous ) {
+                lastResult = result;
+                publishDecision( result );
+            }
+            return true;
+        } catch( Exception e ) {
+            LogDebug( "Failed to refresh cached result: %s", e.getMessage() );
+            return false;
+        } finally {
+            previous.refreshing = false;
+        }
+    }
+
+    /**
+     * Delivers a result to the listener through the callback executor.
+     */
+    static void dispatch ( Executor callbackExecutor, BlockingResult result, double threshold, BlockingStatusListener listener ) {
+        if( callbackExecutor == BlockingConfig.DIRECT_EXECUTOR ) {
+            deliver( result, threshold, listener );
+        } else {
+            SendPreBidBlockingRequestTask.obtain().post( callbackExecutor, result, threshold, listener );
+        }
+    }
+
+    private static void deliver ( BlockingResult result, double threshold, BlockingStatusListener listener ) {
+        boolean traced = BlockingTrace.begin( BlockingTrace.DISPATCH );
+        try {
+            deliverResult( result, threshold, listener );
+        } finally {
+            BlockingTrace.end( traced );
+        }
+    }
+
+    private static void deliverResult ( BlockingResult result, double threshold, BlockingStatusListener listener ) {
+        if( result.hasError() ) {
+            // errors are never cached
+            BlockingEventLog.record( BlockingEventLog.Event.REQUEST_FAILED, result.errorCode );
+            LogError( "Error getting data: %s %s", result.errorCode, result.message );
+            listener.onError( result.errorCode, result.message );
+        } else {
+            if( isLoggable( LogLevel.DEBUG ) ) {
+                LogDebug( String.format( "Got com.pixalate.android.blocking result:\nStatus: %s\nError: %s\nProbability: %s", result.errorCode, result.message, result.probability ) );
+            }
+
+            // the probability is recorded in thousandths, since records only hold integers.
+            if( result.probability > threshold ) {
+                BlockingEventLog.record( BlockingEventLog.Event.DECISION_BLOCK, Math.round( result.probability * 1000 ) );
+                listener.onBlock();
+            } else {
+                BlockingEventLog.record( BlockingEventLog.Event.DECISION_ALLOW, Math.round( result.probability * 1000 ) );
+                listener.onAllow();
+            }
+        }
+    }
+
+    /**
+     * Looks up an unexpired result for the given cache key, first in this process and then in the shared cache if enabled.
+     * @return The cached result, or null on a miss.
+     */
+    static BlockingResult lookupCachedResult ( BlockingCacheParameters key, BlockingCacheParameters params ) {
+        return lookupCachedResult( cachedResults, compactResults, sharedCache, key, params );
+    }
+
+    /**
+     * Looks up an unexpired result in the given caches, the compact table replacing the map when there is one.
+     */
+    static BlockingResult lookupCachedResult ( Map<BlockingCacheParameters,BlockingResult> cachedResults, CompactResultTable compact, SharedDecisionCache shared, BlockingCacheParameters key, BlockingCacheParameters params ) {
+        long time = System.currentTimeMillis();
+        BlockingResult result;
+
+        if( compact != null ) {
+            result = compact.get( key.fingerprint(), key.fingerprintLow(), time );
+            if( result != null ) {
+                LogDebug( "Using cached results." );
+
+                result.parameters = params;
+                return result;
+            }
+        } else {
+            result = cachedResults.get( key );
+
+            if( result != null ) {
+                if( result.time > time ) {
+                    LogDebug( "Using cached results." );
+
+                    result.lastAccess = time;
+                    return result;
+                } else {
+                    cachedResults.remove( key );
+                }
+            }
+        }
+
+        if( shared != null ) {
+            result = new BlockingResult();
+            if( shared.get( key.fingerprint(), time, result ) ) {
+                LogDebug( "Using shared cached results." );
+
+                result.parameters = params;
+                result.lastAccess = time;
+
+                if( compact != null ) {
+                    compact.put( key.fingerprint(), key.fingerprintLow(), result.probability, result.time );
+                } else {
+                    cachedResults.put( key, result );
+                }
+
+                return result;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Stores a fresh result under the given cache key, in the compact table if enabled and in the shared cache if enabled.
+     */
+    static void storeResult ( BlockingCacheParameters key, BlockingResult result ) {
+        storeResult( cachedResults, compactResults, key, result );
+        storeShared( key, result );
+
+        BlockingRefreshScheduler scheduler = refreshScheduler;
+        if( scheduler != null ) scheduler.onResultStored( result.time );
+    }
+
+    static void storeResult ( Map<BlockingCacheParameters,BlockingResult> cachedResults, CompactResultTable compact, BlockingCacheParameters key, BlockingResult result ) {
+        if( compact != null ) {
+            compact.put( key.fingerprint(), key.fingerprintLow(), result.probability, result.time );
+        } else {
+            cachedResults.put( key, result );
+        }
+    }
+
+    static void storeShared ( BlockingCacheParameters key, BlockingResult result ) {
+        SharedDecisionCache shared = sharedCache;
+        if( shared != null ) {
+            shared.put( key.fingerprint(), result.probability, result.time );
+        }
+    }
+
+    /**
+     * Whether messages of the given level are logged. Guard a log call with this when building its arguments costs something.
+     */
+    static boolean isLoggable ( LogLevel level ) {
+        return logLevel.includes( level );
+    }
+
+    // the overloads taking a format only format the message once the level check passed, so disabled logging costs nothing.
+
     static void LogInfo ( String message ) {
         if( logLevel.includes( LogLevel.INFO ) ) {
             Log.i( TAG, message );
@@ -91,20 +659,63 @@ public final class PixalateBlocking {
         }
     }
 
+    static void LogError ( String format, Object first, Object second ) {
+        if( logLevel.includes( LogLevel.ERROR ) ) {
+            Log.e( TAG, String.format( format, first, second ) );
+        }
+    }
+
+    static void LogError ( Throwable e ) {
+        if( logLevel.includes( LogLevel.ERROR ) ) {
+            Log.e( TAG, Log.getStackTraceString( e ) );
+        }
+    }
+
     static void LogWarning ( String message ) {
         if( logLevel.includes( LogLevel.WARNING ) ) {
             Log.w( TAG, message );
         }
     }
 
+    static void LogWarning ( String format, Object arg ) {
+        if( logLevel.includes( LogLevel.WARNING ) ) {
+            Log.w( TAG, String.format( format, arg ) );
+        }
+    }
+
     static void LogDebug ( String message ) {
         if( logLevel.includes( LogLevel.DEBUG ) ) {
             Log.d( TAG, message );
         }
     }
 
+    static void LogDebug ( String format, Object arg ) {
+        if( logLevel.includes( LogLevel.DEBUG ) ) {
+            Log.d( TAG, String.format( format, arg ) );
+        }
+    }
+
+    static void LogDebug ( String format, long arg ) {
+        if( logLevel.includes( LogLevel.DEBUG ) ) {
+            Log.d( TAG, String.format( format, arg ) );
+        }
+    }
+
+    static void LogDebug ( String format, Object first, Object second ) {
+        if( logLevel.includes( LogLevel.DEBUG ) ) {
+            Log.d( TAG, String.format( format, first, second ) );
+        }
+    }
+
+    static void LogDebug ( String format, long first, long second ) {
+        if( logLevel.includes( LogLevel.DEBUG ) ) {
+            Log.d( TAG, String.format( format, first, second ) );
+        }
+    }
+
     /**
-     * Initializes the Pixalate Pre-bid Blocking SDK.
+     * Initializes the Pixalate Pre-bid Blocking SDK. This is cheap enough to call from {@code Application.onCreate}:
+     * threads are only created on the first request, and the remaining setup runs on a background thread.
      * @param context An application context.
      * @param config The blocking config to initialize with.
      */
@@ -113,10 +724,24 @@ public final class PixalateBlocking {
 
         initialized = true;
 
-        cachedResults = new HashMap<>();
+        cachedResults = new ConcurrentHashMap<>();
+
+        registerMemoryTrimmer( context );
+
         updateGlobalConfig( config );
     }
 
+    /**
+     * Registers the memory trimmer with the application once, for the global config and every client.
+     */
+    static synchronized void registerMemoryTrimmer ( Context context ) {
+        if( memoryTrimmer == null ) {
+            Context application = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+            memoryTrimmer = new BlockingMemoryTrimmer();
+            application.registerComponentCallbacks( memoryTrimmer );
+        }
+    }
+
     /**
      * Requests a block status using the com.pixalate.android.blocking strategy. If anything goes wrong with the request, eg. incorrect login details, it will
      * return an onError result in the listener. Otherwise, it will use the set threshold to compare probabilities and return a positive
@@ -138,187 +763,1053 @@ public final class PixalateBlocking {
      * @param listener   The listener will be called with the results of the request.
      */
     public static void requestBlockStatus ( BlockingMode mode, BlockingStatusListener listener ) throws IllegalStateException {
+        if( mode == null ) throw new IllegalArgumentException( "The blocking mode cannot be null." );
+        requestBlockStatus( null, mode, listener );
+    }
+
+    /**
+     * Requests a block status for an ad placement, using the threshold and mode configured for it with
+     * {@link BlockingConfig.Builder#setPlacementThreshold} and {@link BlockingConfig.Builder#setPlacementMode}.
+     * Placements without a configuration of their own use the global threshold and the default mode.
+     * Every placement is evaluated against the same probability for the device, so requesting many placements
+     * at once costs a single fraud API lookup while results are cached.
+     *
+     * @param placementId The ID of the placement the ad is loaded for.
+     * @param listener    The listener will be called with the results of the request.
+     */
+    public static void requestBlockStatus ( String placementId, BlockingStatusListener listener ) throws IllegalStateException {
+        if( placementId == null ) throw new IllegalArgumentException( "The placement ID cannot be null." );
+        requestBlockStatus( placementId, null, listener );
+    }
+
+    /**
+     * Requests a block status with the given placement's threshold, or the global threshold if there is no placement.
+     * A null mode takes the placement's configured mode.
+     */
+    private static void requestBlockStatus ( String placementId, BlockingMode mode, BlockingStatusListener listener ) throws IllegalStateException {
         if( !initialized ) {
             throw new IllegalStateException( "You must set the global com.pixalate.android.blocking config using `Pixalate.initialize` before requesting block status." );
         }
 
-        final Context ctx = context.get();
+        final Context ctx = context.get();
+
+        if( ctx == null ) {
+            throw new IllegalStateException( "Context is null, cannot proceed." );
+        }
+
+        requestBlockStatus( GLOBAL, ctx, placementId, mode, listener );
+    }
+
+    /**
+     * Requests a block status in the given scope, with the given placement's threshold, or the global threshold if there is no placement.
+     * A null mode takes the placement's configured mode.
+     */
+    static void requestBlockStatus ( Scope scope, Context ctx, String placementId, BlockingMode mode, BlockingStatusListener listener ) {
+        BlockingConfig config = scope.config();
+        double threshold = placementId != null ? config.getBlockingThreshold( placementId ) : config.getBlockingThreshold();
+        if( mode == null ) {
+            mode = config.getBlockingMode( placementId );
+        }
+
+        if( mode == BlockingMode.DEFAULT ) {
+            BlockingResult last = scope.lastResult();
+            if( last != null ) {
+                if( config.getDecisionPolicy().shouldReuse( scope.requestsSinceLookup().incrementAndGet() ) &&
+                    ( last.time == 0 || last.time > System.currentTimeMillis() ) ) {
+                    BlockingEventLog.record( BlockingEventLog.Event.DECISION_REUSED );
+                    BlockingRequestRecorder.record( System.currentTimeMillis(), last.parameters, 0, last, BlockingRequestRecorder.Source.REUSED );
+                    LogDebug( "Reusing the last decision." );
+                    dispatch( config.getCallbackExecutor(), last, threshold, listener );
+                    return;
+                }
+
+                scope.requestsSinceLookup().set( 0 );
+            }
+        }
+
+        SendPreBidBlockingRequestTask task = SendPreBidBlockingRequestTask.obtain();
+        if( !task.startInline( scope, mode, threshold, listener ) ) {
+            task.start( scope, ctx, mode, threshold, listener );
+        }
+    }
+
+    /**
+     * Subscribes to block decisions. The listener is called with the current decision right away, looking it up if needed,
+     * and afterwards only when the decision changes: when it is looked up again after expiring, after a network or IP
+     * address change, or when any other request produces a different decision. Errors are only passed on until the
+     * first decision is known. Callbacks are delivered through the configured callback executor.
+     * @param listener The listener to notify of decisions.
+     * @return The subscription, which should be cancelled when the listener is no longer interested.
+     */
+    public static BlockingSubscription subscribe ( BlockingStatusListener listener ) throws IllegalStateException {
+        if( !initialized ) {
+            throw new IllegalStateException( "You must set the global com.pixalate.android.blocking config using `Pixalate.initialize` before subscribing to block status." );
+        }
+
+        final Context ctx = context.get();
+
+        if( ctx == null ) {
+            throw new IllegalStateException( "Context is null, cannot proceed." );
+        }
+
+        BlockingDecisionPublisher publisher = PixalateBlocking.publisher;
+        if( publisher == null ) {
+            synchronized( PixalateBlocking.class ) {
+                publisher = PixalateBlocking.publisher;
+                if( publisher == null ) {
+                    publisher = new BlockingDecisionPublisher( ctx );
+                    PixalateBlocking.publisher = publisher;
+                }
+            }
+        }
+
+        return publisher.add( listener );
+    }
+
+    static void publishDecision ( BlockingResult result ) {
+        BlockingDecisionPublisher publisher = PixalateBlocking.publisher;
+        if( publisher != null ) publisher.onResult( result );
+    }
+
+    /**
+     * Available log granularity levels. Set the global Pixalate log level by calling {@link PixalateBlocking#setLogLevel(LogLevel)}.
+     */
+    public enum LogLevel {
+        NONE( 0 ),
+        INFO( 1 ),
+        ERROR( 2 ),
+        WARNING( 3 ),
+        DEBUG( 4 );
+
+        private final int severity;
+
+        LogLevel ( int severity ) {
+            this.severity = severity;
+        }
+
+        public boolean includes ( LogLevel other ) {
+            return this.severity >= other.severity;
+        }
+    }
+
+    /**
+     * Various blocking modes for testing. You can pass this into the {@link PixalateBlocking#requestBlockStatus(BlockingMode, BlockingStatusListener)}
+     * overload to test your ad loads given guaranteed blocking states.
+     */
+    public enum BlockingMode {
+        DEFAULT,
+        ALWAYS_BLOCK,
+        NEVER_BLOCK
+    }
+
+    /**
+     * An exception wrapper around a non-OK HTTP response code.
+     */
+    public static class HTTPException extends Exception {
+        public final int errorCode;
+
+        public HTTPException ( int errorCode, String message ) {
+            super( message );
+            this.errorCode = errorCode;
+        }
+    }
+
+    /**
+     * Occurs when the strategy takes too long to execute and times out the request.
+     */
+    public static class StrategyTimeoutException extends Exception {
+        StrategyTimeoutException ( String message ) {
+            super( message );
+        }
+    }
+
+    /**
+     * Occurs when the rate limiter has no token for a fraud API call within the request's timeout.
+     */
+    static class RateLimitedException extends Exception {
+        RateLimitedException ( String message ) {
+            super( message );
+        }
+    }
+
+    /**
+     * The state requests run against: the global state set up by {@link #initialize}, or that of a {@link PixalateBlockingClient}.
+     */
+    interface Scope {
+        BlockingConfig config ();
+        BlockingResult lookupCachedResult ( BlockingCacheParameters key, BlockingCacheParameters params );
+        void storeResult ( BlockingCacheParameters key, BlockingResult result );
+        BlockingResult lastResult ();
+
+        /**
+         * Records a decision made from a looked up or cached result as the last decision.
+         */
+        void onDecision ( BlockingResult result );
+
+        AtomicLong requestsSinceLookup ();
+        BlockingEndpointSelector endpoints ();
+        BlockingRateLimiter rateLimiter ();
+    }
+
+    static final Scope GLOBAL = new Scope() {
+        @Override
+        public BlockingConfig config () {
+            return globalConfig;
+        }
+
+        @Override
+        public BlockingResult lookupCachedResult ( BlockingCacheParameters key, BlockingCacheParameters params ) {
+            return PixalateBlocking.lookupCachedResult( key, params );
+        }
+
+        @Override
+        public void storeResult ( BlockingCacheParameters key, BlockingResult result ) {
+            PixalateBlocking.storeResult( key, result );
+        }
+
+        @Override
+        public BlockingResult lastResult () {
+            return lastResult;
+        }
+
+        @Override
+        public void onDecision ( BlockingResult result ) {
+            lastResult = result;
+            publishDecision( result );
+        }
+
+        @Override
+        public AtomicLong requestsSinceLookup () {
+            return requestsSinceLookup;
+        }
+
+        @Override
+        public BlockingEndpointSelector endpoints () {
+            return fraudEndpoints;
+        }
+
+        @Override
+        public BlockingRateLimiter rateLimiter () {
+            return rateLimiter;
+        }
+    };
+
+    static class BlockingResult {
+        // object header, fields and padding on a 32-bit heap, not counting the message string.
+        static final int ESTIMATED_SIZE = 56;
+
+        String message = null;
+        int errorCode = -1;
+        double probability = -1;
+
+        // a configured fallback rather than a looked up probability, which is never cached or reused.
+        boolean fallback;
+
+        BlockingCacheParameters parameters;
+
+        long time;
+        long lastAccess;
+
+        volatile boolean refreshing;
+
+        public boolean hasError () {
+            return errorCode > -1;
+        }
+    }
+
+    /**
+     * The state of a request, reused by pooled request tasks.
+     */
+    private static class BlockingRequestParameters {
+        BlockingCacheParameters cacheParams;
+        BlockingMode mode;
+        BlockingTransport transport;
+        BlockingEndpointSelector endpoints;
+        String apiKey;
+        int timeout;
+        int hedgingDelay;
+        double hedgingBudget;
+        CacheKeyPolicy cacheKeyPolicy;
+        int ipv6PrefixLength;
+        boolean serverInferredIP;
+        BlockingRateLimiter rateLimiter;
+        FallbackDecision rateLimitFallback;
+        BlockingCacheParameters cacheKey;
+        int traceCookie;
+        final RequestLatch latch = new RequestLatch();
+
+        void reset ( Scope scope, BlockingConfig config, BlockingMode mode ) {
+            if( cacheParams == null ) {
+                cacheParams = new BlockingCacheParameters();
+            } else {
+                cacheParams.ipv4 = null;
+                cacheParams.ipv6 = null;
+                cacheParams.deviceId = null;
+                cacheParams.userAgent = null;
+            }
+
+            // keys carry the mode, so the refresh scheduler can tell looked up results from simulated ones.
+            cacheParams.mode = mode;
+
+            this.mode = mode;
+            this.transport = config.getTransport();
+            this.endpoints = scope.endpoints();
+            this.apiKey = config.getApiKey();
+            this.timeout = config.getRequestTimeout();
+            this.hedgingDelay = config.getHedgingDelay();
+            this.hedgingBudget = config.getHedgingBudget();
+            this.cacheKeyPolicy = config.getCacheKeyPolicy();
+            this.ipv6PrefixLength = config.getIPv6PrefixLength();
+            this.serverInferredIP = config.isServerInferredIPEnabled();
+            this.rateLimiter = scope.rateLimiter();
+            this.rateLimitFallback = config.getRateLimitFallback();
+            this.cacheKey = null;
+        }
+    }
+
+    /**
+     * A count down latch that can be reset, so it can be reused by pooled request tasks.
+     * Each use has a generation, so a count down meant for an earlier use cannot open a later one.
+     */
+    private static final class RequestLatch {
+        private int count;
+        private int generation;
+
+        /**
+         * Starts a new use of the latch.
+         * @return The generation of the use, to count down with.
+         */
+        synchronized int reset ( int count ) {
+            this.count = count;
+            return ++generation;
+        }
+
+        /**
+         * Counts down if the given generation is the current use and it is still awaited.
+         * Callers write what they waited for while holding the latch's lock, so it is seen by the waiting thread.
+         * @return Whether the count down was accepted.
+         */
+        synchronized boolean countDown ( int generation ) {
+            if( generation != this.generation || count <= 0 ) return false;
+
+            if( --count == 0 ) {
+                notifyAll();
+            }
+            return true;
+        }
+
+        /**
+         * Waits for the count to reach zero, for at most the given time. Count downs arriving later are not accepted.
+         * @return Whether the count reached zero.
+         */
+        synchronized boolean await ( long timeout ) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeout;
+
+            try {
+                while( count > 0 ) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if( remaining <= 0 ) return false;
+                    wait( remaining );
+                }
+
+                return true;
+            } finally {
+                count = 0;
+            }
+        }
+    }
+
+    static class BlockingCacheParameters {
+        String ipv4;
+        String ipv6;
+        String deviceId;
+        String userAgent;
+        BlockingMode mode;
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            BlockingCacheParameters parameters = (BlockingCacheParameters) o;
+            return Objects.equals(ipv4,parameters.ipv4) &&
+                Objects.equals(ipv6, parameters.ipv6) &&
+                Objects.equals(deviceId,parameters.deviceId) &&
+                Objects.equals(userAgent,parameters.userAgent) &&
+                Objects.equals(mode, parameters.mode);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = 1;
+
+            result = 31 * result + (ipv4 == null ? 0 : ipv4.hashCode());
+            result = 31 * result + (ipv6 == null ? 0 : ipv6.hashCode());
+            result = 31 * result + (deviceId == null ? 0 : deviceId.hashCode());
+            result = 31 * result + (userAgent == null ? 0 : userAgent.hashCode());
+            result = 31 * result + (mode == null ? 0 : mode.hashCode());
+
+            return result;
+        }
+
+        /**
+         * Derives the key used to cache the result of these parameters. Fields the policy leaves out are dropped,
+         * and IPv6 addresses are truncated to the given prefix, so that trivial changes still hit the cache.
+         * Returns this instance when no fields need to be dropped or normalized.
+         */
+        BlockingCacheParameters toKey ( CacheKeyPolicy policy, int ipv6PrefixLength ) {
+            if( policy == CacheKeyPolicy.ALL_FIELDS && ( ipv6PrefixLength >= 128 || ipv6 == null ) ) {
+                return this;
+            }
+
+            BlockingCacheParameters key = new BlockingCacheParameters();
+            key.deviceId = deviceId;
+            key.mode = mode;
+
+            switch( policy ) {
+                case ALL_FIELDS:
+                    key.userAgent = userAgent;
+                    // fall through
+                case DEVICE_AND_IP:
+                    key.ipv6 = normalizeIPv6( ipv6, ipv6PrefixLength );
+                    // fall through
+                case DEVICE_AND_IPV4:
+                    key.ipv4 = ipv4;
+                    break;
+                default:
+                    break;
+            }
+
+            return key;
+        }
+
+        static String normalizeIPv6 ( String ip, int prefixLength ) {
+            if( ip == null || prefixLength >= 128 || ip.indexOf( ':' ) < 0 ) {
+                return ip;
+            }
+
+            try {
+                // the address is a literal, so this never touches DNS.
+                byte[] address = InetAddress.getByName( ip ).getAddress();
+                if( address.length != 16 ) return ip;
+
+                for( int bit = prefixLength; bit < 128; bit++ ) {
+                    address[ bit / 8 ] &= ~( 0x80 >>> ( bit % 8 ) );
+                }
+
+                return InetAddress.getByAddress( address ).getHostAddress() + "/" + prefixLength;
+            } catch( UnknownHostException e ) {
+                return ip;
+            }
+        }
+
+        /**
+         * A rough estimate of the heap held by these parameters, including their strings.
+         */
+        long estimateSize () {
+            return 32 + estimateSize( ipv4 ) + estimateSize( ipv6 ) + estimateSize( deviceId ) + estimateSize( userAgent );
+        }
+
+        private static long estimateSize ( String value ) {
+            return value == null ? 0 : 24 + 2L * value.length();
+        }
+
+        /**
+         * A 64-bit FNV-1a fingerprint of the parameters. Unlike {@link #hashCode}, this is stable across
+         * processes, and so can be used to key shared storage. Never returns 0, which marks an empty slot.
+         */
+        long fingerprint () {
+            long hash = 0xcbf29ce484222325L;
+
+            hash = fingerprint( hash, ipv4 );
+            hash = fingerprint( hash, ipv6 );
+            hash = fingerprint( hash, deviceId );
+            hash = fingerprint( hash, userAgent );
+            hash = ( hash ^ ( mode == null ? 0xff : mode.ordinal() ) ) * 0x100000001b3L;
+
+            return hash == 0 ? 1 : hash;
+        }
+
+        /**
+         * A second, independent 64-bit hash of the parameters. Together with {@link #fingerprint()} this forms a
+         * 128-bit fingerprint, wide enough that collisions between different parameters can be disregarded.
+         */
+        long fingerprintLow () {
+            long hash = 0x6a09e667f3bcc909L;
+
+            hash = fingerprintLow( hash, ipv4 );
+            hash = fingerprintLow( hash, ipv6 );
+            hash = fingerprintLow( hash, deviceId );
+            hash = fingerprintLow( hash, userAgent );
+            hash = mix( hash + ( mode == null ? 0xff : mode.ordinal() ) );
+
+            return hash;
+        }
+
+        private static long fingerprintLow ( long hash, String value ) {
+            if( value == null ) {
+                return mix( hash + 0x1ff );
+            }
+
+            for( int i = 0; i < value.length(); i++ ) {
+                hash = ( hash + value.charAt( i ) ) * 0x9E3779B97F4A7C15L;
+                hash ^= hash >>> 29;
+            }
+
+            return mix( hash + value.length() );
+        }
+
+        private static long mix ( long hash ) {
+            hash = ( hash ^ ( hash >>> 33 ) ) * 0xff51afd7ed558ccdL;
+            hash = ( hash ^ ( hash >>> 33 ) ) * 0xc4ceb9fe1a85ec53L;
+            return hash ^ ( hash >>> 33 );
+        }
+
+        private static long fingerprint ( long hash, String value ) {
+            if( value != null ) {
+                for( int i = 0; i < value.length(); i++ ) {
+                    hash = ( hash ^ value.charAt( i ) ) * 0x100000001b3L;
+                }
+            }
+
+            // separates fields, and distinguishes null from the empty string.
+            return ( hash ^ ( value == null ? 0x1ff : 0x100 ) ) * 0x100000001b3L;
+        }
+    }
+
+    /**
+     * One or more fraud API requests for the same parameters sent through the transport, each to one of the candidate endpoints.
+     * Outcomes are collected in the order they arrive, and reported to the endpoint selector. Cancelling the exchange cancels
+     * every request still in flight, counting them as failures of their endpoint if the exchange timed out.
+     */
+    private static final class FraudExchange {
+        final BlockingTransport transport;
+        final BlockingEndpointSelector endpoints;
+        final BlockingCacheParameters params;
+        final String apiKey;
+        final long deadline;
+        final BlockingQueue<Object> outcomes = new LinkedBlockingQueue<>();
+        final List<Attempt> attempts = new ArrayList<>( 2 );
+
+        FraudExchange ( BlockingTransport transport, BlockingEndpointSelector endpoints, BlockingCacheParameters params, String apiKey, long deadline ) {
+            this.transport = transport;
+            this.endpoints = endpoints;
+            this.params = params;
+            this.apiKey = apiKey;
+            this.deadline = deadline;
+        }
+
+        void send ( int endpoint ) {
+            String url = SendPreBidBlockingRequestTask.buildUrl( endpoints.url( endpoint ), params.deviceId, params.ipv4, params.ipv6, params.userAgent );
+            LogDebug( "Sent URL: %s", url );
+
+            int timeout = deadline == Long.MAX_VALUE ? 0 : (int) Math.max( 1, deadline - System.currentTimeMillis() );
+            BlockingTransport.Request request = apiKey != null
+                ? BlockingTransport.Request.withHeader( url, "X-Api-Key", apiKey, timeout )
+                : new BlockingTransport.Request( url, timeout );
+
+            Attempt attempt = new Attempt( endpoint );
+            synchronized( attempts ) {
+                attempts.add( attempt );
+            }
+
+            attempt.call = transport.execute( request, attempt );
+        }
+
+        /**
+         * Waits for the next outcome until the deadline.
+         * @return The response, or null if the wait timed out before the deadline.
+         * @throws SocketTimeoutException If the deadline passed.
+         * @throws IOException If the request failed.
+         */
+        BlockingTransport.Response next ( long wait, long deadline ) throws IOException, InterruptedException {
+            long remaining = deadline - System.currentTimeMillis();
+            Object outcome = outcomes.poll( Math.min( wait, remaining ), TimeUnit.MILLISECONDS );
+
+            if( outcome == null ) {
+                if( wait < remaining ) return null;
+                throw new SocketTimeoutException( "Timed out waiting for the fraud API to respond." );
+            }
+
+            if( outcome instanceof IOException ) {
+                throw (IOException) outcome;
+            }
+
+            return (BlockingTransport.Response) outcome;
+        }
+
+        void cancel ( boolean timedOut ) {
+            synchronized( attempts ) {
+                for( Attempt attempt : attempts ) {
+                    if( attempt.finish() && timedOut ) {
+                        endpoints.report( attempt.endpoint, System.currentTimeMillis() - attempt.start, false );
+                    }
+
+                    if( attempt.call != null ) attempt.call.cancel();
+                }
+            }
+        }
+
+        private final class Attempt implements BlockingTransport.Callback {
+            final int endpoint;
+            final long start = System.currentTimeMillis();
+            final AtomicBoolean finished = new AtomicBoolean();
+            volatile BlockingTransport.Call call;
+
+            Attempt ( int endpoint ) {
+                this.endpoint = endpoint;
+            }
+
+            /**
+             * @return Whether this call finished the attempt, rather than its outcome or a cancellation.
+             */
+            boolean finish () {
+                return finished.compareAndSet( false, true );
+            }
+
+            @Override
+            public void onResponse ( BlockingTransport.Response response ) {
+                // rejections of the request itself say nothing about the endpoint's health.
+                if( finish() ) endpoints.report( endpoint, System.currentTimeMillis() - start, response.getCode() < 500 );
+                outcomes.offer( response );
+            }
+
+            @Override
+            public void onFailure ( IOException e ) {
+                if( finish() ) endpoints.report( endpoint, System.currentTimeMillis() - start, false );
+                outcomes.offer( e );
+            }
+        }
+    }
+
+    private static BlockingResult toResult ( BlockingTransport.Response response ) throws IOException {
+        BlockingResult result = new BlockingResult();
+        BlockingEventLog.record( BlockingEventLog.Event.FRAUD_RESPONSE, response.getCode() );
 
-        if( ctx == null ) {
-            throw new IllegalStateException( "Context is null, cannot proceed." );
+        if( response.getCode() != 200 ) {
+            result.errorCode = response.getCode();
+            result.message = response.getMessage();
+            return result;
         }
 
-        Handler handler = new Handler();
-        CountDownLatch latch = new CountDownLatch( 3 );
+        boolean traced = BlockingTrace.begin( BlockingTrace.JSON_PARSE );
+        try {
+            JsonReader reader = new JsonReader( new StringReader( response.getBody() != null ? response.getBody() : "" ) );
+
+            reader.beginObject();
+
+            while( reader.hasNext() ) {
+                String name = reader.nextName();
+
+                switch( name ) {
+                    case "status":
+                        result.errorCode = reader.nextInt();
+                        break;
+                    case "message":
+                        result.message = reader.nextString();
+                        break;
+                    case "probability":
+                        result.probability = reader.nextDouble();
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
 
-        final BlockingStrategy strategy = globalConfig.getBlockingStrategy();
-        final BlockingCacheParameters cacheParams = new BlockingCacheParameters();
+            reader.endObject();
+        } finally {
+            BlockingTrace.end( traced );
+        }
 
-        executor.execute( () -> {
-            strategy.getDeviceID(ctx, result -> {
-                cacheParams.deviceId = result;
-                latch.countDown();
-            });
-        });
+        return result;
+    }
 
-        executor.execute( () -> {
-            strategy.getIPv4( ctx, result -> {
-                cacheParams.ipv4 = result;
-                latch.countDown();
-            });
-        });
+    /**
+     * Answers a request with the deadline decision if its lookup has not answered it yet. Holds its own copy of the
+     * listener and threshold, since the request's task is recycled once the lookup finishes.
+     */
+    private static final class DeadlineDecision implements Runnable {
+        private final AtomicBoolean answered;
+        private final Executor callbackExecutor;
+        private final FallbackDecision decision;
+        private final double threshold;
+        private final BlockingStatusListener listener;
+
+        DeadlineDecision ( AtomicBoolean answered, Executor callbackExecutor, FallbackDecision decision, double threshold, BlockingStatusListener listener ) {
+            this.answered = answered;
+            this.callbackExecutor = callbackExecutor;
+            this.decision = decision;
+            this.threshold = threshold;
+            this.listener = listener;
+        }
 
-        executor.execute( () -> {
-            strategy.getIPv6( ctx, result -> {
-                cacheParams.ipv6 = result;
-                latch.countDown();
-            });
-        });
+        @Override
+        public void run () {
+            if( !answered.compareAndSet( false, true ) ) return;
 
-        executor.execute( () -> {
-            strategy.getUserAgent( ctx, result -> {
-                cacheParams.userAgent = result;
-                latch.countDown();
-            });
-        });
+            deadlineDecisionCount.incrementAndGet();
+            BlockingEventLog.record( BlockingEventLog.Event.DEADLINE_EXCEEDED );
+            LogDebug( "No decision within the deadline, answering with the deadline decision." );
 
-        SendPreBidBlockingRequestTask task = new SendPreBidBlockingRequestTask( globalConfig.getTTL(), globalConfig.getBlockingThreshold(), listener );
-        task.execute( new BlockingRequestParameters( latch, cacheParams, globalConfig.getApiKey(), globalConfig.getRequestTimeout(), mode ) );
+            dispatch( callbackExecutor, SendPreBidBlockingRequestTask.fallbackResult( decision, 408, "No decision could be made within the decision deadline." ), threshold, listener );
+        }
     }
 
     /**
-     * Available log granularity levels. Set the global Pixalate log level by calling {@link PixalateBlocking#setLogLevel(LogLevel)}.
+     * Runs the lookup on a background thread, then delivers the result to the listener through the callback executor.
+     * Tasks are pooled together with their parameters, strategy callbacks and delivery runnable,
+     * so that a request answered from the cache allocates next to nothing.
      */
-    public enum LogLevel {
-        NONE( 0 ),
-        INFO( 1 ),
-        ERROR( 2 ),
-        WARNING( 3 ),
-        DEBUG( 4 );
+    private static class SendPreBidBlockingRequestTask implements Runnable {
 
-        private final int severity;
+        private static final int POOL_SIZE = 8;
+        private static final SendPreBidBlockingRequestTask[] pool = new SendPreBidBlockingRequestTask[ POOL_SIZE ];
+        private static int pooled;
 
-        LogLevel ( int severity ) {
-            this.severity = severity;
+        final BlockingRequestParameters param = new BlockingRequestParameters();
+
+        Scope scope;
+        Context ctx;
+        BlockingStrategy strategy;
+        BlockingStatusListener listener;
+        Executor callbackExecutor;
+        BlockingResult result;
+        double threshold;
+        long ttl;
+        long startTime;
+        long startNanos;
+
+        // set while a decision deadline is pending, whichever of the lookup and the deadline answers first wins.
+        AtomicBoolean answered;
+        ScheduledFuture<?> deadline;
+
+        // the generation of the current use of the latch, which the strategy callbacks are stamped with.
+        int generation;
+
+        // the strategy callbacks still to arrive, plus one for the lookup, as the task is only pooled once all are done.
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private final Runnable fetchDeviceID = () -> {
+            int generation = this.generation;
+            BlockingTrace.beginAsync( BlockingTrace.DEVICE_ID, param.traceCookie );
+            strategy.getDeviceID( ctx, result -> onDeviceID( generation, result ) );
+        };
+
+        private final Runnable fetchIPv4 = () -> {
+            int generation = this.generation;
+            BlockingTrace.beginAsync( BlockingTrace.IPV4, param.traceCookie );
+            strategy.getIPv4( ctx, result -> onIPv4( generation, result ) );
+        };
+
+        private final Runnable fetchIPv6 = () -> {
+            int generation = this.generation;
+            BlockingTrace.beginAsync( BlockingTrace.IPV6, param.traceCookie );
+            strategy.getIPv6( ctx, result -> onIPv6( generation, result ) );
+        };
+
+        private final Runnable fetchUserAgent = () -> {
+            int generation = this.generation;
+            BlockingTrace.beginAsync( BlockingTrace.USER_AGENT, param.traceCookie );
+            strategy.getUserAgent( ctx, result -> onUserAgent( generation, result ) );
+        };
+
+        private final Runnable delivery = this::deliver;
+
+        static SendPreBidBlockingRequestTask obtain () {
+            synchronized( pool ) {
+                if( pooled > 0 ) {
+                    SendPreBidBlockingRequestTask task = pool[ --pooled ];
+                    pool[ pooled ] = null;
+                    return task;
+                }
+            }
+
+            return new SendPreBidBlockingRequestTask();
         }
 
-        public boolean includes ( LogLevel other ) {
-            return this.severity >= other.severity;
+        /**
+         * Gives up the hold of a strategy callback or of the lookup, putting the task back in the pool once all are given up.
+         */
+        private void recycle () {
+            if( pending.decrementAndGet() > 0 ) return;
+
+            scope = null;
+            ctx = null;
+            strategy = null;
+            listener = null;
+            callbackExecutor = null;
+            result = null;
+            answered = null;
+            deadline = null;
+
+            synchronized( pool ) {
+                if( pooled < POOL_SIZE ) {
+                    pool[ pooled++ ] = this;
+                }
+            }
         }
-    }
 
-    /**
-     * Various blocking modes for testing. You can pass this into the {@link PixalateBlocking#requestBlockStatus(BlockingMode, BlockingStatusListener)}
-     * overload to test your ad loads given guaranteed blocking states.
-     */
-    public enum BlockingMode {
-        DEFAULT,
-        ALWAYS_BLOCK,
-        NEVER_BLOCK
-    }
+        /**
+         * Starts the strategy calls on the strategy executor, then performs the lookup on the serial executor.
+         */
+        void start ( Scope scope, Context ctx, BlockingMode mode, double threshold, BlockingStatusListener listener ) {
+            BlockingConfig config = scope.config();
 
-    /**
-     * An exception wrapper around a non-OK HTTP response code.
-     */
-    public static class HTTPException extends Exception {
-        public final int errorCode;
+            this.scope = scope;
+            this.ctx = ctx;
+            this.strategy = config.getBlockingStrategy();
+            this.callbackExecutor = config.getCallbackExecutor();
+            this.listener = listener;
+            this.threshold = threshold;
+            this.ttl = config.getTTL();
+            this.startTime = System.currentTimeMillis();
+            this.startNanos = System.nanoTime();
+
+            // the fraud API infers the IP address from the connection, so the IP lookups are left out of the request.
+            boolean serverInferredIP = config.isServerInferredIPEnabled();
+            int callbacks = serverInferredIP ? 2 : 4;
+            param.reset( scope, config, mode );
+            pending.set( callbacks + 1 );
+            generation = param.latch.reset( callbacks );
+            param.traceCookie = BlockingTrace.nextCookie();
+
+            BlockingEventLog.record( BlockingEventLog.Event.REQUEST_STARTED, mode.ordinal() );
+            Executor strategyExecutor = executor( config );
+
+            int decisionDeadline = config.getDecisionDeadline();
+            if( decisionDeadline > 0 && mode == BlockingMode.DEFAULT ) {
+                answered = new AtomicBoolean();
+                deadline = deadlineTimer().schedule( new DeadlineDecision( answered, callbackExecutor, config.getDeadlineDecision(), threshold, listener ), decisionDeadline, TimeUnit.MILLISECONDS );
+            }
 
-        public HTTPException ( int errorCode, String message ) {
-            super( message );
-            this.errorCode = errorCode;
-        }
-    }
+            BlockingTrace.beginAsync( BlockingTrace.REQUEST, param.traceCookie );
 
-    /**
-     * Occurs when the strategy takes too long to execute and times out the request.
-     */
-    public static class StrategyTimeoutException extends Exception {
-        StrategyTimeoutException ( String message ) {
-            super( message );
+            int submitted = 0;
+            try {
+                strategyExecutor.execute( fetchDeviceID );
+                submitted++;
+                if( !serverInferredIP ) {
+                    strategyExecutor.execute( fetchIPv4 );
+                    submitted++;
+                    strategyExecutor.execute( fetchIPv6 );
+                    submitted++;
+                }
+                strategyExecutor.execute( fetchUserAgent );
+            } catch( RejectedExecutionException e ) {
+                // the callbacks that were not submitted will never arrive to give up their hold on the task.
+                pending.addAndGet( submitted - callbacks );
+                LogWarning( "The strategy executor rejected the request." );
+
+                BlockingTrace.endAsync( BlockingTrace.REQUEST, param.traceCookie );
+                answer( fallbackResult( FallbackDecision.NONE, 503, "The request could not be started, try again later." ) );
+                return;
+            }
+
+            AsyncTask.SERIAL_EXECUTOR.execute( this );
         }
-    }
 
-    private static class BlockingResult {
-        String message = null;
-        int errorCode = -1;
-        double probability = -1;
+        /**
+         * Answers the request on the calling thread if the strategy has every needed parameter cached and the result is cached too,
+         * skipping the strategy and serial executors. The result is still delivered through the callback executor.
+         * @return Whether the request was answered. If not, nothing was recorded and the task can be started as usual.
+         */
+        boolean startInline ( Scope scope, BlockingMode mode, double threshold, BlockingStatusListener listener ) {
+            BlockingConfig config = scope.config();
+            if( mode != BlockingMode.DEFAULT || config.getTTL() <= 0 ) return false;
+
+            long startNanos = System.nanoTime();
+            BlockingStrategy strategy = config.getBlockingStrategy();
+            boolean serverInferredIP = config.isServerInferredIPEnabled();
+
+            String deviceId = strategy.getCachedValue( BlockingStrategy.Parameter.DEVICE_ID );
+            if( deviceId == null ) return false;
+            String userAgent = strategy.getCachedValue( BlockingStrategy.Parameter.USER_AGENT );
+            if( userAgent == null ) return false;
+
+            String ipv4 = null;
+            String ipv6 = null;
+            if( !serverInferredIP ) {
+                ipv4 = strategy.getCachedValue( BlockingStrategy.Parameter.IPV4 );
+                if( ipv4 == null ) return false;
+                ipv6 = strategy.getCachedValue( BlockingStrategy.Parameter.IPV6 );
+                if( ipv6 == null ) return false;
+            }
 
-        BlockingCacheParameters parameters;
+            param.reset( scope, config, mode );
+            BlockingCacheParameters cacheParams = param.cacheParams;
+            cacheParams.deviceId = deviceId != BlockingStrategy.MISSING ? deviceId : null;
+            cacheParams.userAgent = userAgent != BlockingStrategy.MISSING ? userAgent : null;
+            cacheParams.ipv4 = ipv4 != BlockingStrategy.MISSING ? ipv4 : null;
+            cacheParams.ipv6 = ipv6 != BlockingStrategy.MISSING ? ipv6 : null;
 
+            BlockingCacheParameters cacheKey = cacheParams.toKey( param.cacheKeyPolicy, param.ipv6PrefixLength );
 
+            boolean traced = BlockingTrace.begin( BlockingTrace.CACHE_LOOKUP );
+            BlockingResult result;
+            try {
+                result = scope.lookupCachedResult( cacheKey, cacheParams );
+            } finally {
+                BlockingTrace.end( traced );
+            }
 
-        long time;
+            if( result == null ) return false;
 
-        public boolean hasError () {
-            return errorCode > -1;
+            BlockingEventLog.record( BlockingEventLog.Event.REQUEST_STARTED, mode.ordinal() );
+            recordCacheLookup( param.cacheKeyPolicy, true );
+            BlockingEventLog.record( BlockingEventLog.Event.CACHE_HIT );
+            LogDebug( "Answering from the cache on the calling thread." );
+
+            scope.onDecision( result );
+            BlockingRequestRecorder.record( System.currentTimeMillis(), cacheParams, System.nanoTime() - startNanos, result, BlockingRequestRecorder.Source.CACHE );
+
+            if( result.parameters == cacheParams ) {
+                param.cacheParams = null;
+            }
+
+            pending.set( 1 );
+            Executor callbackExecutor = config.getCallbackExecutor();
+            if( callbackExecutor == BlockingConfig.DIRECT_EXECUTOR ) {
+                this.result = result;
+                this.threshold = threshold;
+                this.listener = listener;
+                deliver();
+            } else {
+                post( callbackExecutor, result, threshold, listener );
+            }
+
+            return true;
         }
-    }
 
-    private static class BlockingRequestParameters {
-        BlockingCacheParameters cacheParams;
-        BlockingMode mode;
-        String apiKey;
-        int timeout;
-        final CountDownLatch latch;
+        /**
+         * Delivers a result through the callback executor, using this task as the runnable.
+         */
+        void post ( Executor callbackExecutor, BlockingResult result, double threshold, BlockingStatusListener listener ) {
+            this.callbackExecutor = callbackExecutor;
+            this.result = result;
+            this.threshold = threshold;
+            this.listener = listener;
+            pending.set( 1 );
 
-        public BlockingRequestParameters( CountDownLatch latch, BlockingCacheParameters params, String apiKey, int timeout, BlockingMode mode ) {
-            this.latch = latch;
-            this.cacheParams = params;
-            this.mode = mode;
-            this.apiKey = apiKey;
-            this.timeout = timeout;
+            callbackExecutor.execute( delivery );
         }
-    }
 
-    private static class BlockingCacheParameters {
-        String ipv4;
-        String ipv6;
-        String deviceId;
-        String userAgent;
-        BlockingMode mode;
+        private void onDeviceID ( int generation, String result ) {
+            synchronized( param.latch ) {
+                // ended even when the callback came too late to count, since the task and its cookie outlive it.
+                BlockingTrace.endAsync( BlockingTrace.DEVICE_ID, param.traceCookie );
+                if( param.latch.countDown( generation ) ) {
+                    param.cacheParams.deviceId = result;
+                }
+            }
+            recycle();
+        }
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            BlockingCacheParameters parameters = (BlockingCacheParameters) o;
-            return Objects.equals(ipv4,parameters.ipv4) &&
-                Objects.equals(ipv6, parameters.ipv6) &&
-                Objects.equals(deviceId,parameters.deviceId) &&
-                Objects.equals(userAgent,parameters.userAgent) &&
-                Objects.equals(mode, parameters.mode);
+        private void onIPv4 ( int generation, String result ) {
+            synchronized( param.latch ) {
+                BlockingTrace.endAsync( BlockingTrace.IPV4, param.traceCookie );
+                if( param.latch.countDown( generation ) ) {
+                    param.cacheParams.ipv4 = result;
+                }
+            }
+            recycle();
+        }
+
+        private void onIPv6 ( int generation, String result ) {
+            synchronized( param.latch ) {
+                BlockingTrace.endAsync( BlockingTrace.IPV6, param.traceCookie );
+                if( param.latch.countDown( generation ) ) {
+                    param.cacheParams.ipv6 = result;
+                }
+            }
+            recycle();
+        }
+
+        private void onUserAgent ( int generation, String result ) {
+            synchronized( param.latch ) {
+                BlockingTrace.endAsync( BlockingTrace.USER_AGENT, param.traceCookie );
+                if( param.latch.countDown( generation ) ) {
+                    param.cacheParams.userAgent = result;
+                }
+            }
+            recycle();
         }
 
         @Override
-        public int hashCode() {
-            int result = 1;
+        public void run () {
+            BlockingResult result = performRequest( param );
+            boolean stored = false;
+
+            BlockingRequestRecorder.record( startTime, param.cacheParams, System.nanoTime() - startNanos, result, source( result ) );
+
+            if( param.mode == BlockingMode.DEFAULT && !result.hasError() && !result.fallback && ttl > 0 && result.time == 0 ) {
+                LogDebug( "Caching result for %dms", ttl );
+                long time = System.currentTimeMillis();
+                result.time = time + ttl;
+                result.lastAccess = time;
+                scope.storeResult( param.cacheKey, result );
+                stored = true;
+            }
 
-            result = 31 * result + (ipv4 == null ? 0 : ipv4.hashCode());
-            result = 31 * result + (ipv6 == null ? 0 : ipv6.hashCode());
-            result = 31 * result + (deviceId == null ? 0 : deviceId.hashCode());
-            result = 31 * result + (userAgent == null ? 0 : userAgent.hashCode());
-            result = 31 * result + (mode == null ? 0 : mode.hashCode());
+            if( param.mode == BlockingMode.DEFAULT && !result.hasError() && !result.fallback ) {
+                scope.onDecision( result );
+            }
 
-            return result;
+            // the parameters live on in results and cache keys, in which case the next request gets fresh ones.
+            if( result.parameters == param.cacheParams || ( stored && param.cacheKey == param.cacheParams ) ) {
+                param.cacheParams = null;
+            }
+            param.cacheKey = null;
+
+            BlockingTrace.endAsync( BlockingTrace.REQUEST, param.traceCookie );
+            answer( result );
         }
-    }
 
-    private static class SendPreBidBlockingRequestTask extends AsyncTask<BlockingRequestParameters,Integer,BlockingResult> {
+        /**
+         * Delivers the result of the request through the callback executor, unless the deadline decision was delivered first.
+         */
+        private void answer ( BlockingResult result ) {
+            if( answered != null ) {
+                if( !answered.compareAndSet( false, true ) ) {
+                    // the listener already got the deadline decision, the result only serves later requests.
+                    LogDebug( "Lookup finished after the decision deadline." );
+                    recycle();
+                    return;
+                }
 
-        BlockingStatusListener listener;
-        double threshold;
-        long ttl;
+                deadline.cancel( false );
+            }
 
-        public SendPreBidBlockingRequestTask ( long ttl, double blockingThreshold, BlockingStatusListener listener ) {
-            this.threshold = blockingThreshold;
-            this.listener = listener;
-            this.ttl = ttl;
+            this.result = result;
+            if( callbackExecutor == BlockingConfig.DIRECT_EXECUTOR ) {
+                deliver();
+            } else {
+                callbackExecutor.execute( delivery );
+            }
         }
 
-        @Override
-        protected BlockingResult doInBackground ( BlockingRequestParameters... parameters ) {
-            BlockingRequestParameters param = parameters[ 0 ];
+        /**
+         * Where the result of this task's request came from, for the request recorder.
+         */
+        private BlockingRequestRecorder.Source source ( BlockingResult result ) {
+            if( param.mode != BlockingMode.DEFAULT ) return BlockingRequestRecorder.Source.SIMULATED;
+            if( result.hasError() ) return BlockingRequestRecorder.Source.ERROR;
+            if( result.fallback ) return BlockingRequestRecorder.Source.FALLBACK;
+
+            // only results taken from the cache or reused after rate limiting have an expiry before being stored.
+            return result.time != 0 ? BlockingRequestRecorder.Source.CACHE : BlockingRequestRecorder.Source.LOOKUP;
+        }
+
+        private void deliver () {
+            BlockingResult result = this.result;
+            double threshold = this.threshold;
+            BlockingStatusListener listener = this.listener;
 
+            // recycled before calling the listener, which may start the next request right away.
+            recycle();
+            PixalateBlocking.deliver( result, threshold, listener );
+        }
+
+        private BlockingResult performRequest ( BlockingRequestParameters param ) {
             int timeout = param.timeout;
             boolean hasTimeout = timeout > 0;
 
@@ -328,36 +1819,41 @@ public final class PixalateBlocking {
             BlockingCacheParameters cacheParams = param.cacheParams;
 
             try {
-                boolean success = param.latch.await( timeout, TimeUnit.MILLISECONDS );
+                boolean success = param.latch.await( timeout );
                 if( !success ) {
                     timeout = 0;
                 }
-            } catch (InterruptedException ignored) {}
-
-            if( globalConfig.getTTL() > 0 ) {
-                BlockingResult result = cachedResults.get( cacheParams );
-
-                if( result != null ) {
-                    if( result.time > new Date().getTime() ) {
-                        LogDebug( "Using cached results." );
-
-                        return result;
-                    } else {
-                        cachedResults.remove( cacheParams );
-                    }
-                }
+            } catch (InterruptedException ignored) {
             }
 
+            BlockingCacheParameters cacheKey = cacheParams.toKey( param.cacheKeyPolicy, param.ipv6PrefixLength );
+            param.cacheKey = cacheKey;
+
+            // simulated results are neither looked up in nor stored to the cache, so they never stand in for real ones.
             BlockingMode mode = param.mode;
             if( mode != BlockingMode.DEFAULT ) {
-                LogDebug( "Using custom com.pixalate.android.blocking mode: " + mode );
+                LogDebug( "Using custom com.pixalate.android.blocking mode: %s", mode );
                 BlockingResult result = new BlockingResult();
                 result.parameters = cacheParams;
                 result.probability = mode == BlockingMode.ALWAYS_BLOCK ? 1 : 0;
                 return result;
             }
 
-            HttpsURLConnection connection = null;
+            if( ttl > 0 ) {
+                boolean traced = BlockingTrace.begin( BlockingTrace.CACHE_LOOKUP );
+                BlockingResult result;
+                try {
+                    result = scope.lookupCachedResult( cacheKey, cacheParams );
+                } finally {
+                    BlockingTrace.end( traced );
+                }
+                recordCacheLookup( param.cacheKeyPolicy, result != null );
+                BlockingEventLog.record( result != null ? BlockingEventLog.Event.CACHE_HIT : BlockingEventLog.Event.CACHE_MISS );
+
+                if( result != null ) {
+                    return result;
+                }
+            }
 
             try {
                 timeout -= System.currentTimeMillis() - now;
@@ -366,60 +1862,37 @@ public final class PixalateBlocking {
                     throw new StrategyTimeoutException( "Timeout exceeded while executing strategy, aborting the request. If this is occurring too often, try bumping up the requestTimeout in the global config." );
                 }
 
-                LogDebug( "Remaining timeout after strategies: " + timeout );
-
-                URL url = new URL( buildUrl(cacheParams.deviceId, cacheParams.ipv4, cacheParams.ipv6, cacheParams.userAgent ) );
-
-                LogDebug( "Sent URL: " + url.toString() );
-
-                connection = (HttpsURLConnection) url.openConnection();
-
-                connection.setRequestMethod( "GET" );
-                if( hasTimeout ) {
-                    connection.setConnectTimeout(timeout);
-                }
-
-                if( apiKey != null ) connection.setRequestProperty( "X-Api-Key", apiKey );
-
-                int connStatus = connection.getResponseCode();
-
-                BlockingResult result = new BlockingResult();
-                result.parameters = cacheParams;
-
-                if( connStatus != 200 ) {
-                    result.errorCode = connStatus;
-                    result.message = connection.getResponseMessage();
-                    return result;
-                }
+                LogDebug( "Remaining timeout after strategies: %d", timeout );
 
-                InputStream in = connection.getInputStream();
+                BlockingResult result = fetchResult( cacheParams, param.transport, param.endpoints, apiKey, hasTimeout ? timeout : 0, param.hedgingDelay, param.hedgingBudget, param.rateLimiter );
 
-                JsonReader reader = new JsonReader( new InputStreamReader( in, StandardCharsets.UTF_8 ) );
+                // a bad request means the fraud API could not tell the address from the connection, for example behind a proxy.
+                if( param.serverInferredIP && result.errorCode == 400 ) {
+                    LogDebug( "Fraud API could not infer the IP address, falling back to IP lookups." );
 
-                reader.beginObject();
+                    int remaining = timeout - (int) ( System.currentTimeMillis() - now );
+                    if( hasTimeout && remaining <= 0 ) {
+                        throw new StrategyTimeoutException( "Timeout exceeded while falling back to IP lookups, aborting the request." );
+                    }
 
-                while( reader.hasNext() ) {
-                    String name = reader.nextName();
+                    BlockingCacheParameters withAddresses = resolveAddresses( executor( scope.config() ), ctx, strategy, cacheParams, hasTimeout ? remaining : 0 );
+                    if( withAddresses != null ) {
+                        cacheParams = withAddresses;
+                        remaining = timeout - (int) ( System.currentTimeMillis() - now );
+                        if( hasTimeout && remaining <= 0 ) {
+                            throw new StrategyTimeoutException( "Timeout exceeded while falling back to IP lookups, aborting the request." );
+                        }
 
-                    switch( name ) {
-                        case "status":
-                            result.errorCode = reader.nextInt();
-                            break;
-                        case "message":
-                            result.message = reader.nextString();
-                            break;
-                        case "probability":
-                            result.probability = reader.nextDouble();
-                            break;
-                        default:
-                            reader.skipValue();
-                            break;
+                        result = fetchResult( cacheParams, param.transport, param.endpoints, apiKey, hasTimeout ? remaining : 0, param.hedgingDelay, param.hedgingBudget, param.rateLimiter );
                     }
                 }
 
-                reader.endObject();
+                result.parameters = cacheParams;
 
                 return result;
+            } catch( RateLimitedException e ) {
+                LogDebug( e.getMessage() );
+                return rateLimitedResult( scope.lastResult(), param.rateLimitFallback );
             } catch( Exception e ) {
                 BlockingResult result = new BlockingResult();
 
@@ -434,15 +1907,204 @@ public final class PixalateBlocking {
                 }
 
                 LogInfo( result.message );
-                LogError( Log.getStackTraceString( e ) );
+                LogError( e );
                 return result;
+            }
+        }
+
+        /**
+         * Answers a rate limited request with the last decision, which is reused even if expired, or with the fallback decision.
+         */
+        private static BlockingResult rateLimitedResult ( BlockingResult last, FallbackDecision fallback ) {
+            if( last != null ) {
+                return last;
+            }
+
+            return fallbackResult( fallback, 429, "Rate limit exceeded, no fraud API call could be made within the request timeout." );
+        }
+
+        /**
+         * Creates a result for the fallback decision, or an error with the given status code if there is none.
+         */
+        static BlockingResult fallbackResult ( FallbackDecision fallback, int errorCode, String message ) {
+            BlockingResult result = new BlockingResult();
+
+            if( fallback == FallbackDecision.NONE ) {
+                result.errorCode = errorCode;
+                result.message = message;
+            } else {
+                result.fallback = true;
+                result.probability = fallback == FallbackDecision.BLOCK ? 1 : 0;
+            }
+
+            return result;
+        }
+
+        /**
+         * Looks up the IP addresses through the strategy on the strategy executor, for when the fraud API could not infer them.
+         * The strategy calls run off the serial thread, so a strategy that answers synchronously cannot hold it past the timeout.
+         * @return A copy of the parameters including the addresses, or null if none could be found in time.
+         */
+        private static BlockingCacheParameters resolveAddresses ( Executor executor, Context ctx, BlockingStrategy strategy, BlockingCacheParameters cacheParams, int timeout ) throws InterruptedException {
+            BlockingCacheParameters withAddresses = new BlockingCacheParameters();
+            withAddresses.deviceId = cacheParams.deviceId;
+            withAddresses.userAgent = cacheParams.userAgent;
+            withAddresses.mode = cacheParams.mode;
+
+            CountDownLatch latch = new CountDownLatch( 2 );
+            String[] addresses = new String[ 2 ];
+
+            executor.execute( () -> strategy.getIPv4( ctx, result -> {
+                addresses[ 0 ] = result;
+                latch.countDown();
+            }) );
+
+            executor.execute( () -> strategy.getIPv6( ctx, result -> {
+                addresses[ 1 ] = result;
+                latch.countDown();
+            }) );
+
+            if( !latch.await( timeout > 0 ? timeout : Long.MAX_VALUE, TimeUnit.MILLISECONDS ) ) {
+                return null;
+            }
+
+            withAddresses.ipv4 = addresses[ 0 ];
+            withAddresses.ipv6 = addresses[ 1 ];
+
+            return withAddresses.ipv4 != null || withAddresses.ipv6 != null ? withAddresses : null;
+        }
+
+        /**
+         * Performs the fraud API lookup for the given parameters on the best endpoint, hedging it if configured to.
+         * If no response has arrived within the hedging delay, an identical hedge request is sent to the next best endpoint
+         * as long as the hedging budget allows it. The first response wins, and the other request is cancelled.
+         * If the request fails outright while time remains, it is retried once on the next best endpoint.
+         * With a rate limiter, the call waits for a token for as long as the timeout allows, and hedges are only sent if
+         * a token is available right away.
+         */
+        static BlockingResult fetchResult ( BlockingCacheParameters cacheParams, BlockingTransport transport, BlockingEndpointSelector endpoints, String apiKey, int timeout, int hedgingDelay, double hedgingBudget, BlockingRateLimiter rateLimiter ) throws Exception {
+            if( rateLimiter != null ) {
+                // leaves at least a millisecond of the timeout, since a timeout of 0 means there is none.
+                long waited = rateLimiter.acquire( timeout > 0 ? timeout - 1 : -1 );
+                if( waited < 0 ) {
+                    rateLimitedRequestCount.incrementAndGet();
+                    BlockingEventLog.record( BlockingEventLog.Event.RATE_LIMITED );
+                    throw new RateLimitedException( "No rate limit token available within the timeout, skipping the fraud API call." );
+                }
+
+                if( timeout > 0 ) {
+                    timeout -= (int) waited;
+                }
+            }
+
+            long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+            FraudExchange exchange = new FraudExchange( transport, endpoints, cacheParams, apiKey, deadline );
+            boolean timedOut = false;
+
+            try {
+                int endpoint = endpoints.select();
+
+                fraudRequestCount.incrementAndGet();
+                BlockingEventLog.record( BlockingEventLog.Event.FRAUD_REQUEST_SENT, endpoint );
+                exchange.send( endpoint );
+
+                if( hedgingDelay > 0 && ( timeout <= 0 || hedgingDelay < timeout ) ) {
+                    BlockingTransport.Response response;
+                    try {
+                        response = exchange.next( hedgingDelay, deadline );
+                    } catch( SocketTimeoutException e ) {
+                        throw e;
+                    } catch( IOException e ) {
+                        // failed outright before a hedge was due.
+                        return failOver( exchange, endpoints, endpoint, deadline, rateLimiter, e );
+                    }
+
+                    if( response != null ) {
+                        return toResult( response );
+                    }
+
+                    boolean hedge = acquireHedge( hedgingBudget );
+                    if( hedge && rateLimiter != null && rateLimiter.acquire( 0 ) < 0 ) {
+                        // no hedge is sent, so neither the budget nor the request count should show one.
+                        releaseHedge();
+                        hedge = false;
+                    }
+
+                    if( hedge ) {
+                        BlockingEventLog.record( BlockingEventLog.Event.HEDGE_SENT, hedgingDelay );
+                        LogDebug( "No response after %dms, sending hedge request.", hedgingDelay );
+                        exchange.send( endpoints.alternate( endpoint ) );
+
+                        try {
+                            return toResult( exchange.next( Long.MAX_VALUE, deadline ) );
+                        } catch( SocketTimeoutException e ) {
+                            throw e;
+                        } catch( IOException e ) {
+                            // the first request to finish failed outright, so fall back on whichever one is left.
+                            return toResult( exchange.next( Long.MAX_VALUE, deadline ) );
+                        }
+                    }
+
+                    LogDebug( "Hedging budget or rate limit exhausted, waiting on the original request." );
+                }
+
+                try {
+                    return toResult( exchange.next( Long.MAX_VALUE, deadline ) );
+                } catch( SocketTimeoutException e ) {
+                    throw e;
+                } catch( IOException e ) {
+                    return failOver( exchange, endpoints, endpoint, deadline, rateLimiter, e );
+                }
+            } catch( SocketTimeoutException e ) {
+                timedOut = true;
+                throw e;
             } finally {
-                if( connection != null ) connection.disconnect();
+                exchange.cancel( timedOut );
+            }
+        }
+
+        /**
+         * Retries a request that failed outright once on the best other endpoint, if there is one and time and the rate limit allow.
+         * Otherwise the failure is rethrown.
+         */
+        private static BlockingResult failOver ( FraudExchange exchange, BlockingEndpointSelector endpoints, int endpoint, long deadline, BlockingRateLimiter rateLimiter, IOException e ) throws IOException, InterruptedException {
+            int alternate = endpoints.alternate( endpoint );
+            if( alternate == endpoint || System.currentTimeMillis() >= deadline || ( rateLimiter != null && rateLimiter.acquire( 0 ) < 0 ) ) {
+                throw e;
+            }
+
+            LogDebug( "Fraud API request failed, failing over to %s.", endpoints.url( alternate ) );
+            fraudRequestCount.incrementAndGet();
+            BlockingEventLog.record( BlockingEventLog.Event.FRAUD_REQUEST_SENT, alternate );
+            exchange.send( alternate );
+
+            return toResult( exchange.next( Long.MAX_VALUE, deadline ) );
+        }
+
+        private static boolean acquireHedge ( double hedgingBudget ) {
+            while( true ) {
+                long hedged = hedgedRequestCount.get();
+                if( hedged + 1 > hedgingBudget * fraudRequestCount.get() ) {
+                    return false;
+                }
+
+                if( hedgedRequestCount.compareAndSet( hedged, hedged + 1 ) ) {
+                    fraudRequestCount.incrementAndGet();
+                    return true;
+                }
             }
         }
 
-        private static String buildUrl ( String deviceId, String ipv4, String ipv6, String userAgent ) {
-            Uri.Builder uri = Uri.parse( baseFraudURL )
+        /**
+         * Gives back a hedge taken by {@link #acquireHedge} that was not sent after all.
+         */
+        private static void releaseHedge () {
+            hedgedRequestCount.decrementAndGet();
+            fraudRequestCount.decrementAndGet();
+        }
+
+        static String buildUrl ( String fraudURL, String deviceId, String ipv4, String ipv6, String userAgent ) {
+            Uri.Builder uri = Uri.parse( fraudURL )
                 .buildUpon();
 
             if( ipv4 != null ) {
@@ -463,29 +2125,6 @@ public final class PixalateBlocking {
 
             return uri.build().toString();
         }
-
-        @Override
-        protected void onPostExecute ( BlockingResult result ) {
-            if( result.hasError() ) {
-                // don't cache errors
-                LogError( String.format( "Error getting data: %s %s", result.errorCode, result.message ) );
-                listener.onError( result.errorCode, result.message );
-            } else {
-                LogDebug( String.format( "Got com.pixalate.android.blocking result:\nStatus: %s\nError: %s\nProbability: %s", result.errorCode, result.message, result.probability ) );
-
-                if( ttl > 0 ) {
-                    LogDebug( String.format( "Caching result for %sms", ttl ) );
-                    result.time = new Date().getTime() + ttl;
-                    cachedResults.put( result.parameters, result );
-                }
-
-                if( result.probability > threshold ) {
-                    listener.onBlock();
-                } else {
-                    listener.onAllow();
-                }
-            }
-        }
     }
 
 }
@@ -0,0 +1,185 @@
+package com.pixalate.android.blocking;
+
+import android.content.Context;
+import android.os.AsyncTask;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A block status client with a config of its own, for apps that embed the SDK through several integrations with
+ * different API keys or thresholds. Clients run side by side with each other and with the global config set by
+ * {@link PixalateBlocking#initialize}, without replacing it. Each client keeps its own cached results and last decision,
+ * while the thread pool, the HTTP connection pool, and the device ID and IP addresses fetched by the default strategy
+ * are shared by every client with the same settings.
+ */
+public final class PixalateBlockingClient {
+
+    private static final Set<PixalateBlockingClient> clients = Collections.newSetFromMap( new WeakHashMap<>() );
+
+    private final Context context;
+    private final BlockingConfig config;
+    private final ConcurrentHashMap<PixalateBlocking.BlockingCacheParameters,PixalateBlocking.BlockingResult> cachedResults = new ConcurrentHashMap<>();
+    private final CompactResultTable compactResults;
+    private final BlockingEndpointSelector endpoints;
+    private final BlockingRateLimiter rateLimiter;
+    private final AtomicLong requestsSinceLookup = new AtomicLong();
+    private final PixalateBlocking.Scope scope = new ClientScope();
+
+    private volatile PixalateBlocking.BlockingResult lastResult;
+
+    /**
+     * Creates a client. Like {@link PixalateBlocking#initialize}, this is cheap: the strategy is warmed up on a background thread.
+     * @param context A context, of which only the application context is kept.
+     * @param config The blocking config for this client's requests.
+     */
+    public PixalateBlockingClient ( Context context, BlockingConfig config ) {
+        if( context == null ) throw new IllegalArgumentException( "The context cannot be null." );
+        if( config == null ) throw new IllegalArgumentException( "The config cannot be null." );
+
+        this.context = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        this.config = config;
+        this.compactResults = config.isCompactCacheEnabled() ? new CompactResultTable() : null;
+        this.endpoints = BlockingEndpointSelector.forURLs( config.getFraudURLs(), null );
+        // limiters are kept per API key, so clients sharing a key share its limit with each other and the global config.
+        this.rateLimiter = BlockingRateLimiter.forKey( config.getApiKey(), config.getRateLimit(), config.getRateLimitBurst() );
+
+        synchronized( clients ) {
+            clients.add( this );
+        }
+
+        PixalateBlocking.registerMemoryTrimmer( this.context );
+
+        if( config.isServerInferredIPEnabled() ) {
+            PixalateBlocking.observeNetwork( this.context );
+        }
+
+        if( config.getBlockingStrategy() instanceof DefaultBlockingStrategy ) {
+            DefaultBlockingStrategy strategy = (DefaultBlockingStrategy) config.getBlockingStrategy();
+            AsyncTask.SERIAL_EXECUTOR.execute( () -> strategy.warmUp( this.context ) );
+        }
+    }
+
+    /**
+     * Returns the config this client was created with.
+     * @return The config.
+     */
+    public BlockingConfig getConfig () {
+        return config;
+    }
+
+    /**
+     * Requests a block status with this client's config. See {@link PixalateBlocking#requestBlockStatus(BlockingStatusListener)}.
+     * @param listener The listener will be called with the results of the request.
+     */
+    public void requestBlockStatus ( BlockingStatusListener listener ) {
+        requestBlockStatus( PixalateBlocking.BlockingMode.DEFAULT, listener );
+    }
+
+    /**
+     * Requests a block status with this client's config and the given blocking mode.
+     * See {@link PixalateBlocking#requestBlockStatus(PixalateBlocking.BlockingMode, BlockingStatusListener)}.
+     * @param mode     The BlockingMode to utilize.
+     * @param listener The listener will be called with the results of the request.
+     */
+    public void requestBlockStatus ( PixalateBlocking.BlockingMode mode, BlockingStatusListener listener ) {
+        if( mode == null ) throw new IllegalArgumentException( "The blocking mode cannot be null." );
+        PixalateBlocking.requestBlockStatus( scope, context, null, mode, listener );
+    }
+
+    /**
+     * Requests a block status for an ad placement with this client's config.
+     * See {@link PixalateBlocking#requestBlockStatus(String, BlockingStatusListener)}.
+     * @param placementId The ID of the placement the ad is loaded for.
+     * @param listener    The listener will be called with the results of the request.
+     */
+    public void requestBlockStatus ( String placementId, BlockingStatusListener listener ) {
+        if( placementId == null ) throw new IllegalArgumentException( "The placement ID cannot be null." );
+        PixalateBlocking.requestBlockStatus( scope, context, placementId, null, listener );
+    }
+
+    /**
+     * Evicts cached results according to the trim level. Called by {@link PixalateBlocking#trimMemory}.
+     * @return The number of results evicted.
+     */
+    int trimMemory ( int level ) {
+        return PixalateBlocking.trimResults( cachedResults, compactResults, level );
+    }
+
+    /**
+     * Drops what may belong to the previous network. Called by {@link PixalateBlocking#onNetworkChanged}.
+     */
+    void onNetworkChanged () {
+        PixalateBlocking.clearAddresses( config.getBlockingStrategy() );
+
+        if( config.isServerInferredIPEnabled() ) {
+            cachedResults.clear();
+            if( compactResults != null ) compactResults.clear();
+        }
+
+        lastResult = null;
+        requestsSinceLookup.set( 0 );
+    }
+
+    int cachedResultCount () {
+        return compactResults != null ? compactResults.size() : cachedResults.size();
+    }
+
+    /**
+     * Returns the clients that are still in use.
+     */
+    static List<PixalateBlockingClient> clients () {
+        synchronized( clients ) {
+            return new ArrayList<>( clients );
+        }
+    }
+
+    private class ClientScope implements PixalateBlocking.Scope {
+        @Override
+        public BlockingConfig config () {
+            return config;
+        }
+
+        @Override
+        public PixalateBlocking.BlockingResult lookupCachedResult ( PixalateBlocking.BlockingCacheParameters key, PixalateBlocking.BlockingCacheParameters params ) {
+            // clients do not use the shared cache, whose entries hold no API key or threshold to tell clients apart.
+            return PixalateBlocking.lookupCachedResult( cachedResults, compactResults, null, key, params );
+        }
+
+        @Override
+        public void storeResult ( PixalateBlocking.BlockingCacheParameters key, PixalateBlocking.BlockingResult result ) {
+            PixalateBlocking.storeResult( cachedResults, compactResults, key, result );
+        }
+
+        @Override
+        public PixalateBlocking.BlockingResult lastResult () {
+            return lastResult;
+        }
+
+        @Override
+        public void onDecision ( PixalateBlocking.BlockingResult result ) {
+            // subscriptions follow the global config's decisions only.
+            lastResult = result;
+        }
+
+        @Override
+        public AtomicLong requestsSinceLookup () {
+            return requestsSinceLookup;
+        }
+
+        @Override
+        public BlockingEndpointSelector endpoints () {
+            return endpoints;
+        }
+
+        @Override
+        public BlockingRateLimiter rateLimiter () {
+            return rateLimiter;
+        }
+    }
+}
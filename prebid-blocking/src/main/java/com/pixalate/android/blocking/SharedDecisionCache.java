@@ -0,0 +1,176 @@
+package com.pixalate.android.blocking;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+
+/**
+ * A fixed-size decision cache backed by a memory-mapped file, shared by every process of the app.
+ * A decision stored by one process is visible to the others as soon as it is written, and reads never
+ * take a lock or make an IPC call.
+ *
+ * Each slot is guarded seqlock-style: writers hold a file lock on the slot and bump its sequence number
+ * to an odd value while writing and back to an even value when done. Readers retry while the sequence is
+ * odd or changes underneath them. Since mapped buffers give no ordering guarantees, every slot also carries
+ * a checksum over its contents, so a torn read is always detected and treated as a miss.
+ *
+ * Slots are direct-mapped by key fingerprint, and a colliding write simply replaces the older entry.
+ */
+final class SharedDecisionCache {
+
+    static final String FILE_NAME = "pixalate-blocking-decisions.cache";
+
+    private static final int MAGIC = 0x50584244;
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_COUNT = 256;
+    private static final int SLOT_SIZE = 40;
+
+    private static final int SEQUENCE = 0;
+    private static final int FINGERPRINT = 8;
+    private static final int PROBABILITY = 16;
+    private static final int EXPIRY = 24;
+    private static final int CHECKSUM = 32;
+
+    private static final int READ_ATTEMPTS = 4;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private SharedDecisionCache ( FileChannel channel, MappedByteBuffer buffer ) {
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Maps the shared cache file of the app, creating and formatting it if needed.
+     * @param context App context
+     * @return The mapped cache.
+     * @throws IOException If the file could not be created or mapped.
+     */
+    static SharedDecisionCache open ( Context context ) throws IOException {
+        File file = new File( context.getNoBackupFilesDir(), FILE_NAME );
+        long size = HEADER_SIZE + (long) SLOT_COUNT * SLOT_SIZE;
+
+        FileChannel channel = new RandomAccessFile( file, "rw" ).getChannel();
+
+        try {
+            MappedByteBuffer buffer;
+
+            // formatting is done under a whole-file lock so that two processes starting at once don't both do it.
+            try( FileLock ignored = channel.lock() ) {
+                if( channel.size() < size ) {
+                    channel.truncate( 0 );
+                }
+
+                buffer = channel.map( FileChannel.MapMode.READ_WRITE, 0, size );
+
+                if( buffer.getInt( 0 ) != MAGIC || buffer.getInt( 4 ) != VERSION || buffer.getInt( 8 ) != SLOT_COUNT ) {
+                    for( int i = 0; i < size; i += 8 ) {
+                        buffer.putLong( i, 0 );
+                    }
+
+                    buffer.putInt( 0, MAGIC );
+                    buffer.putInt( 4, VERSION );
+                    buffer.putInt( 8, SLOT_COUNT );
+                }
+            }
+
+            return new SharedDecisionCache( channel, buffer );
+        } catch( IOException | RuntimeException e ) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static int slotOffset ( long fingerprint ) {
+        int index = (int) ( fingerprint ^ ( fingerprint >>> 32 ) ) & ( SLOT_COUNT - 1 );
+        return HEADER_SIZE + index * SLOT_SIZE;
+    }
+
+    private static long checksum ( int sequence, long fingerprint, long probabilityBits, long expiry ) {
+        long hash = fingerprint * 0x9E3779B97F4A7C15L;
+        hash = ( hash ^ probabilityBits ) * 0xBF58476D1CE4E5B9L;
+        hash = ( hash ^ expiry ) * 0x94D049BB133111EBL;
+        return hash ^ sequence;
+    }
+
+    /**
+     * Reads the decision stored for the given fingerprint.
+     * @param fingerprint The key fingerprint.
+     * @param now         The current time, used to skip expired entries.
+     * @param out         Receives the probability and expiry on a hit.
+     * @return Whether an unexpired decision was found.
+     */
+    boolean get ( long fingerprint, long now, PixalateBlocking.BlockingResult out ) {
+        int offset = slotOffset( fingerprint );
+
+        for( int attempt = 0; attempt < READ_ATTEMPTS; attempt++ ) {
+            int sequence = buffer.getInt( offset + SEQUENCE );
+            if( ( sequence & 1 ) != 0 ) {
+                Thread.yield();
+                continue;
+            }
+
+            long storedFingerprint = buffer.getLong( offset + FINGERPRINT );
+            long probabilityBits = buffer.getLong( offset + PROBABILITY );
+            long expiry = buffer.getLong( offset + EXPIRY );
+            long checksum = buffer.getLong( offset + CHECKSUM );
+
+            if( buffer.getInt( offset + SEQUENCE ) != sequence || checksum != checksum( sequence, storedFingerprint, probabilityBits, expiry ) ) {
+                continue;
+            }
+
+            if( storedFingerprint != fingerprint || expiry <= now ) {
+                return false;
+            }
+
+            out.probability = Double.longBitsToDouble( probabilityBits );
+            out.time = expiry;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Stores a decision for the given fingerprint, replacing whatever occupied its slot.
+     * @param fingerprint The key fingerprint.
+     * @param probability The IVT probability.
+     * @param expiry      The time at which the decision expires.
+     */
+    synchronized void put ( long fingerprint, double probability, long expiry ) {
+        int offset = slotOffset( fingerprint );
+        long probabilityBits = Double.doubleToLongBits( probability );
+
+        try( FileLock ignored = channel.lock( offset, SLOT_SIZE, false ) ) {
+            int sequence = buffer.getInt( offset + SEQUENCE ) | 1;
+
+            buffer.putInt( offset + SEQUENCE, sequence );
+            buffer.putLong( offset + FINGERPRINT, fingerprint );
+            buffer.putLong( offset + PROBABILITY, probabilityBits );
+            buffer.putLong( offset + EXPIRY, expiry );
+
+            sequence++;
+            buffer.putLong( offset + CHECKSUM, checksum( sequence, fingerprint, probabilityBits, expiry ) );
+            buffer.putInt( offset + SEQUENCE, sequence );
+        } catch( IOException e ) {
+            PixalateBlocking.LogDebug( "Failed to write to the shared decision cache: %s", e.getMessage() );
+        }
+    }
+
+    /**
+     * Unmaps the cache for this process. Data already written stays visible to other processes.
+     */
+    void close () {
+        try {
+            channel.close();
+        } catch( IOException ignored ) {}
+    }
+}